@@ -43,6 +43,18 @@ public class StatsController {
 		return map;
 	}
 
+	@RequestMapping(value = "/geolocation/cache")
+	public @ResponseBody
+	Map<String, Object> getGeolocationCacheStats() {
+		return dataExporter.getGeolocationCacheStats();
+	}
+
+	@RequestMapping(value = "/latency")
+	public @ResponseBody
+	Map<String, Object> getLatencyStats(@RequestParam(name = "buckets", required = false, defaultValue = "false") final boolean buckets) {
+		return dataExporter.getLatencyStats(buckets);
+	}
+
 	@RequestMapping(value = "/ip/{ip:.+}")
 	public @ResponseBody
 	Map<String, Object> getCaches(@PathVariable("ip") final String ip,
@@ -249,6 +249,16 @@ public class Cache implements Comparable<Cache>, Hashable<Cache> {
 		return hashable.getHashValues();
 	}
 
+	@Override
+	public int getHashCount() {
+		return hashable.getHashCount();
+	}
+
+	@Override
+	public long getHashSeed() {
+		return hashable.getHashSeed();
+	}
+
 	public int getHttpsPort() {
 		return httpsPort;
 	}
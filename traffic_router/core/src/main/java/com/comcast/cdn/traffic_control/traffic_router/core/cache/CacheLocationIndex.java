@@ -0,0 +1,302 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+
+/**
+ * An immutable k-d tree of {@link CacheLocation}s, used to find the locations closest to a client
+ * without computing the distance to, and sorting, every location on each request.
+ * <p>
+ * Locations are placed on the unit sphere; the straight line distance between two points on the
+ * sphere grows with their great circle distance, so the nearest points in the tree are the
+ * nearest locations by {@link Geolocation#getDistanceFrom(Geolocation)}. The tree is searched
+ * best first, so walking the first few closest locations only visits a few branches.
+ * Locations without a geolocation come last, as they do when sorted by distance.
+ * </p>
+ */
+public class CacheLocationIndex {
+	private final CacheLocation[] locations;
+	private final double[] points;
+	private final int[] axes;
+	private final List<CacheLocation> unlocated = new ArrayList<CacheLocation>();
+
+	public CacheLocationIndex(final Collection<CacheLocation> cacheLocations) {
+		final List<CacheLocation> located = new ArrayList<CacheLocation>();
+
+		for (final CacheLocation cacheLocation : cacheLocations) {
+			if (cacheLocation.getGeolocation() != null) {
+				located.add(cacheLocation);
+			} else {
+				unlocated.add(cacheLocation);
+			}
+		}
+
+		locations = located.toArray(new CacheLocation[located.size()]);
+		points = new double[locations.length * 3];
+		axes = new int[locations.length];
+
+		for (int i = 0; i < locations.length; i++) {
+			toPoint(locations[i].getGeolocation(), points, i * 3);
+		}
+
+		build(0, locations.length);
+	}
+
+	/**
+	 * Orders the locations closest first, lazily.
+	 *
+	 * @param from
+	 *            the location to measure distances from; if null, the locations are not ordered
+	 * @param filter
+	 *            the locations to include
+	 * @return an iterator over the matching locations
+	 */
+	public Iterator<CacheLocation> nearest(final Geolocation from, final Predicate<CacheLocation> filter) {
+		return new NearestIterator(from, filter);
+	}
+
+	/**
+	 * Finds the closest locations.
+	 *
+	 * @param from
+	 *            the location to measure distances from
+	 * @param filter
+	 *            the locations to include
+	 * @param limit
+	 *            the maximum number of locations to return
+	 * @return the matching locations, closest first
+	 */
+	public List<CacheLocation> nearest(final Geolocation from, final Predicate<CacheLocation> filter, final int limit) {
+		final List<CacheLocation> nearest = new ArrayList<CacheLocation>();
+		final Iterator<CacheLocation> iterator = nearest(from, filter);
+
+		while (nearest.size() < limit && iterator.hasNext()) {
+			nearest.add(iterator.next());
+		}
+
+		return nearest;
+	}
+
+	public int size() {
+		return locations.length + unlocated.size();
+	}
+
+	private static void toPoint(final Geolocation geolocation, final double[] point, final int offset) {
+		final double latitude = Math.toRadians(geolocation.getLatitude());
+		final double longitude = Math.toRadians(geolocation.getLongitude());
+		final double cosLatitude = Math.cos(latitude);
+
+		point[offset] = cosLatitude * Math.cos(longitude);
+		point[offset + 1] = cosLatitude * Math.sin(longitude);
+		point[offset + 2] = Math.sin(latitude);
+	}
+
+	/*
+	 * Arranges locations[from, to) as an implicit tree: the median along the axis of widest spread
+	 * sits at the middle of the range, with the nearer half of the range on each side of it.
+	 */
+	private void build(final int from, final int to) {
+		if (to - from < 1) {
+			return;
+		}
+
+		final int axis = widestAxis(from, to);
+		final Integer[] order = new Integer[to - from];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = from + i;
+		}
+
+		Arrays.sort(order, (a, b) -> Double.compare(points[a * 3 + axis], points[b * 3 + axis]));
+
+		final CacheLocation[] sortedLocations = new CacheLocation[order.length];
+		final double[] sortedPoints = new double[order.length * 3];
+
+		for (int i = 0; i < order.length; i++) {
+			sortedLocations[i] = locations[order[i]];
+			System.arraycopy(points, order[i] * 3, sortedPoints, i * 3, 3);
+		}
+
+		System.arraycopy(sortedLocations, 0, locations, from, order.length);
+		System.arraycopy(sortedPoints, 0, points, from * 3, sortedPoints.length);
+
+		final int middle = (from + to) >>> 1;
+		axes[middle] = axis;
+		build(from, middle);
+		build(middle + 1, to);
+	}
+
+	private int widestAxis(final int from, final int to) {
+		int widest = 0;
+		double widestSpread = -1;
+
+		for (int axis = 0; axis < 3; axis++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+
+			for (int i = from; i < to; i++) {
+				min = Math.min(min, points[i * 3 + axis]);
+				max = Math.max(max, points[i * 3 + axis]);
+			}
+
+			if (max - min > widestSpread) {
+				widest = axis;
+				widestSpread = max - min;
+			}
+		}
+
+		return widest;
+	}
+
+	/*
+	 * A range of the tree still to be searched, or a single location, keyed by a lower bound of
+	 * the squared distance to anything in it.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final double distance;
+		private final int from;
+		private final int to;
+		private final boolean location;
+
+		Entry(final double distance, final int from, final int to, final boolean location) {
+			this.distance = distance;
+			this.from = from;
+			this.to = to;
+			this.location = location;
+		}
+
+		@Override
+		public int compareTo(final Entry other) {
+			final int compared = Double.compare(distance, other.distance);
+
+			if (compared != 0) {
+				return compared;
+			}
+
+			// ranges are opened before locations at the same distance are returned, and equally distant locations come in index order
+			if (location != other.location) {
+				return location ? 1 : -1;
+			}
+
+			return Integer.compare(from, other.from);
+		}
+	}
+
+	private class NearestIterator implements Iterator<CacheLocation> {
+		private final double[] point = new double[3];
+		private final Predicate<CacheLocation> filter;
+		private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		private final boolean ordered;
+		private int scanned;
+		private int unlocatedIndex;
+		private CacheLocation next;
+
+		NearestIterator(final Geolocation from, final Predicate<CacheLocation> filter) {
+			this.filter = filter;
+			this.ordered = from != null;
+
+			if (ordered) {
+				toPoint(from, point, 0);
+
+				if (locations.length > 0) {
+					queue.add(new Entry(0, 0, locations.length, false));
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				final CacheLocation candidate = advance();
+
+				if (candidate == null) {
+					return false;
+				}
+
+				if (filter.test(candidate)) {
+					next = candidate;
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		public CacheLocation next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final CacheLocation cacheLocation = next;
+			next = null;
+			return cacheLocation;
+		}
+
+		private CacheLocation advance() {
+			if (!ordered) {
+				if (scanned < locations.length) {
+					return locations[scanned++];
+				}
+			} else {
+				while (!queue.isEmpty()) {
+					final Entry entry = queue.poll();
+
+					if (entry.location) {
+						return locations[entry.from];
+					}
+
+					open(entry);
+				}
+			}
+
+			return unlocatedIndex < unlocated.size() ? unlocated.get(unlocatedIndex++) : null;
+		}
+
+		private void open(final Entry range) {
+			final int middle = (range.from + range.to) >>> 1;
+			final int axis = axes[middle];
+			final double offset = point[axis] - points[middle * 3 + axis];
+			final double planeDistance = offset * offset;
+
+			queue.add(new Entry(distanceTo(middle), middle, middle + 1, true));
+
+			if (range.from < middle) {
+				queue.add(new Entry(offset < 0 ? range.distance : Math.max(range.distance, planeDistance), range.from, middle, false));
+			}
+
+			if (middle + 1 < range.to) {
+				queue.add(new Entry(offset >= 0 ? range.distance : Math.max(range.distance, planeDistance), middle + 1, range.to, false));
+			}
+		}
+
+		private double distanceTo(final int index) {
+			final double dx = point[0] - points[index * 3];
+			final double dy = point[1] - points[index * 3 + 1];
+			final double dz = point[2] - points[index * 3 + 2];
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+}
@@ -26,6 +26,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcherIndex;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.Request;
 
 @SuppressWarnings("PMD.LooseCoupling")
@@ -33,11 +34,12 @@ public class CacheRegister implements CacheLocationManager {
 	private final Map<String, CacheLocation> configuredLocations;
 	private JsonNode trafficRouters;
 	private Map<String,Cache> allCaches;
-	private TreeSet<DeliveryServiceMatcher> dnsServiceMatchers;
-	private TreeSet<DeliveryServiceMatcher> httpServiceMatchers;
+	private DeliveryServiceMatcherIndex dnsServiceMatchers;
+	private DeliveryServiceMatcherIndex httpServiceMatchers;
 	private Map<String, DeliveryService> dsMap;
 	private JsonNode config;
 	private JsonNode stats;
+	private CacheLocationIndex cacheLocationIndex;
 
 	public CacheRegister() {
 		configuredLocations = new HashMap<String, CacheLocation>();
@@ -76,6 +78,16 @@ public class CacheRegister implements CacheLocationManager {
 		for (final CacheLocation newLoc : locations) {
 			configuredLocations.put(newLoc.getId(), newLoc);
 		}
+		cacheLocationIndex = new CacheLocationIndex(configuredLocations.values());
+	}
+
+	/**
+	 * Gets the spatial index of the configured locations, rebuilt whenever the locations are set.
+	 *
+	 * @return the index, or null if no locations have been set
+	 */
+	public CacheLocationIndex getCacheLocationIndex() {
+		return cacheLocationIndex;
 	}
 
 	public void setCacheMap(final Map<String,Cache> map) {
@@ -87,38 +99,29 @@ public class CacheRegister implements CacheLocationManager {
 	}
 	
 	public void setDnsDeliveryServiceMatchers(final TreeSet<DeliveryServiceMatcher> dnsServices) {
-		this.dnsServiceMatchers = dnsServices;
+		this.dnsServiceMatchers = dnsServices != null ? new DeliveryServiceMatcherIndex(dnsServices) : null;
 	}
 
 	public void setHttpDeliveryServiceMatchers(final TreeSet<DeliveryServiceMatcher> httpServices) {
-		this.httpServiceMatchers = httpServices;
+		this.httpServiceMatchers = httpServices != null ? new DeliveryServiceMatcherIndex(httpServices) : null;
 	}
 
 	/**
-	 * Gets the first {@link DeliveryService} that matches the {@link Request}.
+	 * Gets the first {@link DeliveryService} that matches the {@link Request}. The matchers are
+	 * indexed by host label when they are set, so only plausible matchers are tried.
 	 * 
 	 * @param request
 	 *            the request to match
 	 * @return the DeliveryService that matches the request
 	 */
 	public DeliveryService getDeliveryService(final Request request, final boolean isHttp) {
-		TreeSet<DeliveryServiceMatcher> matchers = dnsServiceMatchers;
-
-		if (isHttp) {
-			matchers = httpServiceMatchers;
-		}
+		final DeliveryServiceMatcherIndex matchers = isHttp ? httpServiceMatchers : dnsServiceMatchers;
 
 		if (matchers == null) {
 			return null;
 		}
 
-		for (final DeliveryServiceMatcher m : matchers) {
-			if (m.matches(request)) {
-				return m.getDeliveryService();
-			}
-		}
-
-		return null;
+		return matchers.getDeliveryService(request);
 	}
 
 	public DeliveryService getDeliveryService(final String deliveryServiceId) {
@@ -0,0 +1,127 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.config;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * What was built from the last config snapshot that was applied, so that the next snapshot can
+ * reuse whatever it describes exactly the same way instead of building it again.
+ * <p>
+ * A delivery service is reused, along with the compiled request matchers of its match sets, when
+ * its JSON is unchanged. A cache is reused, along with its consistent hashes, when its JSON and the
+ * location of its cache group are unchanged. Cache locations are always built again, as caches are
+ * added to them while a snapshot is parsed.
+ * </p>
+ */
+final class AppliedConfig {
+	static final AppliedConfig NONE = new AppliedConfig(null, null, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+	private final JsonNode deliveryServicesJson;
+	private final JsonNode contentServersJson;
+	private final Map<String, DeliveryService> deliveryServices;
+	private final Map<String, List<DeliveryServiceMatcher>> deliveryServiceMatchers;
+	private final Map<String, Cache> caches;
+
+	/**
+	 * @param deliveryServiceMatchers
+	 *            the matchers of each delivery service, in the order of its match sets
+	 */
+	AppliedConfig(final JsonNode deliveryServicesJson, final JsonNode contentServersJson, final Map<String, DeliveryService> deliveryServices,
+			final Map<String, List<DeliveryServiceMatcher>> deliveryServiceMatchers, final Map<String, Cache> caches) {
+		this.deliveryServicesJson = deliveryServicesJson;
+		this.contentServersJson = contentServersJson;
+		this.deliveryServices = deliveryServices;
+		this.deliveryServiceMatchers = deliveryServiceMatchers;
+		this.caches = caches;
+	}
+
+	private static boolean isUnchanged(final JsonNode previousJson, final String id, final JsonNode json) {
+		return previousJson != null && json != null && json.equals(previousJson.get(id));
+	}
+
+	/**
+	 * @return the delivery service built from the same JSON last time, or null
+	 */
+	DeliveryService getDeliveryService(final String id, final JsonNode json) {
+		return isUnchanged(deliveryServicesJson, id, json) ? deliveryServices.get(id) : null;
+	}
+
+	/**
+	 * @return the matchers of a reused delivery service in the order of its match sets, or null
+	 *         if the delivery service was built again
+	 */
+	List<DeliveryServiceMatcher> getDeliveryServiceMatchers(final DeliveryService deliveryService) {
+		if (!isReused(deliveryService)) {
+			return null;
+		}
+
+		return deliveryServiceMatchers.get(deliveryService.getId());
+	}
+
+	/**
+	 * @return true if the delivery service is the one built last time, which is still being routed
+	 *         with until the new snapshot is applied
+	 */
+	boolean isReused(final DeliveryService deliveryService) {
+		return deliveryService != null && deliveryServices.get(deliveryService.getId()) == deliveryService;
+	}
+
+	/**
+	 * @return the cache built from the same JSON and cache group location last time, or null
+	 */
+	Cache getCache(final String id, final JsonNode json, final Geolocation geolocation) {
+		if (!isUnchanged(contentServersJson, id, json)) {
+			return null;
+		}
+
+		final Cache cache = caches.get(id);
+
+		if (cache == null || (geolocation == null ? cache.getGeolocation() != null : !geolocation.equals(cache.getGeolocation()))) {
+			return null;
+		}
+
+		return cache;
+	}
+
+	private static int countReused(final Map<String, ?> previous, final Map<String, ?> current) {
+		int reused = 0;
+
+		for (final Map.Entry<String, ?> entry : current.entrySet()) {
+			if (previous.get(entry.getKey()) == entry.getValue()) {
+				reused++;
+			}
+		}
+
+		return reused;
+	}
+
+	int countReusedDeliveryServices(final Map<String, DeliveryService> current) {
+		return countReused(deliveryServices, current);
+	}
+
+	int countReusedCaches(final Map<String, Cache> current) {
+		return countReused(caches, current);
+	}
+}
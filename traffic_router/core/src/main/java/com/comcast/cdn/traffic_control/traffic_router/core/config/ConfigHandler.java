@@ -61,6 +61,7 @@ import com.comcast.cdn.traffic_control.traffic_router.core.util.TrafficOpsUtils;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.HTTPRequest;
+import com.comcast.cdn.traffic_control.traffic_router.core.request.RequestMatcher;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.AnonymousIp;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.AnonymousIpConfigUpdater;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.AnonymousIpDatabaseUpdater;
@@ -92,6 +93,7 @@ public class ConfigHandler {
 	private BlockingQueue<Boolean> publishStatusQueue;
 	private final AtomicBoolean cancelled = new AtomicBoolean(false);
 	private final AtomicBoolean isProcessing = new AtomicBoolean(false);
+	private AppliedConfig appliedConfig = AppliedConfig.NONE;
 
 	private final static String NEUSTAR_POLLING_URL = "neustar.polling.url";
 	private final static String NEUSTAR_POLLING_INTERVAL = "neustar.polling.interval";
@@ -173,7 +175,7 @@ public class ConfigHandler {
 				cacheRegister.setStats(stats);
 				parseTrafficOpsConfig(config, stats);
 
-				final Map<String, DeliveryService> deliveryServiceMap = parseDeliveryServiceConfig(JsonUtils.getJsonNode(jo, deliveryServicesKey));
+				final Map<String, DeliveryService> deliveryServiceMap = parseDeliveryServiceConfig(JsonUtils.getJsonNode(jo, deliveryServicesKey), appliedConfig);
 
 				parseCertificatesConfig(config);
 				certificatesPublisher.setDeliveryServicesJson(deliveryServicesJson);
@@ -217,14 +219,19 @@ public class ConfigHandler {
 					return false;
 				}
 
-				parseDeliveryServiceMatchSets(deliveryServicesJson, deliveryServiceMap, cacheRegister);
+				final Map<String, List<DeliveryServiceMatcher>> deliveryServiceMatchers = parseDeliveryServiceMatchSets(deliveryServicesJson, deliveryServiceMap, cacheRegister, appliedConfig);
 				parseLocationConfig(JsonUtils.getJsonNode(jo, "edgeLocations"), cacheRegister);
-				parseCacheConfig(JsonUtils.getJsonNode(jo, "contentServers"), cacheRegister);
+				final JsonNode contentServersJson = JsonUtils.getJsonNode(jo, "contentServers");
+				parseCacheConfig(contentServersJson, cacheRegister, appliedConfig);
 				parseMonitorConfig(JsonUtils.getJsonNode(jo, "monitors"));
 
+				LOGGER.info("Reused " + appliedConfig.countReusedDeliveryServices(deliveryServiceMap) + " of " + deliveryServiceMap.size() + " delivery services and "
+						+ appliedConfig.countReusedCaches(cacheRegister.getCacheMap()) + " of " + cacheRegister.getCacheMap().size() + " caches from the previous snapshot");
+
 				federationsWatcher.configure(config);
 				steeringWatcher.configure(config);
 				trafficRouterManager.setCacheRegister(cacheRegister);
+				appliedConfig = new AppliedConfig(deliveryServicesJson, contentServersJson, deliveryServiceMap, deliveryServiceMatchers, cacheRegister.getCacheMap());
 				trafficRouterManager.getNameServer().setEcsEnable(JsonUtils.optBoolean(config, "ecsEnable", false));
 				trafficRouterManager.getTrafficRouter().setRequestHeaders(parseRequestHeaders(config.get("requestHeaders")));
 				trafficRouterManager.getTrafficRouter().configurationChanged();
@@ -325,7 +332,7 @@ public class ConfigHandler {
 	 * @throws JsonUtilsException, ParseException
 	 */
 	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.AvoidDeeplyNestedIfStmts", "PMD.NPathComplexity"})
-	private void parseCacheConfig(final JsonNode contentServers, final CacheRegister cacheRegister) throws JsonUtilsException, ParseException {
+	private void parseCacheConfig(final JsonNode contentServers, final CacheRegister cacheRegister, final AppliedConfig appliedConfig) throws JsonUtilsException, ParseException {
 		final Map<String,Cache> map = new HashMap<String,Cache>();
 		final Map<String, List<String>> statMap = new HashMap<String, List<String>>();
 
@@ -343,17 +350,21 @@ public class ConfigHandler {
 					hashId = jo.get("hashId").textValue();
 				}
 
-				final Cache cache = new Cache(node, hashId, JsonUtils.optInt(jo, "hashCount"), loc.getGeolocation());
-				cache.setFqdn(JsonUtils.getString(jo, "fqdn"));
-				cache.setPort(JsonUtils.getInt(jo, "port"));
+				final Cache reusableCache = appliedConfig.getCache(node, jo, loc.getGeolocation());
+				final Cache cache = reusableCache != null ? reusableCache : new Cache(node, hashId, JsonUtils.optInt(jo, "hashCount"), loc.getGeolocation());
 
-				final String ip = JsonUtils.getString(jo, "ip");
-				final String ip6 = JsonUtils.optString(jo, "ip6");
+				if (reusableCache == null) {
+					cache.setFqdn(JsonUtils.getString(jo, "fqdn"));
+					cache.setPort(JsonUtils.getInt(jo, "port"));
 
-				try {
-					cache.setIpAddress(ip, ip6, 0);
-				} catch (UnknownHostException e) {
-					LOGGER.warn(e + " : " + ip);
+					final String ip = JsonUtils.getString(jo, "ip");
+					final String ip6 = JsonUtils.optString(jo, "ip6");
+
+					try {
+						cache.setIpAddress(ip, ip6, 0);
+					} catch (UnknownHostException e) {
+						LOGGER.warn(e + " : " + ip);
+					}
 				}
 
 				if (jo.has(deliveryServicesKey)) {
@@ -411,7 +422,9 @@ public class ConfigHandler {
 						statMap.put(ds, dsNames);
 					}
 
-					cache.setDeliveryServices(references);
+					if (reusableCache == null) {
+						cache.setDeliveryServices(references);
+					}
 				}
 
 				loc.addCache(cache);
@@ -423,35 +436,48 @@ public class ConfigHandler {
 		statTracker.initialize(statMap, cacheRegister);
 	}
 
-	private Map<String, DeliveryService> parseDeliveryServiceConfig(final JsonNode allDeliveryServices) throws JsonUtilsException {
+	private Map<String, DeliveryService> parseDeliveryServiceConfig(final JsonNode allDeliveryServices, final AppliedConfig appliedConfig) throws JsonUtilsException {
 		final Map<String,DeliveryService> deliveryServiceMap = new HashMap<>();
 
 		final Iterator<String> deliveryServiceIter = allDeliveryServices.fieldNames();
 		while (deliveryServiceIter.hasNext()) {
 			final String deliveryServiceId = deliveryServiceIter.next();
 			final JsonNode deliveryServiceJson = JsonUtils.getJsonNode(allDeliveryServices, deliveryServiceId);
-			final DeliveryService deliveryService = new DeliveryService(deliveryServiceId, deliveryServiceJson);
-			boolean isDns = false;
+			final DeliveryService reusableDeliveryService = appliedConfig.getDeliveryService(deliveryServiceId, deliveryServiceJson);
 
-			final JsonNode matchsets = JsonUtils.getJsonNode(deliveryServiceJson, "matchsets");
-
-			for (final JsonNode matchset : matchsets) {
-				final String protocol = JsonUtils.getString(matchset, "protocol");
-				if ("DNS".equals(protocol)) {
-					isDns = true;
-				}
+			if (reusableDeliveryService != null) {
+				deliveryServiceMap.put(deliveryServiceId, reusableDeliveryService);
+				continue;
 			}
 
-			deliveryService.setDns(isDns);
-			deliveryServiceMap.put(deliveryServiceId, deliveryService);
+			deliveryServiceMap.put(deliveryServiceId, parseDeliveryService(deliveryServiceId, deliveryServiceJson));
 		}
 
 		return deliveryServiceMap;
 	}
 
-	private void parseDeliveryServiceMatchSets(final JsonNode allDeliveryServices, final Map<String, DeliveryService> deliveryServiceMap, final CacheRegister cacheRegister) throws JsonUtilsException {
+	private DeliveryService parseDeliveryService(final String deliveryServiceId, final JsonNode deliveryServiceJson) throws JsonUtilsException {
+		final DeliveryService deliveryService = new DeliveryService(deliveryServiceId, deliveryServiceJson);
+		boolean isDns = false;
+
+		final JsonNode matchsets = JsonUtils.getJsonNode(deliveryServiceJson, "matchsets");
+
+		for (final JsonNode matchset : matchsets) {
+			final String protocol = JsonUtils.getString(matchset, "protocol");
+			if ("DNS".equals(protocol)) {
+				isDns = true;
+			}
+		}
+
+		deliveryService.setDns(isDns);
+		return deliveryService;
+	}
+
+	private Map<String, List<DeliveryServiceMatcher>> parseDeliveryServiceMatchSets(final JsonNode allDeliveryServices, final Map<String, DeliveryService> deliveryServiceMap,
+			final CacheRegister cacheRegister, final AppliedConfig appliedConfig) throws JsonUtilsException {
 		final TreeSet<DeliveryServiceMatcher> dnsServiceMatchers = new TreeSet<>();
 		final TreeSet<DeliveryServiceMatcher> httpServiceMatchers = new TreeSet<>();
+		final Map<String, List<DeliveryServiceMatcher>> deliveryServiceMatchers = new HashMap<>();
 
 		final Iterator<String> deliveryServiceIds = allDeliveryServices.fieldNames();
 		while (deliveryServiceIds.hasNext()) {
@@ -459,6 +485,8 @@ public class ConfigHandler {
 			final JsonNode deliveryServiceJson = JsonUtils.getJsonNode(allDeliveryServices, deliveryServiceId);
 			final JsonNode matchsets = JsonUtils.getJsonNode(deliveryServiceJson, "matchsets");
 			final DeliveryService deliveryService = deliveryServiceMap.get(deliveryServiceId);
+			final List<DeliveryServiceMatcher> reusableMatchers = appliedConfig.getDeliveryServiceMatchers(deliveryService);
+			final List<DeliveryServiceMatcher> matchers = new ArrayList<>();
 
 			for (final JsonNode matchset : matchsets) {
 				final String protocol = JsonUtils.getString(matchset, "protocol");
@@ -471,58 +499,103 @@ public class ConfigHandler {
 					dnsServiceMatchers.add(deliveryServiceMatcher);
 				}
 
-				for (final JsonNode matcherJo : JsonUtils.getJsonNode(matchset, "matchlist")) {
-					final Type type = Type.valueOf(JsonUtils.getString(matcherJo, "match-type"));
-					final String target = JsonUtils.optString(matcherJo, "target");
-					deliveryServiceMatcher.addMatch(type, JsonUtils.getString(matcherJo, "regex"), target);
-				}
-
+				addMatches(deliveryServiceMatcher, matchset, reusableMatchers, matchers.size());
+				matchers.add(deliveryServiceMatcher);
 			}
+
+			deliveryServiceMatchers.put(deliveryServiceId, matchers);
 		}
 
 		cacheRegister.setDeliveryServiceMap(deliveryServiceMap);
 		cacheRegister.setDnsDeliveryServiceMatchers(dnsServiceMatchers);
 		cacheRegister.setHttpDeliveryServiceMatchers(httpServiceMatchers);
-		initGeoFailedRedirect(deliveryServiceMap, cacheRegister);
+		final Set<String> changedGeoRedirects = initGeoFailedRedirect(deliveryServiceMap, cacheRegister, appliedConfig);
+
+		if (!changedGeoRedirects.isEmpty()) {
+			// build these again rather than change delivery services that are still being routed with, then match again
+			for (final String deliveryServiceId : changedGeoRedirects) {
+				deliveryServiceMap.put(deliveryServiceId, parseDeliveryService(deliveryServiceId, JsonUtils.getJsonNode(allDeliveryServices, deliveryServiceId)));
+			}
+
+			return parseDeliveryServiceMatchSets(allDeliveryServices, deliveryServiceMap, cacheRegister, appliedConfig);
+		}
+
+		return deliveryServiceMatchers;
 	}
 
-	private void initGeoFailedRedirect(final Map<String, DeliveryService> dsMap, final CacheRegister cacheRegister) {
-		final Iterator<String> itr = dsMap.keySet().iterator();
-		while (itr.hasNext()) {
-			final DeliveryService ds = dsMap.get(itr.next());
+	private void addMatches(final DeliveryServiceMatcher deliveryServiceMatcher, final JsonNode matchset, final List<DeliveryServiceMatcher> reusableMatchers,
+			final int index) throws JsonUtilsException {
+		// the match sets of a reused delivery service are unchanged, so its matchers line up with them
+		if (reusableMatchers != null && index < reusableMatchers.size()) {
+			for (final RequestMatcher requestMatcher : reusableMatchers.get(index).getRequestMatchers()) {
+				deliveryServiceMatcher.addMatch(requestMatcher);
+			}
+
+			return;
+		}
+
+		for (final JsonNode matcherJo : JsonUtils.getJsonNode(matchset, "matchlist")) {
+			final Type type = Type.valueOf(JsonUtils.getString(matcherJo, "match-type"));
+			final String target = JsonUtils.optString(matcherJo, "target");
+			deliveryServiceMatcher.addMatch(type, JsonUtils.getString(matcherJo, "regex"), target);
+		}
+	}
+
+	/**
+	 * Sets whether the geo redirect URL of each delivery service belongs to it. Delivery services
+	 * reused from the previous snapshot are still being routed with, so they are left alone.
+	 *
+	 * @return the ids of reused delivery services whose geo redirect URL no longer belongs to them
+	 *         the way it did, or the other way around
+	 */
+	private Set<String> initGeoFailedRedirect(final Map<String, DeliveryService> dsMap, final CacheRegister cacheRegister, final AppliedConfig appliedConfig) {
+		final Set<String> changed = new HashSet<>();
+
+		for (final DeliveryService ds : dsMap.values()) {
 			//check if it's relative path or not
 			final String rurl = ds.getGeoRedirectUrl();
 			if (rurl == null) { continue; }
 
 			try {
-				final int idx = rurl.indexOf("://");
+				//a url with protocol must be parsed, and if it's invalid it will throw Exception
+				final URL url = rurl.indexOf("://") < 0 ? null : new URL(rurl);
+				final String urlType = getGeoRedirectUrlType(ds, url, cacheRegister);
+
+				if (appliedConfig.isReused(ds)) {
+					if (!urlType.equals(ds.getGeoRedirectUrlType())) {
+						changed.add(ds.getId());
+					}
 
-				if (idx < 0) {
-					//this is a relative url, belongs to this ds
-					ds.setGeoRedirectUrlType("DS_URL");
 					continue;
 				}
-				//this is a url with protocol, must check further
-				//first, parse the url, if url invalid it will throw Exception
-				final URL url = new URL(rurl);
-
-				//make a fake HTTPRequest for the redirect url
-				final HTTPRequest req = new HTTPRequest(url);
-
-				ds.setGeoRedirectFile(url.getFile());
-				//try select the ds by the redirect fake HTTPRequest
-				final DeliveryService rds = cacheRegister.getDeliveryService(req, true);
-				if (rds == null || rds.getId() != ds.getId()) {
-					//the redirect url not belongs to this ds
-					ds.setGeoRedirectUrlType("NOT_DS_URL");
-					continue;
+
+				if (url != null) {
+					ds.setGeoRedirectFile(url.getFile());
 				}
 
-				ds.setGeoRedirectUrlType("DS_URL");
+				ds.setGeoRedirectUrlType(urlType);
 			} catch (Exception e) {
 				LOGGER.error("fatal error, failed to init NGB redirect with Exception: " + e.getMessage());
 			}
 		}
+
+		return changed;
+	}
+
+	private static String getGeoRedirectUrlType(final DeliveryService ds, final URL url, final CacheRegister cacheRegister) {
+		if (url == null) {
+			//this is a relative url, belongs to this ds
+			return "DS_URL";
+		}
+
+		//make a fake HTTPRequest for the redirect url
+		final HTTPRequest req = new HTTPRequest(url);
+
+		//try select the ds by the redirect fake HTTPRequest
+		final DeliveryService rds = cacheRegister.getDeliveryService(req, true);
+
+		//if the redirect url not belongs to this ds
+		return rds == null || !ds.getId().equals(rds.getId()) ? "NOT_DS_URL" : "DS_URL";
 	}
 
 	/**
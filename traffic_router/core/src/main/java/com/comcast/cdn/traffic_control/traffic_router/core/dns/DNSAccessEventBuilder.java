@@ -15,6 +15,7 @@
 
 package com.comcast.cdn.traffic_control.traffic_router.core.dns;
 
+import com.comcast.cdn.traffic_control.traffic_router.core.util.AccessEventFormat;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import org.xbill.DNS.DClass;
 import org.xbill.DNS.Message;
@@ -24,51 +25,72 @@ import org.xbill.DNS.Section;
 import org.xbill.DNS.Type;
 import org.xbill.DNS.WireParseException;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
+import java.util.function.Supplier;
 
 public class DNSAccessEventBuilder {
 
-    @SuppressWarnings("PMD.UseStringBufferForStringAppends")
     public static String create(final DNSAccessRecord dnsAccessRecord) {
-        final String event = createEvent(dnsAccessRecord);
-        String rType = "-";
-        String rdtl = "-";
-        String rloc = "-";
+        return event(dnsAccessRecord).get();
+    }
+
+    /**
+     * Captures the response time of a query so that its access event can be formatted later.
+     *
+     * @param dnsAccessRecord
+     *            the record to log
+     * @return formats the access event
+     */
+    public static Supplier<String> event(final DNSAccessRecord dnsAccessRecord) {
+        final long nanoTime = System.nanoTime();
+        final MessageHeader header = MessageHeader.copyOf(dnsAccessRecord.getDnsMessage());
+        return () -> create(dnsAccessRecord, header, nanoTime);
+    }
+
+    private static String create(final DNSAccessRecord dnsAccessRecord, final MessageHeader header, final long nanoTime) {
+        final StringBuilder stringBuilder = appendEvent(AccessEventFormat.getStringBuilder(), dnsAccessRecord, header, nanoTime);
+
+        stringBuilder.append(" rtype=");
 
         if (dnsAccessRecord.getResultType() != null) {
-            rType = dnsAccessRecord.getResultType().toString();
-            if (dnsAccessRecord.getResultDetails() != null) {
-                rdtl = dnsAccessRecord.getResultDetails().toString();
-            }
+            stringBuilder.append(dnsAccessRecord.getResultType());
+        } else {
+            stringBuilder.append('-');
         }
 
+        stringBuilder.append(" rloc=\"");
+
         if (dnsAccessRecord.getResultLocation() != null) {
             final Geolocation resultLocation = dnsAccessRecord.getResultLocation();
+            AccessEventFormat.appendUpToTwoDecimals(stringBuilder, resultLocation.getLatitude()).append(',');
+            AccessEventFormat.appendUpToTwoDecimals(stringBuilder, resultLocation.getLongitude());
+        } else {
+            stringBuilder.append('-');
+        }
+
+        stringBuilder.append("\" rdtl=");
 
-            final DecimalFormat decimalFormat = new DecimalFormat(".##");
-            decimalFormat.setRoundingMode(RoundingMode.DOWN);
-            rloc = decimalFormat.format(resultLocation.getLatitude()) + "," + decimalFormat.format(resultLocation.getLongitude());
+        if (dnsAccessRecord.getResultType() != null && dnsAccessRecord.getResultDetails() != null) {
+            stringBuilder.append(dnsAccessRecord.getResultDetails());
+        } else {
+            stringBuilder.append('-');
         }
 
-        final String routingInfo = "rtype=" + rType + " rloc=\"" + rloc +  "\" rdtl=" + rdtl + " rerr=\"-\"";
-        String answer = "ans=\"-\"";
+        stringBuilder.append(" rerr=\"-\" ");
 
         if (dnsAccessRecord.getDnsMessage() != null) {
-            answer = createTTLandAnswer(dnsAccessRecord.getDnsMessage());
+            appendTTLandAnswer(stringBuilder, dnsAccessRecord.getDnsMessage());
+        } else {
+            stringBuilder.append("ans=\"-\"");
         }
-        return event + " " + routingInfo + " " + answer;
-    }
 
-    private static String createEvent(final DNSAccessRecord dnsAccessRecord) {
-        final String timeString = String.format("%d.%03d", dnsAccessRecord.getQueryInstant() / 1000, dnsAccessRecord.getQueryInstant() % 1000);
-
-        final double ttms = (System.nanoTime() - dnsAccessRecord.getRequestNanoTime()) / 1000000.0;
+        return stringBuilder.toString();
+    }
 
+    private static StringBuilder appendEvent(final StringBuilder stringBuilder, final DNSAccessRecord dnsAccessRecord, final MessageHeader header, final long nanoTime) {
         final String clientAddressString = dnsAccessRecord.getClient().getHostAddress();
         final String resolverAddressString = dnsAccessRecord.getResolver().getHostAddress();
 
-        final StringBuilder stringBuilder = new StringBuilder(timeString).append(" qtype=DNS chi=").append(clientAddressString).append(" rhi=");
+        AccessEventFormat.appendSeconds(stringBuilder, dnsAccessRecord.getQueryInstant()).append(" qtype=DNS chi=").append(clientAddressString).append(" rhi=");
 
         if (!clientAddressString.equals(resolverAddressString)) {
             stringBuilder.append(resolverAddressString);
@@ -76,85 +98,118 @@ public class DNSAccessEventBuilder {
             stringBuilder.append('-');
         }
 
-        stringBuilder.append(" ttms=").append(String.format("%.03f", ttms));
+        stringBuilder.append(" ttms=");
+        AccessEventFormat.appendMillis(stringBuilder, nanoTime - dnsAccessRecord.getRequestNanoTime());
 
-        if (dnsAccessRecord.getDnsMessage() == null) {
-            return stringBuilder.append(" xn=- fqdn=- type=- class=- rcode=-").toString();
+        if (header == null) {
+            return stringBuilder.append(" xn=- fqdn=- type=- class=- rcode=-");
         }
 
-        final String messageHeader = createDnsMessageHeader(dnsAccessRecord.getDnsMessage());
-        return stringBuilder.append(messageHeader).toString();
+        stringBuilder.append(" xn=").append(header.id).append(' ');
+        appendQuery(stringBuilder, header.question);
+        return stringBuilder.append(" rcode=").append(Rcode.string(header.rcode));
     }
 
-    private static String createDnsMessageHeader(final Message dnsMessage) {
-        final String queryHeader = " xn=" + dnsMessage.getHeader().getID();
-        final String query = " " + createQuery(dnsMessage.getQuestion());
-        final String rcode = " rcode=" + Rcode.string(dnsMessage.getHeader().getRcode());
-        return new StringBuilder(queryHeader).append(query).append(rcode).toString();
-    }
+    private static void appendTTLandAnswer(final StringBuilder stringBuilder, final Message dnsMessage) {
+        final Record[] answers = dnsMessage.getSectionArray(Section.ANSWER);
 
-    private static String createTTLandAnswer(final Message dnsMessage) {
-        if (dnsMessage.getSectionArray(Section.ANSWER) == null || dnsMessage.getSectionArray(Section.ANSWER).length == 0) {
-            return "ttl=\"-\" ans=\"-\"";
+        if (answers == null || answers.length == 0) {
+            stringBuilder.append("ttl=\"-\" ans=\"-\"");
+            return;
         }
 
-        final StringBuilder answerStringBuilder = new StringBuilder();
-        final StringBuilder ttlStringBuilder = new StringBuilder();
-        for (final Record record : dnsMessage.getSectionArray(Section.ANSWER)) {
-            final String s = record.rdataToString() + " ";
-            final String ttl = record.getTTL() + " ";
-            answerStringBuilder.append(s);
-            ttlStringBuilder.append(ttl);
+        stringBuilder.append("ttl=\"");
+
+        for (int i = 0; i < answers.length; i++) {
+            if (i > 0) {
+                stringBuilder.append(' ');
+            }
+
+            stringBuilder.append(answers[i].getTTL());
+        }
+
+        stringBuilder.append("\" ans=\"");
+        final int answerStart = stringBuilder.length();
+
+        for (final Record record : answers) {
+            stringBuilder.append(record.rdataToString()).append(' ');
         }
 
-        return "ttl=\"" + ttlStringBuilder.toString().trim() + "\" ans=\"" + answerStringBuilder.toString().trim() + "\"";
+        AccessEventFormat.trimFrom(stringBuilder, answerStart).append('"');
     }
 
     public static String create(final DNSAccessRecord dnsAccessRecord, final WireParseException wireParseException) {
-        final String event = createEvent(dnsAccessRecord);
-        final String rerr = "Bad Request:" + wireParseException.getClass().getSimpleName() + ":" + wireParseException.getMessage();
-        return new StringBuilder(event)
-                .append(" rtype=-")
-                .append(" rloc=\"-\"")
-                .append(" rdtl=-")
-                .append(" rerr=\"")
-                .append(rerr)
-                .append("\"")
-                .append(" ttl=\"-\"")
-                .append(" ans=\"-\"")
-                .toString();
+        return event(dnsAccessRecord, wireParseException).get();
+    }
+
+    public static Supplier<String> event(final DNSAccessRecord dnsAccessRecord, final WireParseException wireParseException) {
+        final long nanoTime = System.nanoTime();
+        final MessageHeader header = MessageHeader.copyOf(dnsAccessRecord.getDnsMessage());
+        return () -> create(dnsAccessRecord, header, "Bad Request:", wireParseException, nanoTime);
     }
 
     public static String create(final DNSAccessRecord dnsAccessRecord, final Exception exception) {
+        return event(dnsAccessRecord, exception).get();
+    }
+
+    /**
+     * Marks the query as failed, as the server failure response is built from it, and captures
+     * its response time so that its access event can be formatted later.
+     *
+     * @param dnsAccessRecord
+     *            the record to log
+     * @param exception
+     *            what went wrong
+     * @return formats the access event
+     */
+    public static Supplier<String> event(final DNSAccessRecord dnsAccessRecord, final Exception exception) {
         final Message dnsMessage = dnsAccessRecord.getDnsMessage();
         dnsMessage.getHeader().setRcode(Rcode.SERVFAIL);
-        final String event = createEvent(dnsAccessRecord);
-
-        final String rerr = "Server Error:" + exception.getClass().getSimpleName() + ":" + exception.getMessage();
+        final long nanoTime = System.nanoTime();
+        final MessageHeader header = MessageHeader.copyOf(dnsMessage);
+        return () -> create(dnsAccessRecord, header, "Server Error:", exception, nanoTime);
+    }
 
-        return new StringBuilder(event)
+    private static String create(final DNSAccessRecord dnsAccessRecord, final MessageHeader header, final String error, final Exception exception, final long nanoTime) {
+        return appendEvent(AccessEventFormat.getStringBuilder(), dnsAccessRecord, header, nanoTime)
                 .append(" rtype=-")
                 .append(" rloc=\"-\"")
                 .append(" rdtl=-")
                 .append(" rerr=\"")
-                .append(rerr)
+                .append(error)
+                .append(exception.getClass().getSimpleName())
+                .append(':')
+                .append(exception.getMessage())
                 .append("\"")
                 .append(" ttl=\"-\"")
                 .append(" ans=\"-\"").toString();
     }
 
-    private static String createQuery(final Record query) {
+    private static void appendQuery(final StringBuilder stringBuilder, final Record query) {
         if (query != null && query.getName() != null) {
-            final String qname = query.getName().toString();
-            final String qtype = Type.string(query.getType());
-            final String qclass = DClass.string(query.getDClass());
-
-            return new StringBuilder()
-                    .append("fqdn=").append(qname)
-                    .append(" type=").append(qtype)
-                    .append(" class=").append(qclass)
-                    .toString();
+            stringBuilder.append("fqdn=").append(query.getName())
+                    .append(" type=").append(Type.string(query.getType()))
+                    .append(" class=").append(DClass.string(query.getDClass()));
+        }
+    }
+
+    /*
+     * The parts of the header of a message that are logged, copied when the event is logged: the
+     * header of a query is shared with the server failure response built from it, which changes it.
+     */
+    private static final class MessageHeader {
+        private final int id;
+        private final int rcode;
+        private final Record question;
+
+        private MessageHeader(final Message dnsMessage) {
+            this.id = dnsMessage.getHeader().getID();
+            this.rcode = dnsMessage.getHeader().getRcode();
+            this.question = dnsMessage.getQuestion();
+        }
+
+        static MessageHeader copyOf(final Message dnsMessage) {
+            return dnsMessage != null ? new MessageHeader(dnsMessage) : null;
         }
-        return "";
     }
 }
@@ -100,6 +100,10 @@ public final class DNSAccessRecord {
             return this;
         }
 
+        ResultType getResultType() {
+            return resultType;
+        }
+
         public Builder resultDetails(final ResultDetails resultDetails) {
             this.resultDetails = resultDetails;
             return this;
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Zone;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+
+/**
+ * Remembers which key of the dynamic zone cache a routing answer was built under, so that a
+ * repeated answer finds its dynamic zone without building and sorting the records of the zone and
+ * hashing them into a {@link ZoneKey} first.
+ * <p>
+ * An answer is identified by the static zone it was built from, the name it is for, the routed
+ * addresses in the order they were selected and whether it is signed. Keys are held weakly, so an
+ * entry goes away along with the dynamic zone it points to, and answers only refer to their static
+ * zone weakly, so that entries don't keep the static zones of a replaced zone cache alive.
+ * </p>
+ */
+class DynamicZoneKeys {
+	private final Cache<Answer, ZoneKey> zoneKeys;
+
+	DynamicZoneKeys(final CacheBuilderSpec spec) {
+		zoneKeys = CacheBuilder.from(spec).weakValues().build();
+	}
+
+	ZoneKey get(final Zone staticZone, final Name name, final List<InetRecord> addresses, final boolean dnssecRequest) {
+		return zoneKeys.getIfPresent(new Answer(staticZone, name, addresses, dnssecRequest));
+	}
+
+	void put(final Zone staticZone, final Name name, final List<InetRecord> addresses, final boolean dnssecRequest, final ZoneKey zoneKey) {
+		// the addresses of a routing result aren't ours to keep
+		zoneKeys.put(new Answer(staticZone, name, new ArrayList<InetRecord>(addresses), dnssecRequest), zoneKey);
+	}
+
+	private static final class Answer {
+		private final WeakReference<Zone> staticZone;
+		private final Name name;
+		private final List<InetRecord> addresses;
+		private final boolean dnssecRequest;
+		private final int hashCode;
+
+		Answer(final Zone staticZone, final Name name, final List<InetRecord> addresses, final boolean dnssecRequest) {
+			this.staticZone = new WeakReference<Zone>(staticZone);
+			this.name = name;
+			this.addresses = addresses;
+			this.dnssecRequest = dnssecRequest;
+			this.hashCode = 31 * (31 * (31 * System.identityHashCode(staticZone) + name.hashCode()) + addresses.hashCode()) + (dnssecRequest ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Answer)) {
+				return false;
+			}
+
+			final Answer answer = (Answer) obj;
+
+			final Zone zone = staticZone.get();
+
+			// static zones are shared and immutable, so the same answer is built from the same instance
+			return zone != null && zone == answer.staticZone.get() && dnssecRequest == answer.dnssecRequest && hashCode == answer.hashCode
+				&& name.equals(answer.name) && addresses.equals(answer.addresses);
+		}
+	}
+}
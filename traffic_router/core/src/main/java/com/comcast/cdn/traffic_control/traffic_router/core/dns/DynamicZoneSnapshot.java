@@ -0,0 +1,252 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.Zone;
+
+/**
+ * A binary snapshot of the dynamic zone cache, so that a restart doesn't have to sign every
+ * dynamic zone again while priming. Records are kept in DNS wire format along with the signing
+ * times of their keys.
+ * <p>
+ * The snapshot is only a source of previous zones: a dynamic zone read from it is used when its
+ * static zone is carried forward, as with the zones of the cache being replaced, and when its
+ * signatures are still short of the refresh horizon. A snapshot written in another format version,
+ * or one that cannot be read, is ignored.
+ * </p>
+ */
+final class DynamicZoneSnapshot {
+	private static final Logger LOGGER = Logger.getLogger(DynamicZoneSnapshot.class);
+	private static final int MAGIC = 0x54524459; // TRDY
+	private static final int VERSION = 1;
+
+	private DynamicZoneSnapshot() {
+	}
+
+	private static void writeTime(final DataOutputStream out, final Calendar calendar) throws IOException {
+		out.writeLong(calendar != null ? calendar.getTimeInMillis() : -1);
+	}
+
+	private static Calendar readTime(final DataInputStream in) throws IOException {
+		final long time = in.readLong();
+
+		if (time < 0) {
+			return null;
+		}
+
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		return calendar;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Record> getRecords(final Zone zone) {
+		final List<Record> records = new ArrayList<Record>();
+		final Iterator<RRset> rrsets = zone.iterator();
+
+		while (rrsets.hasNext()) {
+			final RRset rrset = rrsets.next();
+			final Iterator<Record> rrs = rrset.rrs(false);
+			final Iterator<Record> sigs = rrset.sigs();
+
+			while (rrs.hasNext()) {
+				records.add(rrs.next());
+			}
+
+			while (sigs.hasNext()) {
+				records.add(sigs.next());
+			}
+		}
+
+		return records;
+	}
+
+	static synchronized void write(final File file, final Map<ZoneKey, Zone> zones) {
+		final File tempFile = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(zones.size());
+
+			for (final Map.Entry<ZoneKey, Zone> entry : zones.entrySet()) {
+				final ZoneKey zoneKey = entry.getKey();
+				final List<Record> records = getRecords(entry.getValue());
+				final byte[] origin = zoneKey.getName().toWire();
+
+				out.writeBoolean(zoneKey instanceof SignedZoneKey);
+				out.writeInt(origin.length);
+				out.write(origin);
+				out.writeLong(zoneKey.getTimestamp());
+
+				if (zoneKey instanceof SignedZoneKey) {
+					final SignedZoneKey signedZoneKey = (SignedZoneKey) zoneKey;
+					writeTime(out, signedZoneKey.getSignatureExpiration());
+					writeTime(out, signedZoneKey.getKSKExpiration());
+					writeTime(out, signedZoneKey.getZSKExpiration());
+				}
+
+				out.writeInt(records.size());
+
+				for (final Record record : records) {
+					final byte[] wire = record.toWire(Section.ANSWER);
+					out.writeInt(wire.length);
+					out.write(wire);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to write dynamic zone snapshot " + tempFile.getAbsolutePath() + ": " + e.getMessage());
+			return;
+		}
+
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.info("Wrote " + zones.size() + " dynamic zones to " + file.getAbsolutePath());
+		} catch (IOException e) {
+			LOGGER.warn("Unable to replace dynamic zone snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the dynamic zones of the snapshot by the keys they were built from, or an empty map
+	 *         if there is no usable snapshot
+	 */
+	static Map<ZoneKey, Zone> read(final File file) {
+		final Map<ZoneKey, Zone> zones = new HashMap<ZoneKey, Zone>();
+
+		if (!file.isFile()) {
+			return zones;
+		}
+
+		// read in whole so that every length in the snapshot can be checked against what is left of it
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.info("Ignoring dynamic zone snapshot " + file.getAbsolutePath() + " written in another format");
+				return zones;
+			}
+
+			final int size = in.readInt();
+			final long now = System.currentTimeMillis();
+
+			for (int i = 0; i < size; i++) {
+				readZone(in, zones, now);
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Unable to read dynamic zone snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+			zones.clear();
+		}
+
+		LOGGER.info("Read " + zones.size() + " dynamic zones from " + file.getAbsolutePath());
+		return zones;
+	}
+
+	/**
+	 * Reads the length of what follows in the snapshot.
+	 *
+	 * @param minimumSize
+	 *            the fewest bytes each of the things counted by the length takes up
+	 * @throws IOException
+	 *             if there aren't enough bytes left in the snapshot for the length
+	 */
+	private static int readLength(final DataInputStream in, final int minimumSize) throws IOException {
+		final int length = in.readInt();
+
+		if (length < 0 || (long) length * minimumSize > in.available()) {
+			throw new IOException("length " + length + " runs past the end of the snapshot");
+		}
+
+		return length;
+	}
+
+	private static byte[] readBytes(final DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[readLength(in, 1)];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static Record[] readRecords(final DataInputStream in, final List<Record> records) throws IOException {
+		// each record is at least its length
+		final Record[] zoneRecords = new Record[readLength(in, 4)];
+
+		for (int i = 0; i < zoneRecords.length; i++) {
+			zoneRecords[i] = Record.fromWire(readBytes(in), Section.ANSWER);
+
+			// the key holds the records the zone was built from, before signing
+			if (zoneRecords[i].getType() != Type.RRSIG && zoneRecords[i].getType() != Type.NSEC) {
+				records.add(zoneRecords[i]);
+			}
+		}
+
+		return zoneRecords;
+	}
+
+	private static void readZone(final DataInputStream in, final Map<ZoneKey, Zone> zones, final long now) throws IOException {
+		final boolean signed = in.readBoolean();
+		final Name origin = new Name(readBytes(in));
+		final long timestamp = in.readLong();
+
+		if (!signed) {
+			final List<Record> records = new ArrayList<Record>();
+			final Record[] zoneRecords = readRecords(in, records);
+			final ZoneKey zoneKey = new ZoneKey(origin, records);
+			zoneKey.setTimestamp(timestamp);
+			zones.put(zoneKey, new Zone(origin, zoneRecords));
+			return;
+		}
+
+		final Calendar signatureExpiration = readTime(in);
+		final Calendar kskExpiration = readTime(in);
+		final Calendar zskExpiration = readTime(in);
+		final List<Record> records = new ArrayList<Record>();
+		final Record[] zoneRecords = readRecords(in, records);
+
+		if (signatureExpiration == null || kskExpiration == null || zskExpiration == null) {
+			return;
+		}
+
+		final SignedZoneKey zoneKey = new SignedZoneKey(origin, records);
+		zoneKey.setTimestamp(timestamp);
+		zoneKey.setSignatureExpiration(signatureExpiration);
+		zoneKey.setKSKExpiration(kskExpiration);
+		zoneKey.setZSKExpiration(zskExpiration);
+
+		if (now < zoneKey.getRefreshHorizon()) {
+			zones.put(zoneKey, new SignedZone(origin, zoneRecords));
+		}
+	}
+}
@@ -39,6 +39,7 @@ import org.xbill.DNS.Zone;
 import org.xbill.DNS.EDNSOption;
 import org.xbill.DNS.ClientSubnetOption;
 
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouterManager;
 
 
@@ -51,6 +52,7 @@ public class NameServer {
 
 	private static final Logger LOGGER = Logger.getLogger(NameServer.class);
 	private boolean ecsEnable = false;
+	private ResponseCache responseCache;
 	/**
 	 * 
 	 */
@@ -146,7 +148,7 @@ public class NameServer {
 			// Check if we had incoming ClientSubnetOption in Option RR, then we need
 			// to return with the response, setting the scope subnet as well
 			if ((nmask != 0) && (isEcsEnable())) {
-				final ClientSubnetOption cso = new ClientSubnetOption(nmask, nmask, ipaddr);
+				final ClientSubnetOption cso = new ClientSubnetOption(nmask, getScopeNetmask(nmask, ipaddr, builder), ipaddr);
 				final List<ClientSubnetOption> csoList = new ArrayList<ClientSubnetOption>(1);
 				csoList.add(cso);	
 				// OptRecord Arguments: payloadSize = 1280, xrcode = 0, version=0, flags=0, option List
@@ -162,6 +164,20 @@ public class NameServer {
 		}
 	}
 
+	/**
+	 * Answers routed by coverage zone hold for every client of the coverage zone network, so their
+	 * scope is the part of the address that decides the network, which may be shorter or longer
+	 * than the subnet the client gave. Other answers are scoped to the subnet the client gave.
+	 */
+	private int getScopeNetmask(final int sourceNetmask, final InetAddress address, final DNSAccessRecord.Builder builder) {
+		if (builder.getResultType() != ResultType.CZ) {
+			return sourceNetmask;
+		}
+
+		final int scopeNetmask = trafficRouterManager.getTrafficRouter().getCoverageZoneScope(address);
+		return scopeNetmask >= 0 ? scopeNetmask : sourceNetmask;
+	}
+
 	private static void addAuthority(final Zone zone, final Message response, final int flags) {
 		final RRset authority = zone.getNS();
 		addRRset(authority.getName(), response, authority, Section.AUTHORITY, flags);
@@ -181,13 +197,29 @@ public class NameServer {
 		}
 	}
 
-	@SuppressWarnings({"unchecked", "PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
 	private static void addDenialOfExistence(final Name qname, final Zone zone, final Message response, final int flags) {
 		// The requirements for this are described in RFC 7129
 		if ((flags & (FLAG_SIGONLY | FLAG_DNSSECOK)) == 0) {
 			return;
 		}
 
+		final RRset nsecSpan = zone instanceof SignedZone ? ((SignedZone) zone).getCoveringNsec(qname) : findCoveringNsec(qname, zone);
+
+		if (nsecSpan != null) {
+			addRRset(nsecSpan.getName(), response, nsecSpan, Section.AUTHORITY, flags);
+		}
+
+		final SetResponse nxsr = zone.findRecords(zone.getOrigin(), Type.NSEC);
+		if (nxsr.isSuccessful()) {
+			for (final RRset answer : nxsr.answers()) {
+				addRRset(qname, response, answer, Section.AUTHORITY, flags);
+			}
+		}
+	}
+
+	// walks the whole zone; only used for zones that weren't built as a SignedZone
+	@SuppressWarnings({"unchecked", "PMD.CyclomaticComplexity"})
+	private static RRset findCoveringNsec(final Name qname, final Zone zone) {
 		RRset nsecSpan = null;
 		Name candidate = null;
 
@@ -215,16 +247,7 @@ public class NameServer {
 			}
 		}
 
-		if (candidate != null && nsecSpan != null) {
-			addRRset(candidate, response, nsecSpan, Section.AUTHORITY, flags);
-		}
-
-		final SetResponse nxsr = zone.findRecords(zone.getOrigin(), Type.NSEC);
-		if (nxsr.isSuccessful()) {
-			for (final RRset answer : nxsr.answers()) {
-				addRRset(qname, response, answer, Section.AUTHORITY, flags);
-			}
-		}
+		return candidate != null ? nsecSpan : null;
 	}
 
 	private static void addQuestion(final Message request, final Message response) {
@@ -424,7 +447,31 @@ public class NameServer {
 	}
 
 	public void setEcsEnable(final boolean ecsEnable) {
+		// cached responses carry the client subnet option only when it is enabled
+		if (responseCache != null && this.ecsEnable != ecsEnable) {
+			responseCache.invalidateAll();
+		}
+
 		this.ecsEnable = ecsEnable;
 	}
 
+	/**
+	 * Gets the cache of responses answered from the static zones.
+	 *
+	 * @return the response cache or null if responses are not cached
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Sets the number of responses to cache; zero disables the response cache.
+	 *
+	 * @param responseCacheSize
+	 *            the maximum number of cached responses
+	 */
+	public void setResponseCacheSize(final int responseCacheSize) {
+		this.responseCache = responseCacheSize > 0 ? new ResponseCache(responseCacheSize) : null;
+	}
+
 }
@@ -0,0 +1,128 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+import org.xbill.DNS.Master;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.Zone;
+
+/**
+ * Reads back the zone files written to the zone directory by an earlier run, so that a restart can
+ * carry forward the zones whose records haven't changed, signatures included, instead of signing
+ * every zone again.
+ * <p>
+ * The key of a persisted zone holds its records without the NSEC and RRSIG records that signing
+ * added, so it compares to a newly generated key the same way the key of a cached zone does.
+ * Signed zones are only read back when their signatures are still short of the refresh horizon.
+ * </p>
+ */
+final class PersistedZones {
+	private static final Logger LOGGER = Logger.getLogger(PersistedZones.class);
+
+	private PersistedZones() {
+	}
+
+	/**
+	 * @param keyExpirations
+	 *            sets the KSK and ZSK expirations of a signed zone key from the current signing
+	 *            keys, returning false when there are no keys to sign the zone with
+	 * @return the persisted zones by the keys they would have been built from
+	 */
+	static Map<ZoneKey, Zone> read(final File zoneDirectory, final Predicate<SignedZoneKey> keyExpirations) {
+		final Map<ZoneKey, Zone> zones = new HashMap<ZoneKey, Zone>();
+		final File[] files = zoneDirectory != null ? zoneDirectory.listFiles() : null;
+
+		if (files == null) {
+			return zones;
+		}
+
+		for (final File file : files) {
+			// zone files are named after the origin; anything else is a partial write
+			if (!file.isFile() || !file.getName().endsWith(".")) {
+				continue;
+			}
+
+			try {
+				read(file, keyExpirations, zones);
+			} catch (IOException | RuntimeException e) {
+				LOGGER.warn("Unable to read persisted zone " + file.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+
+		LOGGER.info("Read " + zones.size() + " persisted zones from " + zoneDirectory.getAbsolutePath());
+		return zones;
+	}
+
+	private static void read(final File file, final Predicate<SignedZoneKey> keyExpirations, final Map<ZoneKey, Zone> zones) throws IOException {
+		final Name origin = Name.fromString(file.getName());
+		final List<Record> zoneRecords = new ArrayList<Record>();
+		final List<Record> records = new ArrayList<Record>();
+		long inception = Long.MAX_VALUE;
+
+		try (InputStream in = new FileInputStream(file)) {
+			final Master master = new Master(in, origin);
+			Record record;
+
+			while ((record = master.nextRecord()) != null) {
+				zoneRecords.add(record);
+
+				if (record.getType() == Type.RRSIG) {
+					inception = Math.min(inception, ((RRSIGRecord) record).getTimeSigned().getTime());
+				} else if (record.getType() != Type.NSEC) {
+					records.add(record);
+				}
+			}
+		}
+
+		final Record[] recordArray = zoneRecords.toArray(new Record[zoneRecords.size()]);
+
+		if (inception == Long.MAX_VALUE) {
+			zones.put(new ZoneKey(origin, records), new Zone(origin, recordArray));
+			return;
+		}
+
+		final Zone zone = new SignedZone(origin, recordArray);
+		final SignedZoneKey zoneKey = new SignedZoneKey(origin, records);
+		final Calendar signatureExpiration = UnchangedZones.getSignatureExpiration(zone);
+
+		// signing starts an hour before the zone key's timestamp; see SignatureManager.signZone
+		zoneKey.setTimestamp(inception + TimeUnit.HOURS.toMillis(1));
+		zoneKey.setSignatureExpiration(signatureExpiration);
+
+		if (!keyExpirations.test(zoneKey) || System.currentTimeMillis() >= zoneKey.getRefreshHorizon()) {
+			LOGGER.debug("Persisted zone " + origin + " needs to be signed again");
+			return;
+		}
+
+		zones.put(zoneKey, zone);
+	}
+}
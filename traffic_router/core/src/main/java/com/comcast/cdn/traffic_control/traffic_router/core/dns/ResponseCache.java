@@ -0,0 +1,183 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of serialized responses that did not depend on the client, i.e. answers served
+ * straight from the static zones without routing.
+ * <p>
+ * Entries are keyed on the request without its message ID. Everything else in a response to such
+ * a query - the question, the echoed RD flag, the OPT record with its DO bit and client subnet - is
+ * derived from those bytes, so a hit only needs the ID patched. Entries are discarded once the
+ * static zones change, as tracked by {@link ZoneManager#getZoneGeneration()}.
+ * </p>
+ */
+public class ResponseCache {
+	private static final int ID_LENGTH = 2;
+
+	private final Cache<ByteBuffer, CachedResponse> cache;
+
+	public ResponseCache(final long maximumSize) {
+		cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	/**
+	 * Finds the cached response to a request.
+	 *
+	 * @param request
+	 *            the DNS request in wire format
+	 * @param maxLength
+	 *            the maximum length of the response
+	 * @return the cached response or null if there is none that fits
+	 */
+	public CachedResponse get(final byte[] request, final int maxLength) {
+		if (request.length <= ID_LENGTH) {
+			return null;
+		}
+
+		final ByteBuffer key = getKey(request);
+		final CachedResponse response = cache.getIfPresent(key);
+
+		if (response == null) {
+			return null;
+		}
+
+		if (response.generation != ZoneManager.getZoneGeneration()) {
+			cache.invalidate(key);
+			return null;
+		}
+
+		return response.wire.length <= maxLength ? response : null;
+	}
+
+	/**
+	 * Caches a response if it can be replayed to other clients sending the same request.
+	 *
+	 * @param request
+	 *            the DNS request in wire format
+	 * @param dnsAccessRecord
+	 *            the access record of the request, holding the response message
+	 * @param wire
+	 *            the response in wire format
+	 */
+	public void put(final byte[] request, final DNSAccessRecord dnsAccessRecord, final byte[] wire) {
+		final Message response = dnsAccessRecord.getDnsMessage();
+
+		if (request.length <= ID_LENGTH || !isCacheable(dnsAccessRecord, response, wire)) {
+			return;
+		}
+
+		// the client only differs from the resolver when it was taken from a client subnet option
+		final InetAddress client = dnsAccessRecord.getClient() == dnsAccessRecord.getResolver() ? null : dnsAccessRecord.getClient();
+		cache.put(getKey(request), new CachedResponse(response, wire, client, ZoneManager.getZoneGeneration()));
+	}
+
+	@SuppressWarnings("PMD.CyclomaticComplexity")
+	private static boolean isCacheable(final DNSAccessRecord dnsAccessRecord, final Message response, final byte[] wire) {
+		// routed answers depend on the client
+		if (dnsAccessRecord.getResultType() != null || response == null) {
+			return false;
+		}
+
+		final int rcode = response.getHeader().getRcode();
+
+		if (rcode != Rcode.NOERROR && rcode != Rcode.NXDOMAIN) {
+			return false;
+		}
+
+		// truncated responses depend on the transport
+		if ((wire[ID_LENGTH] & 0x02) != 0 || response.getHeader().getFlag(Flags.TC)) {
+			return false;
+		}
+
+		// multiple addresses are shuffled per response to spread clients across them; keep doing so
+		for (final RRset rrset : response.getSectionRRsets(Section.ANSWER)) {
+			if ((rrset.getType() == Type.A || rrset.getType() == Type.AAAA) && rrset.size() > 1) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static ByteBuffer getKey(final byte[] request) {
+		return ByteBuffer.wrap(Arrays.copyOfRange(request, ID_LENGTH, request.length));
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	public static class CachedResponse {
+		private final Message message;
+		private final byte[] wire;
+		private final InetAddress client;
+		private final long generation;
+
+		CachedResponse(final Message message, final byte[] wire, final InetAddress client, final long generation) {
+			this.message = message;
+			this.wire = wire;
+			this.client = client;
+			this.generation = generation;
+		}
+
+		/**
+		 * @return a copy of the response message for access logging, carrying the given message ID
+		 */
+		public Message getMessage(final int id) {
+			final Message copy = (Message) message.clone();
+			copy.getHeader().setID(id);
+			return copy;
+		}
+
+		/**
+		 * @return a copy of the response in wire format, carrying the given message ID
+		 */
+		public byte[] getWire(final int id) {
+			final byte[] copy = Arrays.copyOf(wire, wire.length);
+			copy[0] = (byte) (id >>> 8);
+			copy[1] = (byte) id;
+			return copy;
+		}
+
+		/**
+		 * @return the client subnet address the response was produced for, or null if the response
+		 *         was produced for the resolver
+		 */
+		public InetAddress getClient() {
+			return client;
+		}
+	}
+}
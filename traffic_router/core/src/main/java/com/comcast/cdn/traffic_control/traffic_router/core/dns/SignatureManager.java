@@ -422,6 +422,37 @@ public final class SignatureManager {
 		return sb.toString();
 	}
 
+	/**
+	 * Sets the KSK and ZSK expirations of a zone that was signed by an earlier run to those of the
+	 * keys it would be signed with now.
+	 *
+	 * @return false if there are no keys to sign the zone with
+	 */
+	protected boolean setKeyExpirations(final SignedZoneKey zoneKey) {
+		// a zone signed by an earlier run has no keys to go with it once DNSSEC is turned off
+		if (!isDnssecEnabled() || keyMap == null) {
+			return false;
+		}
+
+		final long maxTTL = ZoneUtils.getMaximumTTL(zoneKey.getRecords());
+
+		try {
+			final List<DnsSecKeyPair> kskPairs = getZoneSigningKSKPair(zoneKey.getName(), maxTTL);
+			final List<DnsSecKeyPair> zskPairs = getZoneSigningZSKPair(zoneKey.getName(), maxTTL);
+
+			if (kskPairs == null || zskPairs == null || kskPairs.isEmpty() || zskPairs.isEmpty()) {
+				return false;
+			}
+
+			zoneKey.setKSKExpiration(calculateKeyExpiration(kskPairs));
+			zoneKey.setZSKExpiration(calculateKeyExpiration(zskPairs));
+			return true;
+		} catch (IOException | NoSuchAlgorithmException e) {
+			LOGGER.warn("Unable to find the signing keys of " + zoneKey.getName() + ": " + e.getMessage());
+			return false;
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	protected List<Record> signZone(final Name name, final List<Record> records, final SignedZoneKey zoneKey) throws IOException, GeneralSecurityException {
 		final long maxTTL = ZoneUtils.getMaximumTTL(records);
@@ -0,0 +1,89 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.Zone;
+
+/**
+ * A zone built from the output of the {@link ZoneSigner}, with its NSEC chain indexed in
+ * canonical order so that the NSEC record covering a name that doesn't exist, along with its
+ * RRSIGs, is found by a binary search instead of a walk over the whole zone.
+ */
+public class SignedZone extends Zone {
+	private static final long serialVersionUID = 1L;
+
+	private final Name[] nsecNames;
+	private final RRset[] nsecSets;
+
+	@SuppressWarnings("unchecked")
+	public SignedZone(final Name origin, final Record[] records) throws IOException {
+		super(origin, records);
+
+		final List<RRset> nsecs = new ArrayList<RRset>();
+		final Iterator<RRset> rrsets = iterator();
+
+		while (rrsets.hasNext()) {
+			final RRset rrset = rrsets.next();
+
+			if (rrset.getType() == Type.NSEC) {
+				nsecs.add(rrset);
+			}
+		}
+
+		// Name.compareTo is the canonical ordering of RFC 4034, which the NSEC chain follows
+		nsecs.sort((rrset1, rrset2) -> rrset1.getName().compareTo(rrset2.getName()));
+
+		nsecNames = new Name[nsecs.size()];
+		nsecSets = nsecs.toArray(new RRset[nsecs.size()]);
+
+		for (int i = 0; i < nsecSets.length; i++) {
+			nsecNames[i] = nsecSets[i].getName();
+		}
+	}
+
+	/**
+	 * @param qname
+	 *            a name in this zone
+	 * @return the NSEC RRset of the closest name before qname in canonical order, which covers
+	 *         qname when it doesn't exist, or null if the zone has no NSEC records
+	 */
+	public RRset getCoveringNsec(final Name qname) {
+		if (nsecSets.length == 0) {
+			return null;
+		}
+
+		final int index = Arrays.binarySearch(nsecNames, qname);
+
+		if (index >= 0) {
+			return nsecSets[index];
+		}
+
+		final int insertionPoint = -index - 1;
+
+		// a name before the first owner is covered by the last NSEC, which wraps around to the apex
+		return nsecSets[insertionPoint > 0 ? insertionPoint - 1 : nsecSets.length - 1];
+	}
+}
@@ -44,7 +44,10 @@ public class SignedZoneKey extends ZoneKey {
 	}
 
 	public long getRefreshHorizon() {
-		return getTimestamp() + Math.round((double) getSignatureDuration() / 2.0); // force a refresh when we're halfway through our validity period
+		// force a refresh somewhere between halfway and three quarters through our validity period;
+		// spreading zones out by name keeps zones signed together from all being refreshed together
+		final double spread = (getName().hashCode() & Integer.MAX_VALUE) % 1000 / 1000.0;
+		return getTimestamp() + Math.round((double) getSignatureDuration() * (0.5 + spread / 4.0));
 	}
 
 	public long getEarliestSigningKeyExpiration() {
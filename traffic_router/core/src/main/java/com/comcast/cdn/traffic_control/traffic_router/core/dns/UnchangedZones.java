@@ -0,0 +1,218 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Zone;
+
+import com.google.common.cache.LoadingCache;
+
+/**
+ * The static zones of the zone cache being replaced, so that a rebuild only has to generate and
+ * sign the zones whose records changed.
+ * <p>
+ * A zone is carried forward when the new snapshot produces the same records for it, with the same
+ * TTLs, ignoring the serial of its SOA record; the serial follows the snapshot time, so it would
+ * otherwise change on nearly every rebuild. Changes to delivery services, caches and DNSSEC keys
+ * all change the records of the zones they affect. A carried forward zone keeps the serial it was
+ * built with until it is next rebuilt or re-signed.
+ * </p>
+ * <p>
+ * Signed zones get a new key that is independent of the old cache. Its signature expiration comes
+ * from the RRSIG records of the zone itself, so a re-signing that the old cache finished while the
+ * rebuild was running can't make the new cache think the zone was signed more recently than it
+ * was. The dynamic zones of carried forward zones are carried forward too, as their content depends
+ * only on their records.
+ * </p>
+ */
+class UnchangedZones {
+	private final Map<Name, ZoneKey> keys = new HashMap<Name, ZoneKey>();
+	private final Map<ZoneKey, Zone> zones;
+	private final Set<Name> carriedForward = ConcurrentHashMap.newKeySet();
+
+	UnchangedZones(final LoadingCache<ZoneKey, Zone> zoneCache) {
+		this(zoneCache != null ? new HashMap<ZoneKey, Zone>(zoneCache.asMap()) : Collections.<ZoneKey, Zone>emptyMap());
+	}
+
+	/**
+	 * @param zones
+	 *            the previous zones by the keys they were built from, such as those read back by
+	 *            {@link PersistedZones}
+	 */
+	UnchangedZones(final Map<ZoneKey, Zone> zones) {
+		this.zones = zones;
+
+		for (final ZoneKey zoneKey : zones.keySet()) {
+			keys.put(zoneKey.getName(), zoneKey);
+		}
+	}
+
+	boolean isEmpty() {
+		return zones.isEmpty();
+	}
+
+	int size() {
+		return carriedForward.size();
+	}
+
+	/**
+	 * @param zoneKey
+	 *            the key generated for a zone of the new snapshot
+	 * @return the zone built from the same records last time, or null if the zone has to be built
+	 */
+	Zone carryForward(final ZoneKey zoneKey) {
+		final ZoneKey previousKey = keys.get(zoneKey.getName());
+
+		if (previousKey == null || previousKey.getClass() != zoneKey.getClass() || !isUnchanged(previousKey.getRecords(), zoneKey.getRecords())) {
+			return null;
+		}
+
+		final Zone zone = zones.get(previousKey);
+
+		if (zone == null) {
+			return null;
+		}
+
+		if (zoneKey instanceof SignedZoneKey && !copySigningTimes((SignedZoneKey) previousKey, (SignedZoneKey) zoneKey, zone)) {
+			return null;
+		}
+
+		carriedForward.add(zoneKey.getName());
+		return zone;
+	}
+
+	/**
+	 * Copies the dynamic zones of every zone that was carried forward.
+	 */
+	void carryForwardDynamicZones(final LoadingCache<ZoneKey, Zone> previousDynamicZoneCache, final LoadingCache<ZoneKey, Zone> dynamicZoneCache) {
+		if (previousDynamicZoneCache != null) {
+			carryForwardDynamicZones(previousDynamicZoneCache.asMap(), dynamicZoneCache);
+		}
+	}
+
+	/**
+	 * Copies the dynamic zones of every zone that was carried forward.
+	 *
+	 * @param previousDynamicZones
+	 *            the previous dynamic zones by the keys they were built from, such as those read
+	 *            back from a {@link DynamicZoneSnapshot}
+	 */
+	void carryForwardDynamicZones(final Map<ZoneKey, Zone> previousDynamicZones, final LoadingCache<ZoneKey, Zone> dynamicZoneCache) {
+		if (carriedForward.isEmpty()) {
+			return;
+		}
+
+		for (final Map.Entry<ZoneKey, Zone> entry : previousDynamicZones.entrySet()) {
+			final ZoneKey previousKey = entry.getKey();
+
+			if (!carriedForward.contains(previousKey.getName())) {
+				continue;
+			}
+
+			if (!(previousKey instanceof SignedZoneKey)) {
+				dynamicZoneCache.put(previousKey, entry.getValue());
+				continue;
+			}
+
+			final SignedZoneKey zoneKey = new SignedZoneKey(previousKey.getName(), new ArrayList<Record>(previousKey.getRecords()));
+
+			if (copySigningTimes((SignedZoneKey) previousKey, zoneKey, entry.getValue())) {
+				dynamicZoneCache.put(zoneKey, entry.getValue());
+			}
+		}
+	}
+
+	private static boolean copySigningTimes(final SignedZoneKey previousKey, final SignedZoneKey zoneKey, final Zone zone) {
+		final Calendar signatureExpiration = getSignatureExpiration(zone);
+
+		if (signatureExpiration == null || previousKey.getKSKExpiration() == null || previousKey.getZSKExpiration() == null) {
+			return false;
+		}
+
+		zoneKey.setTimestamp(previousKey.getTimestamp());
+		zoneKey.setSignatureExpiration(signatureExpiration);
+		zoneKey.setKSKExpiration(previousKey.getKSKExpiration());
+		zoneKey.setZSKExpiration(previousKey.getZSKExpiration());
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	static Calendar getSignatureExpiration(final Zone zone) {
+		Calendar signatureExpiration = null;
+		final Iterator<RRset> rrsets = zone.iterator();
+
+		while (rrsets.hasNext()) {
+			final Iterator<RRSIGRecord> sigs = rrsets.next().sigs();
+
+			while (sigs.hasNext()) {
+				final long expire = sigs.next().getExpire().getTime();
+
+				if (signatureExpiration == null || expire < signatureExpiration.getTimeInMillis()) {
+					signatureExpiration = Calendar.getInstance();
+					signatureExpiration.setTimeInMillis(expire);
+				}
+			}
+		}
+
+		return signatureExpiration;
+	}
+
+	// both lists are sorted by the ZoneKey constructor
+	static boolean isUnchanged(final List<Record> previousRecords, final List<Record> records) {
+		if (previousRecords.size() != records.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < records.size(); i++) {
+			final Record previousRecord = previousRecords.get(i);
+			final Record record = records.get(i);
+
+			if (previousRecord.getTTL() != record.getTTL()) {
+				return false;
+			}
+
+			if (previousRecord instanceof SOARecord && record instanceof SOARecord) {
+				if (!isSameExceptSerial((SOARecord) previousRecord, (SOARecord) record)) {
+					return false;
+				}
+			} else if (!previousRecord.equals(record)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isSameExceptSerial(final SOARecord previous, final SOARecord soa) {
+		return previous.getName().equals(soa.getName()) && previous.getDClass() == soa.getDClass() && previous.getHost().equals(soa.getHost())
+			&& previous.getAdmin().equals(soa.getAdmin()) && previous.getRefresh() == soa.getRefresh() && previous.getRetry() == soa.getRetry()
+			&& previous.getExpire() == soa.getExpire() && previous.getMinimum() == soa.getMinimum();
+	}
+}
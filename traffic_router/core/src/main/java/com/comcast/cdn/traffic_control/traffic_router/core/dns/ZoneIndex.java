@@ -0,0 +1,117 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Zone;
+
+/**
+ * Immutable suffix index over the origins of the static zones, stored as a trie keyed on
+ * reversed DNS labels. Built once per zone cache (re)initialization so that finding the
+ * {@link Zone} that encloses a query name is a walk of at most one node per label instead
+ * of a copy and sort of every {@link ZoneKey}.
+ */
+public class ZoneIndex {
+	private final Node root = new Node();
+	private final Map<ZoneKey, Zone> zones;
+
+	/**
+	 * @param zoneKeys
+	 *            the keys of the zones to index
+	 * @param zones
+	 *            the live view of the zone cache used to resolve a key to its current Zone
+	 */
+	public ZoneIndex(final Collection<ZoneKey> zoneKeys, final Map<ZoneKey, Zone> zones) {
+		this.zones = zones;
+
+		for (final ZoneKey zoneKey : zoneKeys) {
+			final Name origin = zoneKey.getName();
+			Node node = root;
+
+			for (int i = origin.labels() - 2; i >= 0; i--) {
+				node = node.getOrCreateChild(origin.getLabelString(i).toLowerCase());
+			}
+
+			if (node.zoneKey == null) {
+				node.zoneKey = zoneKey;
+			}
+		}
+	}
+
+	/**
+	 * Finds the zone that would contain the specified name.
+	 *
+	 * @param name
+	 *            the Name to find the enclosing Zone of
+	 * @param superDomainFirst
+	 *            when true the shallowest enclosing zone is returned (e.g. for DS queries, which are
+	 *            answered from the parent), otherwise the closest enclosing zone is returned
+	 * @return the enclosing Zone or null if no indexed zone contains the name
+	 */
+	public Zone getZone(final Name name, final boolean superDomainFirst) {
+		Node node = root;
+		Zone result = getZone(node);
+
+		for (int i = name.labels() - 2; i >= 0; i--) {
+			if (result != null && superDomainFirst) {
+				break;
+			}
+
+			node = node.getChild(name.getLabelString(i).toLowerCase());
+
+			if (node == null) {
+				break;
+			}
+
+			final Zone zone = getZone(node);
+
+			if (zone != null) {
+				result = zone;
+			}
+		}
+
+		return result;
+	}
+
+	private Zone getZone(final Node node) {
+		if (node.zoneKey == null) {
+			return null;
+		}
+
+		return zones.get(node.zoneKey);
+	}
+
+	private static class Node {
+		private Map<String, Node> children;
+		private ZoneKey zoneKey;
+
+		private Node getChild(final String label) {
+			return children != null ? children.get(label) : null;
+		}
+
+		private Node getOrCreateChild(final String label) {
+			if (children == null) {
+				children = new HashMap<>();
+			}
+
+			return children.computeIfAbsent(label, l -> new Node());
+		}
+	}
+}
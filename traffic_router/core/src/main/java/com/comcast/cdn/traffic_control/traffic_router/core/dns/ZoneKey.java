@@ -71,7 +71,7 @@ public class ZoneKey implements Comparable<ZoneKey> {
 		return timestamp;
 	}
 
-	private void setTimestamp(final long timestamp) {
+	void setTimestamp(final long timestamp) {
 		this.timestamp = timestamp;
 	}
 
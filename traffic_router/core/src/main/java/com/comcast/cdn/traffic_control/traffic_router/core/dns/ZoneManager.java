@@ -18,6 +18,8 @@ package com.comcast.cdn.traffic_control.traffic_router.core.dns;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -42,6 +44,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouterManager;
@@ -93,7 +96,10 @@ public class ZoneManager extends Resolver {
 
 	private final TrafficRouter trafficRouter;
 	private static LoadingCache<ZoneKey, Zone> dynamicZoneCache = null;
+	private static DynamicZoneKeys dynamicZoneKeys = null;
 	private static LoadingCache<ZoneKey, Zone> zoneCache = null;
+	private static volatile ZoneIndex zoneIndex = null;
+	private static final AtomicLong zoneGeneration = new AtomicLong();
 	private static ScheduledExecutorService zoneMaintenanceExecutor = null;
 	private static ExecutorService zoneExecutor = null;
 	private static final int DEFAULT_PRIMER_LIMIT = 500;
@@ -122,6 +128,7 @@ public class ZoneManager extends Resolver {
 	}
 
 	public static void destroy() {
+		writeDynamicZoneSnapshot();
 		zoneMaintenanceExecutor.shutdownNow();
 		zoneExecutor.shutdownNow();
 		signatureManager.destroy();
@@ -179,21 +186,33 @@ public class ZoneManager extends Resolver {
 			final List<Runnable> generationTasks = new ArrayList<>();
 			final BlockingQueue<Runnable> primingTasks = new LinkedBlockingQueue<>();
 
-			final ExecutorService ze = Executors.newFixedThreadPool(poolSize);
+			// refreshes sign zones ahead of their expiration in the background; fewer threads leave more of the cores to queries
+			final ExecutorService ze = Executors.newFixedThreadPool(Math.max(JsonUtils.optInt(config, "zonemanager.refresh.threads", poolSize), 1));
 			final ScheduledExecutorService me = Executors.newScheduledThreadPool(2); // 2 threads, one for static, one for dynamic, threads to refresh zones
 			final int maintenanceInterval = JsonUtils.optInt(config, "zonemanager.cache.maintenance.interval", 300); // default 5 minutes
 			final int initTimeout = JsonUtils.optInt(config, "zonemanager.init.timeout", 10);
 
-			final LoadingCache<ZoneKey, Zone> dzc = createZoneCache(ZoneCacheType.DYNAMIC, getDynamicZoneCacheSpec(config, poolSize));
+			final CacheBuilderSpec dynamicZoneCacheSpec = getDynamicZoneCacheSpec(config, poolSize);
+			final LoadingCache<ZoneKey, Zone> dzc = createZoneCache(ZoneCacheType.DYNAMIC, dynamicZoneCacheSpec);
+			final DynamicZoneKeys dzk = new DynamicZoneKeys(dynamicZoneCacheSpec);
 			final LoadingCache<ZoneKey, Zone> zc = createZoneCache(ZoneCacheType.STATIC);
-
-			initZoneDirectory();
+			// on startup, zones written by the last run can be carried forward without signing them again
+			final UnchangedZones unchangedZones = ZoneManager.zoneCache != null ? new UnchangedZones(ZoneManager.zoneCache)
+				: new UnchangedZones(PersistedZones.read(zoneDirectory, signatureManager::setKeyExpirations));
+			final Map<ZoneKey, Zone> previousDynamicZones = ZoneManager.dynamicZoneCache != null ? ZoneManager.dynamicZoneCache.asMap()
+				: readDynamicZoneSnapshot(unchangedZones);
+
+			// zones that are carried forward aren't written again
+			if (unchangedZones.isEmpty()) {
+				initZoneDirectory();
+			}
 
 			try {
 				LOGGER.info("Generating zone data");
-				generateZones(tr, zc, dzc, generationTasks, primingTasks);
+				generateZones(tr, zc, dzc, generationTasks, primingTasks, unchangedZones);
 				initExecutor.invokeAll(generationTasks.stream().map(Executors::callable).collect(Collectors.toList()));
-				LOGGER.info("Zone generation complete");
+				unchangedZones.carryForwardDynamicZones(previousDynamicZones, dzc);
+				LOGGER.info("Zone generation complete; carried forward " + unchangedZones.size() + " of " + zc.size() + " zones");
 				final Instant primingStart = Instant.now();
 				final List<Future<Object>> futures = initExecutor.invokeAll(primingTasks.stream().map(Executors::callable).collect(Collectors.toList()), initTimeout, TimeUnit.MINUTES);
 				final Instant primingEnd = Instant.now();
@@ -214,7 +233,15 @@ public class ZoneManager extends Resolver {
 				ZoneManager.zoneExecutor = ze;
 				ZoneManager.zoneMaintenanceExecutor = me;
 				ZoneManager.dynamicZoneCache = dzc;
+				ZoneManager.dynamicZoneKeys = dzk;
 				ZoneManager.zoneCache = zc;
+				ZoneManager.zoneIndex = new ZoneIndex(zc.asMap().keySet(), zc.asMap());
+				zoneGeneration.incrementAndGet();
+				removeStaleZoneFiles(zc);
+
+				// don't hold up other zone cache initialization while the snapshot is written
+				final File snapshot = getDynamicZoneSnapshot();
+				ze.execute(() -> writeDynamicZoneSnapshot(snapshot, dzc));
 
 				if (tze != null) {
 					tze.shutdownNow();
@@ -286,6 +313,53 @@ public class ZoneManager extends Resolver {
 		}
 	}
 
+	private static void removeStaleZoneFiles(final LoadingCache<ZoneKey, Zone> zc) {
+		synchronized(LOGGER) {
+			final String[] entries = zoneDirectory.list();
+
+			if (entries == null) {
+				return;
+			}
+
+			final Set<String> origins = new HashSet<>();
+
+			for (final ZoneKey zoneKey : zc.asMap().keySet()) {
+				origins.add(zoneKey.getName().toString());
+			}
+
+			for (final String entry : entries) {
+				if (!origins.contains(entry) && !new File(zoneDirectory.getPath(), entry).delete()) {
+					LOGGER.warn("Unable to delete " + entry + " from " + zoneDirectory);
+				}
+			}
+		}
+	}
+
+	private static File getDynamicZoneSnapshot() {
+		return zoneDirectory != null ? new File(zoneDirectory.getPath() + "-dynamic.snapshot") : null;
+	}
+
+	private static Map<ZoneKey, Zone> readDynamicZoneSnapshot(final UnchangedZones unchangedZones) {
+		final File snapshot = getDynamicZoneSnapshot();
+
+		// dynamic zones are only carried forward along with their static zones
+		if (snapshot == null || unchangedZones.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		return DynamicZoneSnapshot.read(snapshot);
+	}
+
+	private static void writeDynamicZoneSnapshot() {
+		writeDynamicZoneSnapshot(getDynamicZoneSnapshot(), dynamicZoneCache);
+	}
+
+	private static void writeDynamicZoneSnapshot(final File snapshot, final LoadingCache<ZoneKey, Zone> dynamicZoneCache) {
+		if (snapshot != null && dynamicZoneCache != null) {
+			DynamicZoneSnapshot.write(snapshot, new HashMap<ZoneKey, Zone>(dynamicZoneCache.asMap()));
+		}
+	}
+
 	private static void writeZone(final Zone zone) throws IOException {
 		synchronized(LOGGER) {
 			if (!zoneDirectory.exists() && !zoneDirectory.mkdirs()) {
@@ -293,11 +367,14 @@ public class ZoneManager extends Resolver {
 			}
 
 			final File zoneFile = new File(getZoneDirectory(), zone.getOrigin().toString());
-			final FileWriter w = new FileWriter(zoneFile);
+			// the zone file may be read back on startup, so replace it in one move rather than rewriting it
+			final File tempFile = new File(getZoneDirectory(), zone.getOrigin().toString() + "tmp");
+			final FileWriter w = new FileWriter(tempFile);
 			LOGGER.info("writing: " + zoneFile.getAbsolutePath());
 			IOUtils.write(zone.toMasterFile(), w);
 			w.flush();
 			w.close();
+			Files.move(tempFile.toPath(), zoneFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 		}
 	}
 
@@ -313,6 +390,10 @@ public class ZoneManager extends Resolver {
 		final RemovalListener<ZoneKey, Zone> removalListener = new RemovalListener<ZoneKey, Zone>() {
 			public void onRemoval(final RemovalNotification<ZoneKey, Zone> removal) {
 				LOGGER.debug(cacheType + " " + removal.getKey().getClass().getSimpleName() + " " + removal.getKey().getName() + " evicted from cache: " + removal.getCause());
+
+				if (cacheType == ZoneCacheType.STATIC) {
+					zoneGeneration.incrementAndGet();
+				}
 			}
 		};
 
@@ -350,7 +431,8 @@ public class ZoneManager extends Resolver {
 			records = signatureManager.signZone(name, records, (SignedZoneKey) zoneKey);
 		}
 
-		final Zone zone = new Zone(name, records.toArray(new Record[records.size()]));
+		final Record[] zoneRecords = records.toArray(new Record[records.size()]);
+		final Zone zone = (zoneKey instanceof SignedZoneKey) ? new SignedZone(name, zoneRecords) : new Zone(name, zoneRecords);
 
 		if (writeZone) {
 			writeZone(zone);
@@ -359,7 +441,8 @@ public class ZoneManager extends Resolver {
 		return zone;
 	}
 
-	private static void generateZones(final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks) throws IOException {
+	private static void generateZones(final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks,
+			final UnchangedZones unchangedZones) throws IOException {
 		final CacheRegister data = tr.getCacheRegister();
 		final Map<String, List<Record>> zoneMap = new HashMap<String, List<Record>>();
 		final Map<String, DeliveryService> dsMap = new HashMap<String, DeliveryService>();
@@ -386,8 +469,8 @@ public class ZoneManager extends Resolver {
 		}
 
 		final Map<String, List<Record>> superDomains = populateZoneMap(zoneMap, dsMap, data);
-		final List<Record> superRecords = fillZones(zoneMap, dsMap, tr, zc, dzc, generationTasks, primingTasks);
-		final List<Record> upstreamRecords = fillZones(superDomains, dsMap, tr, superRecords, zc, dzc, generationTasks, primingTasks);
+		final List<Record> superRecords = fillZones(zoneMap, dsMap, tr, zc, dzc, generationTasks, primingTasks, unchangedZones);
+		final List<Record> upstreamRecords = fillZones(superDomains, dsMap, tr, superRecords, zc, dzc, generationTasks, primingTasks, unchangedZones);
 
 		for (final Record record : upstreamRecords) {
 			if (record.getType() == Type.DS) {
@@ -396,13 +479,13 @@ public class ZoneManager extends Resolver {
 		}
 	}
 
-	private static List<Record> fillZones(final Map<String, List<Record>> zoneMap, final Map<String, DeliveryService> dsMap, final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks)
-			throws IOException {
-		return fillZones(zoneMap, dsMap, tr, null, zc, dzc, generationTasks, primingTasks);
+	private static List<Record> fillZones(final Map<String, List<Record>> zoneMap, final Map<String, DeliveryService> dsMap, final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks,
+			final UnchangedZones unchangedZones) throws IOException {
+		return fillZones(zoneMap, dsMap, tr, null, zc, dzc, generationTasks, primingTasks, unchangedZones);
 	}
 
-	private static List<Record> fillZones(final Map<String, List<Record>> zoneMap, final Map<String, DeliveryService> dsMap, final TrafficRouter tr, final List<Record> superRecords, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks)
-			throws IOException {
+	private static List<Record> fillZones(final Map<String, List<Record>> zoneMap, final Map<String, DeliveryService> dsMap, final TrafficRouter tr, final List<Record> superRecords, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks,
+			final UnchangedZones unchangedZones) throws IOException {
 		final String hostname = InetAddress.getLocalHost().getHostName().replaceAll("\\..*", "");
 
 		final List<Record> records = new ArrayList<Record>();
@@ -412,15 +495,16 @@ public class ZoneManager extends Resolver {
 				zoneMap.get(domain).addAll(superRecords);
 			}
 
-			records.addAll(createZone(domain, zoneMap, dsMap, tr, zc, dzc, generationTasks, primingTasks, hostname));
+			records.addAll(createZone(domain, zoneMap, dsMap, tr, zc, dzc, generationTasks, primingTasks, unchangedZones, hostname));
 		}
 
 		return records;
 	}
 
-	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
+	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity", "PMD.ExcessiveParameterList"})
 	private static List<Record> createZone(final String domain, final Map<String, List<Record>> zoneMap, final Map<String, DeliveryService> dsMap, 
-			final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks, final String hostname) throws IOException {
+			final TrafficRouter tr, final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks, final BlockingQueue<Runnable> primingTasks,
+			final UnchangedZones unchangedZones, final String hostname) throws IOException {
 		final DeliveryService ds = dsMap.get(domain);
 		final CacheRegister data = tr.getCacheRegister();
 		final JsonNode trafficRouters = data.getTrafficRouters();
@@ -460,18 +544,26 @@ public class ZoneManager extends Resolver {
 			LOGGER.fatal("Unable to create zone: " + ex.getMessage(), ex);
 		}
 
-		primeZoneCache(domain, name, list, tr, zc, dzc, generationTasks, primingTasks, ds);
+		primeZoneCache(domain, name, list, tr, zc, dzc, generationTasks, primingTasks, unchangedZones, ds);
 
 		return records;
 	}
 
-	@SuppressWarnings("PMD.CyclomaticComplexity")
+	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.ExcessiveParameterList"})
 	private static void primeZoneCache(final String domain, final Name name, final List<Record> list, final TrafficRouter tr,
 			final LoadingCache<ZoneKey, Zone> zc, final LoadingCache<ZoneKey, Zone> dzc, final List<Runnable> generationTasks,
-			final BlockingQueue<Runnable> primingTasks, final DeliveryService ds) {
+			final BlockingQueue<Runnable> primingTasks, final UnchangedZones unchangedZones, final DeliveryService ds) {
 		generationTasks.add(() -> {
 			try {
-				final Zone zone = zc.get(signatureManager.generateZoneKey(name, list)); // cause the zone to be loaded into the new cache
+				final ZoneKey zoneKey = signatureManager.generateZoneKey(name, list);
+				final Zone previousZone = unchangedZones.carryForward(zoneKey);
+
+				if (previousZone != null) {
+					zc.put(zoneKey, previousZone);
+				}
+
+				final Zone zone = previousZone != null ? previousZone : zc.get(zoneKey); // cause the zone to be loaded into the new cache
+
 				final CacheRegister data = tr.getCacheRegister();
 				final JsonNode config = data.getConfig();
 				final boolean primeDynCache = JsonUtils.optBoolean(config, "dynamic.cache.primer.enabled", true);
@@ -526,7 +618,7 @@ public class ZoneManager extends Resolver {
 				final List<InetRecord> records = tr.inetRecordsFromCaches(ds, caches, request);
 
 				if (!pset.contains(records)) {
-					fillDynamicZone(dzc, zone, edgeName, records, signatureManager.isDnssecEnabled());
+					fillDynamicZone(dzc, null, zone, edgeName, records, signatureManager.isDnssecEnabled());
 					pset.add(records);
 					LOGGER.debug("Primed " + ds.getId() + " @ " + cacheLocation.getId() + "; permutation " + pset.size() + "/" + p);
 				}
@@ -725,6 +817,16 @@ public class ZoneManager extends Resolver {
 		return trafficRouter;
 	}
 
+	/**
+	 * Gets the generation of the static zones, which changes whenever a static zone is replaced,
+	 * removed or the zones are rebuilt.
+	 *
+	 * @return the current generation
+	 */
+	public static long getZoneGeneration() {
+		return zoneGeneration.get();
+	}
+
 	/**
 	 * Attempts to find a {@link Zone} that would contain the specified {@link Name}.
 	 * 
@@ -746,28 +848,14 @@ public class ZoneManager extends Resolver {
 	 * @return the Zone to use to resolve the specified Name
 	 */
 	public Zone getZone(final Name name, final int qtype) {
-		Zone result = null;
-		final Map<ZoneKey, Zone> zoneMap = zoneCache.asMap();
-		final List<ZoneKey> sorted = new ArrayList<ZoneKey>(zoneMap.keySet());
+		final ZoneIndex index = zoneIndex;
 
-		Collections.sort(sorted);
-
-		// put the superDomains at the beginning of the list so we look there first for DS records
-		if (qtype == Type.DS) {
-			Collections.reverse(sorted);
-		}
-
-		for (final ZoneKey key : sorted) {
-			final Zone zone = zoneMap.get(key);
-			final Name origin = zone.getOrigin();
-
-			if (name.subdomain(origin)) {
-				result = zone;
-				break;
-			}
+		if (index == null) {
+			return null;
 		}
 
-		return result;
+		// look in the superDomains first for DS records
+		return index.getZone(name, qtype == Type.DS);
 	}
 
 	/**
@@ -799,7 +887,7 @@ public class ZoneManager extends Resolver {
 			final DNSRouteResult result = trafficRouter.route(request, track);
 
 			if (result != null) {
-				return fillDynamicZone(dynamicZoneCache, staticZone, name, result.getAddresses(), dnssecRequest);
+				return fillDynamicZone(dynamicZoneCache, dynamicZoneKeys, staticZone, name, result.getAddresses(), dnssecRequest);
 			} else {
 				return null;
 			}
@@ -815,11 +903,33 @@ public class ZoneManager extends Resolver {
 		return null;
 	}
 
-	private static Zone fillDynamicZone(final LoadingCache<ZoneKey, Zone> dzc, final Zone staticZone, final Name name, final List<InetRecord> addresses, final boolean dnssecRequest) {
+	private static Zone getKnownDynamicZone(final LoadingCache<ZoneKey, Zone> dzc, final DynamicZoneKeys dzk, final Zone staticZone, final Name name,
+			final List<InetRecord> addresses, final boolean dnssecRequest) {
+		if (dzk == null) {
+			return null;
+		}
+
+		final ZoneKey zoneKey = dzk.get(staticZone, name, addresses, dnssecRequest);
+		return zoneKey != null ? dzc.getIfPresent(zoneKey) : null;
+	}
+
+	/**
+	 * @param dzk
+	 *            the keys of answers already in the dynamic zone cache, or null to always build the
+	 *            key from the records of the zone
+	 */
+	private static Zone fillDynamicZone(final LoadingCache<ZoneKey, Zone> dzc, final DynamicZoneKeys dzk, final Zone staticZone, final Name name,
+			final List<InetRecord> addresses, final boolean dnssecRequest) {
 		if (addresses == null) {
 			return null;
 		}
 
+		final Zone knownZone = getKnownDynamicZone(dzc, dzk, staticZone, name, addresses, dnssecRequest);
+
+		if (knownZone != null) {
+			return knownZone;
+		}
+
 		try {
 			final List<Record> records = createZoneRecords(staticZone);
 			int recordsAdded = 0;
@@ -837,6 +947,11 @@ public class ZoneManager extends Resolver {
 				try {
 					final ZoneKey zoneKey = signatureManager.generateDynamicZoneKey(staticZone.getOrigin(), records, dnssecRequest);
 					final Zone zone = dzc.get(zoneKey);
+
+					if (dzk != null) {
+						dzk.put(staticZone, name, addresses, dnssecRequest, zoneKey);
+					}
+
 					return zone;
 				} catch (ExecutionException e) {
 					LOGGER.error(e, e);
@@ -30,6 +30,7 @@ import org.xbill.DNS.Type;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.security.Signature;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -37,6 +38,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -46,6 +48,25 @@ import static org.xbill.DNS.DClass.IN;
 
 public class ZoneSignerImpl implements ZoneSigner {
 	private final static Logger LOGGER = Logger.getLogger(ZoneSignerImpl.class);
+	private final static int PARALLEL_THRESHOLD = 64;
+	// zones are signed ahead of their expiration, so a couple of threads leave the rest of the cores to queries
+	private final static int SIGNING_THREADS = 2;
+	private final static ForkJoinPool SIGNING_POOL = new ForkJoinPool(Math.min(SIGNING_THREADS, Runtime.getRuntime().availableProcessors()));
+
+	private final ForkJoinPool signingPool;
+
+	public ZoneSignerImpl() {
+		this(SIGNING_POOL);
+	}
+
+	/**
+	 * @param signingPool
+	 *            the pool to sign the RRsets of large zones on, or null to sign every zone on the
+	 *            calling thread
+	 */
+	ZoneSignerImpl(final ForkJoinPool signingPool) {
+		this.signingPool = signingPool;
+	}
 
 	private Stream<Record> toRRStream(final RRset rrSet) {
 		final Iterable<Record> iterable = () -> rrSet.rrs(false);
@@ -57,15 +78,14 @@ public class ZoneSignerImpl implements ZoneSigner {
 		return StreamSupport.stream(iterable.spliterator(), false);
 	}
 
-	private RRset signRRset(final RRset rrSet, final List<DnsSecKeyPair> kskPairs, final List<DnsSecKeyPair> zskPairs, final Date inception, final Date expiration) {
+	private RRset signRRset(final RRset rrSet, final List<RRsetSigner> kskSigners, final List<RRsetSigner> zskSigners, final Date inception, final Date expiration) {
 		final List<RRSIGRecord> signatures = new ArrayList<>();
-		final List<DnsSecKeyPair> pairs = rrSet.getType() == Type.DNSKEY ? kskPairs : zskPairs;
+		final List<RRsetSigner> signers = rrSet.getType() == Type.DNSKEY ? kskSigners : zskSigners;
 
-		pairs.forEach(pair -> {
-			final DNSKEYRecord dnskeyRecord = pair.getDNSKEYRecord();
-			final PrivateKey privateKey = pair.getPrivate();
+		signers.forEach(signer -> {
+			final DNSKEYRecord dnskeyRecord = signer.dnskeyRecord;
 			try {
-				signatures.add(DNSSEC.sign(rrSet, dnskeyRecord, privateKey, inception, expiration));
+				signatures.add(signer.sign(rrSet, inception, expiration));
 			} catch (Exception e) {
 				final String message = String.format("Failed to sign Resource Record Set for %s %d %d %d : %s",
 					dnskeyRecord.getName(), dnskeyRecord.getDClass(), dnskeyRecord.getType(), dnskeyRecord.getTTL(), e.getMessage());
@@ -82,6 +102,23 @@ public class ZoneSignerImpl implements ZoneSigner {
 		return signedRRset;
 	}
 
+	private List<RRset> signRRsets(final List<RRset> rrSets, final List<DnsSecKeyPair> kskPairs, final List<DnsSecKeyPair> zskPairs, final Date inception, final Date expiration) {
+		final List<RRsetSigner> kskSigners = kskPairs.stream().map(RRsetSigner::new).collect(toList());
+		final List<RRsetSigner> zskSigners = zskPairs.stream().map(RRsetSigner::new).collect(toList());
+
+		if (signingPool == null || rrSets.size() < PARALLEL_THRESHOLD) {
+			return rrSets.stream()
+				.map(rRset -> signRRset(rRset, kskSigners, zskSigners, inception, expiration))
+				.collect(toList());
+		}
+
+		// an ordered parallel stream collects the signed sets in the same order as the sequential one
+		return signingPool.submit(() -> rrSets.parallelStream()
+			.map(rRset -> signRRset(rRset, kskSigners, zskSigners, inception, expiration))
+			.collect(toList())
+		).join();
+	}
+
 	private SOARecord findSoaRecord(final List<Record> records) {
 		final Optional<Record> soaRecordOptional = records.stream().filter(record -> record instanceof SOARecord).findFirst();
 		if (soaRecordOptional.isPresent()) {
@@ -157,8 +194,7 @@ public class ZoneSignerImpl implements ZoneSigner {
 
 		final List<RRset> rrSets = new RRSetsBuilder().build(records);
 
-		final List<RRset> signedRrSets = rrSets.stream()
-			.map(rRset -> signRRset(rRset, kskPairs, zskPairs, inception, expiration))
+		final List<RRset> signedRrSets = signRRsets(rrSets, kskPairs, zskPairs, inception, expiration).stream()
 			.sorted((rRset1, rRset2) -> rRset1.getName().compareTo(rRset2.getName()))
 			.collect(toList());
 
@@ -178,4 +214,61 @@ public class ZoneSignerImpl implements ZoneSigner {
 		return new DSRecord(dnskeyRecord.getName(), IN, ttl, digestId, dnskeyRecord);
 	}
 
+	/**
+	 * Signs RRsets with one key pair of a zone. RSA signatures are made with a Signature that each
+	 * thread initializes with the private key once per zone instead of once per RRset; the other
+	 * algorithms need the DER encoded signature converted, which dnsjava only does in
+	 * {@link DNSSEC#sign}.
+	 */
+	private static class RRsetSigner {
+		private final DNSKEYRecord dnskeyRecord;
+		private final PrivateKey privateKey;
+		private final ThreadLocal<Signature> signatures = new ThreadLocal<>();
+
+		RRsetSigner(final DnsSecKeyPair keyPair) {
+			dnskeyRecord = keyPair.getDNSKEYRecord();
+			privateKey = keyPair.getPrivate();
+		}
+
+		private static boolean isRsa(final int algorithm) {
+			return algorithm == DNSSEC.Algorithm.RSAMD5 || algorithm == DNSSEC.Algorithm.RSASHA1 || algorithm == DNSSEC.Algorithm.RSA_NSEC3_SHA1
+				|| algorithm == DNSSEC.Algorithm.RSASHA256 || algorithm == DNSSEC.Algorithm.RSASHA512;
+		}
+
+		private Signature getSignature() throws GeneralSecurityException, DNSSEC.DNSSECException {
+			Signature signature = signatures.get();
+
+			if (signature == null) {
+				signature = Signature.getInstance(DNSSEC.algString(dnskeyRecord.getAlgorithm()));
+				signature.initSign(privateKey);
+				signatures.set(signature);
+			}
+
+			return signature;
+		}
+
+		RRSIGRecord sign(final RRset rrSet, final Date inception, final Date expiration) throws GeneralSecurityException, DNSSEC.DNSSECException {
+			if (!isRsa(dnskeyRecord.getAlgorithm()) || !"RSA".equals(privateKey.getAlgorithm())) {
+				return DNSSEC.sign(rrSet, dnskeyRecord, privateKey, inception, expiration);
+			}
+
+			final RRSIGRecord unsigned = new RRSIGRecord(rrSet.getName(), rrSet.getDClass(), rrSet.getTTL(), rrSet.getType(), dnskeyRecord.getAlgorithm(),
+				rrSet.getTTL(), expiration, inception, dnskeyRecord.getFootprint(), dnskeyRecord.getName(), null);
+
+			final Signature signature = getSignature();
+			final byte[] signatureBytes;
+
+			try {
+				// sign() leaves the Signature initialized with the same private key for the next RRset
+				signature.update(DNSSEC.digestRRset(unsigned, rrSet));
+				signatureBytes = signature.sign();
+			} catch (GeneralSecurityException e) {
+				signatures.remove();
+				throw e;
+			}
+
+			return new RRSIGRecord(rrSet.getName(), rrSet.getDClass(), rrSet.getTTL(), rrSet.getType(), dnskeyRecord.getAlgorithm(),
+				rrSet.getTTL(), expiration, inception, dnskeyRecord.getFootprint(), dnskeyRecord.getName(), signatureBytes);
+		}
+	}
 }
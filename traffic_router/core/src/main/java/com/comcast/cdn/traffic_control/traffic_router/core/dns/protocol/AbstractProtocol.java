@@ -18,6 +18,9 @@ package com.comcast.cdn.traffic_control.traffic_router.core.dns.protocol;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.DNSAccessEventBuilder;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.DNSAccessRecord;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.NameServer;
+import com.comcast.cdn.traffic_control.traffic_router.core.dns.ResponseCache;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker;
+import com.comcast.cdn.traffic_control.traffic_router.core.util.AccessLogWriter;
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Message;
 import org.xbill.DNS.Rcode;
@@ -25,18 +28,23 @@ import org.xbill.DNS.Section;
 import org.xbill.DNS.WireParseException;
 
 import java.net.InetAddress;
-import java.util.concurrent.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-@SuppressWarnings("PMD.MoreThanOneLogger")
 public abstract class AbstractProtocol implements Protocol {
-    private static final Logger ACCESS = Logger.getLogger("com.comcast.cdn.traffic_control.traffic_router.core.access");
     private static final Logger LOGGER = Logger.getLogger(AbstractProtocol.class);
 
     private static final int NUM_SECTIONS = 4;
     protected boolean shutdownRequested;
     private ThreadPoolExecutor executorService;
     private ExecutorService cancelService;
+    private final DeadlineQueue deadlines = new DeadlineQueue(getClass().getSimpleName());
+    private final AtomicLong rejected = new AtomicLong();
     private NameServer nameServer;
+    private StatTracker statTracker;
     private int taskTimeout = 5000; // default
     private int queueDepth = 1000; // default
 
@@ -83,6 +91,7 @@ public abstract class AbstractProtocol implements Protocol {
         shutdownRequested = true;
         executorService.shutdownNow();
         cancelService.shutdownNow();
+        deadlines.shutdown();
     }
 
     /**
@@ -117,25 +126,64 @@ public abstract class AbstractProtocol implements Protocol {
         Message response = null;
         final long queryTimeMillis = System.currentTimeMillis();
         final DNSAccessRecord.Builder builder = new DNSAccessRecord.Builder(queryTimeMillis, client);
+        final ResponseCache responseCache = getNameServer().getResponseCache();
         DNSAccessRecord dnsAccessRecord = builder.build();
 
         try {
             query = new Message(request);
             dnsAccessRecord = builder.dnsMessage(query).build();
+
+            if (responseCache != null) {
+                final byte[] cached = queryResponseCache(responseCache, query, request, builder);
+
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
             response = getNameServer().query(query, client, builder);
             dnsAccessRecord = builder.dnsMessage(response).build();
 
-            ACCESS.info(DNSAccessEventBuilder.create(dnsAccessRecord));
+            AccessLogWriter.getInstance().log(DNSAccessEventBuilder.event(dnsAccessRecord));
         } catch (final WireParseException e) {
-            ACCESS.info(DNSAccessEventBuilder.create(dnsAccessRecord, e));
+            AccessLogWriter.getInstance().log(DNSAccessEventBuilder.event(dnsAccessRecord, e));
             throw e;
         } catch (final Exception e) {
-            ACCESS.info(DNSAccessEventBuilder.create(dnsAccessRecord, e));
+            AccessLogWriter.getInstance().log(DNSAccessEventBuilder.event(dnsAccessRecord, e));
             response = createServerFail(query);
+            dnsAccessRecord = null;
+        }
+
+        final byte[] wire = response.toWire(getMaxResponseLength(query));
+
+        if (responseCache != null && dnsAccessRecord != null) {
+            responseCache.put(request, dnsAccessRecord, wire);
+        }
+
+        return wire;
+    }
+
+    /**
+     * Answers a query from the response cache, logging it as if it had been answered by the
+     * nameServer.
+     *
+     * @return the cached DNS response in wire format or null if there is none
+     */
+    private byte[] queryResponseCache(final ResponseCache responseCache, final Message query, final byte[] request, final DNSAccessRecord.Builder builder) {
+        final ResponseCache.CachedResponse cached = responseCache.get(request, getMaxResponseLength(query));
+
+        if (cached == null) {
+            return null;
         }
 
+        final int id = query.getHeader().getID();
 
-        return response.toWire(getMaxResponseLength(query));
+        if (cached.getClient() != null) {
+            builder.client(cached.getClient());
+        }
+
+        AccessLogWriter.getInstance().log(DNSAccessEventBuilder.event(builder.dnsMessage(cached.getMessage(id)).build()));
+        return cached.getWire(id);
     }
 
     /**
@@ -146,7 +194,6 @@ public abstract class AbstractProtocol implements Protocol {
      */
 	protected void submit(final SocketHandler job) {
 		final int queueLength = executorService.getQueue().size();
-		Future<?> handler;
 
 		if ((queueDepth > 0 && queueLength >= queueDepth) || (queueDepth == 0 && queueLength > 0)) {
 			LOGGER.warn(
@@ -154,28 +201,69 @@ public abstract class AbstractProtocol implements Protocol {
 				this.getClass().getSimpleName(), queueLength, queueDepth)
 			);
 
+			rejected.incrementAndGet();
+
+			if (statTracker != null) {
+				statTracker.countDnsRejection();
+			}
+
 			// causes the underlying SocketHandler inner class of each implementing protocol to call a cleanup() method
 			job.cancel();
 
 			// add to the cancellation thread pool instead of the task executor pool
-			handler = cancelService.submit(job);
-		} else {
-			handler = executorService.submit(job);
+			cancelService.submit(job);
+			return;
 		}
 
-		cancelService.submit(getCanceler(handler));
+		// the handler is canceled by the deadline sweeper if it runs past the task timeout
+		final HandlerTask handler = new HandlerTask(job);
+		handler.deadline = deadlines.add(handler, getTaskTimeout());
+		executorService.execute(handler);
 	}
 
-	private Runnable getCanceler(final Future<?> handler) {
-		return new Runnable() {
-			public void run() {
-				try {
-					handler.get(getTaskTimeout(), TimeUnit.MILLISECONDS);
-				} catch (InterruptedException | ExecutionException | TimeoutException e) {
-					handler.cancel(true);
+	/**
+	 * A submitted request handler, which stops being tracked by the deadline sweeper as soon as
+	 * it completes. A handler canceled before it got to run is cleaned up instead, so that it
+	 * still releases whatever its connection holds for it.
+	 */
+	private class HandlerTask extends FutureTask<Void> {
+		private final SocketHandler job;
+		private final AtomicBoolean claimed;
+		private volatile DeadlineQueue.Deadline deadline;
+
+		HandlerTask(final SocketHandler job) {
+			this(job, new AtomicBoolean());
+		}
+
+		private HandlerTask(final SocketHandler job, final AtomicBoolean claimed) {
+			super(() -> {
+				if (claimed.compareAndSet(false, true)) {
+					job.run();
 				}
+			}, null);
+
+			this.job = job;
+			this.claimed = claimed;
+		}
+
+		@Override
+		protected void done() {
+			if (deadline != null) {
+				deadline.remove();
+			}
+
+			if (!isCancelled()) {
+				return;
+			}
+
+			if (statTracker != null) {
+				statTracker.countDnsTimeout();
 			}
-		};
+
+			if (claimed.compareAndSet(false, true)) {
+				job.cleanup();
+			}
+		}
 	}
 
     private Message createServerFail(final Message query) {
@@ -204,6 +292,28 @@ public abstract class AbstractProtocol implements Protocol {
 		this.queueDepth = queueDepth;
 	}
 
+	/**
+	 * Gets the number of requests canceled because they ran past the task timeout.
+	 *
+	 * @return the timed out request count
+	 */
+	public long getTimedOutCount() {
+		return deadlines.getTimedOutCount();
+	}
+
+	/**
+	 * Gets the number of requests discarded because the request queue was full.
+	 *
+	 * @return the rejected request count
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	public void setStatTracker(final StatTracker statTracker) {
+		this.statTracker = statTracker;
+	}
+
 	public ExecutorService getCancelService() {
 		return cancelService;
 	}
@@ -0,0 +1,154 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns.protocol;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the deadlines of in-flight requests and cancels the ones that run past them.
+ * <p>
+ * Deadlines are rounded up to the sweep interval and requests sharing a rounded deadline are kept
+ * in one bucket, so tracking a request and dropping it once it completes are both a hash set
+ * operation, and only requests that are still running are held on to. A single sweeper thread
+ * takes the buckets that have expired off the front of the ordered map of buckets.
+ * </p>
+ */
+public class DeadlineQueue {
+	private static final long SWEEP_INTERVAL_MILLIS = 10;
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MILLIS);
+
+	private final ConcurrentNavigableMap<Long, Set<Future<?>>> buckets = new ConcurrentSkipListMap<>();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final AtomicLong timedOut = new AtomicLong();
+	private final String name;
+	private ScheduledExecutorService sweeper;
+
+	public DeadlineQueue(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Tracks a submitted request, starting the sweeper on first use.
+	 *
+	 * @param task
+	 *            the future of the submitted request
+	 * @param timeoutMillis
+	 *            the time the request may run before it is canceled
+	 * @return the deadline, to be {@link Deadline#remove() removed} once the request completes
+	 */
+	public Deadline add(final Future<?> task, final long timeoutMillis) {
+		if (!started.get() && started.compareAndSet(false, true)) {
+			start();
+		}
+
+		final long expiration = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		final Long bucket = Math.floorDiv(expiration, SWEEP_INTERVAL_NANOS) + 1;
+
+		buckets.computeIfAbsent(bucket, key -> ConcurrentHashMap.newKeySet()).add(task);
+		return new Deadline(task, bucket);
+	}
+
+	/**
+	 * Cancels every tracked request whose deadline, rounded up to the sweep interval, is at or
+	 * before the given time.
+	 *
+	 * @param now
+	 *            the current value of {@link System#nanoTime()}
+	 */
+	protected void expire(final long now) {
+		final long current = Math.floorDiv(now, SWEEP_INTERVAL_NANOS);
+		Map.Entry<Long, Set<Future<?>>> bucket = buckets.firstEntry();
+
+		while (bucket != null && bucket.getKey() <= current) {
+			buckets.remove(bucket.getKey());
+
+			for (final Future<?> task : bucket.getValue()) {
+				if (!task.isDone() && task.cancel(true)) {
+					timedOut.incrementAndGet();
+				}
+			}
+
+			bucket = buckets.firstEntry();
+		}
+	}
+
+	/**
+	 * @return the number of requests being tracked
+	 */
+	int size() {
+		int size = 0;
+
+		for (final Set<Future<?>> bucket : buckets.values()) {
+			size += bucket.size();
+		}
+
+		return size;
+	}
+
+	private synchronized void start() {
+		sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, name + "-deadlines");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		sweeper.scheduleWithFixedDelay(() -> expire(System.nanoTime()), SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void shutdown() {
+		if (sweeper != null) {
+			sweeper.shutdownNow();
+		}
+	}
+
+	public long getTimedOutCount() {
+		return timedOut.get();
+	}
+
+	/**
+	 * The deadline of one tracked request.
+	 */
+	public class Deadline {
+		private final Future<?> task;
+		private final Long bucket;
+
+		Deadline(final Future<?> task, final Long bucket) {
+			this.task = task;
+			this.bucket = bucket;
+		}
+
+		/**
+		 * Stops tracking the request, which is done with by now.
+		 */
+		public void remove() {
+			final Set<Future<?>> tasks = buckets.get(bucket);
+
+			if (tasks != null) {
+				tasks.remove(task);
+			}
+		}
+	}
+}
@@ -22,7 +22,10 @@ import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
 
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Message;
@@ -31,8 +34,14 @@ import org.xbill.DNS.WireParseException;
 public class TCP extends AbstractProtocol {
     private static final Logger LOGGER = Logger.getLogger(TCP.class);
     private int readTimeout = 3000; // default
+    private boolean persistentConnections = false; // default
+    private int idleTimeout = 10000; // default
+    private int maxConnections = 1000; // default
+    private int maxConnectionQueries = 32; // default
+    private int backlog = 0; // default
 
     private ServerSocket serverSocket;
+    private volatile TCPConnectionSelector connectionSelector;
 
     /**
      * Gets serverSocket.
@@ -45,6 +54,11 @@ public class TCP extends AbstractProtocol {
 
     @Override
     public void run() {
+        if (persistentConnections && startConnectionSelector()) {
+            connectionSelector.run();
+            return;
+        }
+
         while (!isShutdownRequested()) {
             try {
                 final Socket socket = getServerSocket().accept();
@@ -56,6 +70,77 @@ public class TCP extends AbstractProtocol {
         }
     }
 
+    /**
+     * Replaces the configured server socket with a non-blocking channel bound to the same address
+     * and served by a {@link TCPConnectionSelector}.
+     *
+     * @return true if the selector was started, false if the blocking server socket is still in use
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    private boolean startConnectionSelector() {
+        final SocketAddress address = serverSocket.getLocalSocketAddress();
+        ServerSocketChannel channel = null;
+
+        try {
+            serverSocket.close();
+            channel = ServerSocketChannel.open();
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(address, backlog);
+            connectionSelector = new TCPConnectionSelector(this, channel);
+            LOGGER.info("Serving persistent TCP connections on " + address);
+            return true;
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to serve persistent TCP connections on " + address + "; using a blocking server socket: " + e);
+            closeQuietly(channel);
+            rebind(address);
+            return false;
+        }
+    }
+
+    private void closeQuietly(final ServerSocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            LOGGER.debug(e.getMessage(), e);
+        }
+    }
+
+    private void rebind(final SocketAddress address) {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(address, backlog);
+        } catch (final IOException e) {
+            LOGGER.fatal("Unable to rebind TCP server socket on " + address, e);
+        }
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the maximum length of the queue of incoming connections of the sockets bound in place
+     * of the configured server socket, which was created with the same backlog.
+     *
+     * @param backlog
+     *            the backlog to set, 0 for the default of the platform
+     */
+    public void setBacklog(final int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * This method is package private for unit testing purposes.
+     */
+    TCPConnectionSelector getConnectionSelector() {
+        return connectionSelector;
+    }
+
     /**
      * Sets serverSocket.
      * 
@@ -140,6 +225,11 @@ public class TCP extends AbstractProtocol {
     @Override
     public void shutdown() {
     	super.shutdown();
+
+    	if (connectionSelector != null) {
+    		connectionSelector.shutdown();
+    	}
+
     	try {
 			serverSocket.close();
 		} catch (IOException e) {
@@ -156,5 +246,64 @@ public class TCP extends AbstractProtocol {
 		this.readTimeout = readTimeout;
 	}
 
+	public boolean isPersistentConnections() {
+		return persistentConnections;
+	}
+
+	/**
+	 * Sets whether connections are kept open for multiple, pipelined queries (RFC 7766) instead of
+	 * being closed after the first response.
+	 *
+	 * @param persistentConnections
+	 *            the persistentConnections to set
+	 */
+	public void setPersistentConnections(final boolean persistentConnections) {
+		this.persistentConnections = persistentConnections;
+	}
+
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets the time in milliseconds a persistent connection may go without reading or writing
+	 * before it is closed.
+	 *
+	 * @param idleTimeout
+	 *            the idleTimeout to set
+	 */
+	public void setIdleTimeout(final int idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Sets the maximum number of persistent connections open at once.
+	 *
+	 * @param maxConnections
+	 *            the maxConnections to set
+	 */
+	public void setMaxConnections(final int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionQueries() {
+		return maxConnectionQueries;
+	}
+
+	/**
+	 * Sets the maximum number of queries of a single persistent connection being answered at once;
+	 * further queries are not read until responses have been written.
+	 *
+	 * @param maxConnectionQueries
+	 *            the maxConnectionQueries to set
+	 */
+	public void setMaxConnectionQueries(final int maxConnectionQueries) {
+		this.maxConnectionQueries = maxConnectionQueries;
+	}
+
 
 }
@@ -0,0 +1,399 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns.protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.xbill.DNS.WireParseException;
+
+/**
+ * Serves DNS over TCP from a single selector thread, keeping connections open so that a client
+ * can send several length-prefixed queries over one connection (RFC 7766). Queries are answered
+ * on the executor service of the {@link TCP} protocol and each response is written back as soon
+ * as it is ready, so responses may be returned out of order.
+ * <p>
+ * All connection state other than the completed responses is only touched by the selector thread;
+ * query handlers hand their results back through a queue and wake the selector up.
+ * </p>
+ */
+class TCPConnectionSelector {
+	private static final Logger LOGGER = Logger.getLogger(TCPConnectionSelector.class);
+
+	private static final int READ_BUFFER_SIZE = 4096;
+	private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+	private final TCP tcp;
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final Set<TCPConnection> connections = new HashSet<>();
+	private final Queue<TCPConnection> pending = new ConcurrentLinkedQueue<>();
+	private long lastIdleCheck;
+
+	TCPConnectionSelector(final TCP tcp, final ServerSocketChannel serverChannel) throws IOException {
+		this.tcp = tcp;
+		this.serverChannel = serverChannel;
+		this.selector = Selector.open();
+
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	void run() {
+		while (!tcp.isShutdownRequested() && selector.isOpen()) {
+			try {
+				selector.select(SELECT_TIMEOUT_MILLIS);
+				processSelectedKeys();
+				processPending();
+				closeIdleConnections(System.currentTimeMillis());
+			} catch (final ClosedSelectorException e) {
+				break;
+			} catch (final IOException e) {
+				LOGGER.warn("error: " + e);
+			}
+		}
+
+		closeAll();
+	}
+
+	/**
+	 * Stops the selector thread, which closes every connection on its way out.
+	 */
+	void shutdown() {
+		selector.wakeup();
+	}
+
+	int getConnectionCount() {
+		return connections.size();
+	}
+
+	private void processSelectedKeys() {
+		final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+		while (keys.hasNext()) {
+			final SelectionKey key = keys.next();
+			keys.remove();
+
+			if (!key.isValid()) {
+				continue;
+			}
+
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+
+			final TCPConnection connection = (TCPConnection) key.attachment();
+
+			try {
+				if (key.isReadable()) {
+					connection.read();
+				}
+
+				if (key.isValid() && key.isWritable()) {
+					connection.service();
+				}
+			} catch (final IOException e) {
+				LOGGER.debug(e.getMessage(), e);
+				close(connection);
+			}
+		}
+	}
+
+	private void processPending() {
+		TCPConnection connection = pending.poll();
+
+		while (connection != null) {
+			if (connection.closeRequested) {
+				close(connection);
+			} else if (connection.channel.isOpen()) {
+				try {
+					connection.service();
+				} catch (final IOException e) {
+					LOGGER.debug(e.getMessage(), e);
+					close(connection);
+				}
+			}
+
+			connection = pending.poll();
+		}
+	}
+
+	private void accept() {
+		try {
+			final SocketChannel channel = serverChannel.accept();
+
+			if (channel == null) {
+				return;
+			}
+
+			if (connections.size() >= tcp.getMaxConnections()) {
+				LOGGER.warn(String.format("TCP connection limit reached (%d); closing connection from %s", tcp.getMaxConnections(), channel.getRemoteAddress()));
+				channel.close();
+				return;
+			}
+
+			channel.configureBlocking(false);
+			final TCPConnection connection = new TCPConnection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connections.add(connection);
+		} catch (final IOException e) {
+			LOGGER.warn("error: " + e);
+		}
+	}
+
+	private void closeIdleConnections(final long now) {
+		if (now - lastIdleCheck < SELECT_TIMEOUT_MILLIS) {
+			return;
+		}
+
+		lastIdleCheck = now;
+		final Iterator<TCPConnection> iterator = connections.iterator();
+
+		while (iterator.hasNext()) {
+			final TCPConnection connection = iterator.next();
+
+			if (connection.isIdle(now)) {
+				iterator.remove();
+				closeChannel(connection);
+			}
+		}
+	}
+
+	private void close(final TCPConnection connection) {
+		connections.remove(connection);
+		closeChannel(connection);
+	}
+
+	private void closeChannel(final TCPConnection connection) {
+		try {
+			connection.channel.close();
+		} catch (final IOException e) {
+			LOGGER.debug(e.getMessage(), e);
+		}
+	}
+
+	private void closeAll() {
+		for (final TCPConnection connection : connections) {
+			closeChannel(connection);
+		}
+
+		connections.clear();
+
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (final IOException e) {
+			LOGGER.warn("error on shutdown", e);
+		}
+	}
+
+	/**
+	 * A client connection carrying any number of length-prefixed queries.
+	 */
+	class TCPConnection {
+		private final SocketChannel channel;
+		private final InetAddress client;
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private final ByteBuffer lengthBuffer = ByteBuffer.allocate(2);
+		private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile boolean closeRequested;
+		private SelectionKey key;
+		private ByteBuffer message;
+		private boolean endOfInput;
+		private long lastActivity = System.currentTimeMillis();
+
+		TCPConnection(final SocketChannel channel) throws IOException {
+			this.channel = channel;
+			this.client = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+		}
+
+		private void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				endOfInput = true;
+			} else {
+				lastActivity = System.currentTimeMillis();
+			}
+
+			service();
+		}
+
+		/**
+		 * @return true if the connection has no queries being answered or responses waiting to be
+		 *         written and has seen no activity for the idle timeout
+		 */
+		private boolean isIdle(final long now) {
+			return inFlight.get() == 0 && responses.isEmpty() && now - lastActivity >= tcp.getIdleTimeout();
+		}
+
+		/**
+		 * Writes completed responses, dispatches buffered queries and closes the connection once
+		 * the client has stopped sending and every query has been answered.
+		 */
+		private void service() throws IOException {
+			write();
+			parse();
+
+			if (endOfInput && inFlight.get() == 0 && responses.isEmpty()) {
+				close(this);
+			} else if (key.isValid()) {
+				key.interestOps(getInterestOps());
+			}
+		}
+
+		private int getInterestOps() {
+			int ops = 0;
+
+			if (!endOfInput && inFlight.get() < tcp.getMaxConnectionQueries()) {
+				ops |= SelectionKey.OP_READ;
+			}
+
+			if (!responses.isEmpty()) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+
+			return ops;
+		}
+
+		private void write() throws IOException {
+			ByteBuffer response = responses.peek();
+
+			while (response != null) {
+				channel.write(response);
+
+				if (response.hasRemaining()) {
+					return;
+				}
+
+				responses.poll();
+				lastActivity = System.currentTimeMillis();
+				response = responses.peek();
+			}
+		}
+
+		private void parse() {
+			readBuffer.flip();
+
+			while (readBuffer.hasRemaining() && inFlight.get() < tcp.getMaxConnectionQueries()) {
+				if (message == null) {
+					lengthBuffer.put(readBuffer.get());
+
+					if (lengthBuffer.hasRemaining()) {
+						continue;
+					}
+
+					lengthBuffer.flip();
+					message = ByteBuffer.allocate(lengthBuffer.getShort() & 0xFFFF);
+					lengthBuffer.clear();
+				}
+
+				final int count = Math.min(message.remaining(), readBuffer.remaining());
+				message.put(readBuffer.array(), readBuffer.position(), count);
+				readBuffer.position(readBuffer.position() + count);
+
+				if (!message.hasRemaining()) {
+					dispatch(message.array());
+					message = null;
+				}
+			}
+
+			readBuffer.compact();
+		}
+
+		private void dispatch(final byte[] request) {
+			inFlight.incrementAndGet();
+			tcp.submit(new TCPQueryHandler(this, request));
+		}
+
+		private void respond(final byte[] response) {
+			final ByteBuffer buffer = ByteBuffer.allocate(response.length + 2);
+			buffer.putShort((short) response.length);
+			buffer.put(response);
+			buffer.flip();
+			responses.add(buffer);
+		}
+
+		private void complete() {
+			inFlight.decrementAndGet();
+			pending.add(this);
+			selector.wakeup();
+		}
+
+		private void requestClose() {
+			closeRequested = true;
+			pending.add(this);
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Answers one query of a connection on the executor service.
+	 */
+	class TCPQueryHandler implements SocketHandler {
+		private final TCPConnection connection;
+		private final byte[] request;
+		private boolean cancel;
+
+		TCPQueryHandler(final TCPConnection connection, final byte[] request) {
+			this.connection = connection;
+			this.request = request;
+		}
+
+		@Override
+		@SuppressWarnings("PMD.EmptyCatchBlock")
+		public void run() {
+			if (cancel) {
+				cleanup();
+				return;
+			}
+
+			try {
+				connection.respond(tcp.query(connection.client, request));
+			} catch (final WireParseException e) {
+				// This is already recorded in the access log
+			} catch (final Exception e) {
+				LOGGER.error(e.getMessage(), e);
+			} finally {
+				connection.complete();
+			}
+		}
+
+		@Override
+		public void cleanup() {
+			connection.requestClose();
+		}
+
+		@Override
+		public void cancel() {
+			this.cancel = true;
+		}
+	}
+}
@@ -45,6 +45,7 @@ import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache.DeliveryServiceReference;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.ConsistentHasher;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.DNSRequest;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.HTTPRequest;
@@ -101,6 +102,7 @@ public class DeliveryService {
 	private final DeepCachingType deepCache;
 	private String consistentHashRegex;
 	private final Set<String> consistentHashQueryParams;
+	private final String consistentHashAlgorithm;
 
 	public enum DeepCachingType {
 		NEVER,
@@ -169,6 +171,7 @@ public class DeliveryService {
 		sslEnabled = JsonUtils.optBoolean(dsJo, "sslEnabled");
 		this.anonymousIpEnabled = JsonUtils.optBoolean(dsJo, "anonymousBlockingEnabled");
 		this.consistentHashRegex = JsonUtils.optString(dsJo, "consistentHashRegex");
+		this.consistentHashAlgorithm = parseConsistentHashAlgorithm(id, JsonUtils.optString(dsJo, "consistentHashAlgorithm", ConsistentHasher.RING));
 
 		final JsonNode protocol = dsJo.get("protocol");
 		acceptHttp = JsonUtils.optBoolean(protocol, "acceptHttp", true);
@@ -185,6 +188,17 @@ public class DeliveryService {
 		}
 	}
 
+	private static String parseConsistentHashAlgorithm(final String id, final String algorithm) {
+		final String name = algorithm.toLowerCase();
+
+		if (!ConsistentHasher.isHashingStrategy(name)) {
+			LOGGER.error("DeliveryService '" + id + "' has an unrecognized consistentHashAlgorithm: '" + algorithm + "'. Defaulting to '" + ConsistentHasher.RING + "' instead");
+			return ConsistentHasher.RING;
+		}
+
+		return name;
+	}
+
 	public Set<String> getConsistentHashQueryParams() {
 		return this.consistentHashQueryParams;
 	}
@@ -683,6 +697,14 @@ public class DeliveryService {
 		this.consistentHashRegex = consistentHashRegex;
 	}
 
+	/**
+	 * Gets the name of the {@link com.comcast.cdn.traffic_control.traffic_router.core.hash.HashingStrategy}
+	 * used to choose caches for this Delivery Service.
+	 */
+	public String getConsistentHashAlgorithm() {
+		return consistentHashAlgorithm;
+	}
+
 	/**
 	 * Extracts the significant parts of a request's query string based on this
 	 * Delivery Service's Consistent Hashing Query Parameters
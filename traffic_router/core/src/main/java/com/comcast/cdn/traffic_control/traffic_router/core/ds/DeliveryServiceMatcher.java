@@ -16,6 +16,7 @@
 package com.comcast.cdn.traffic_control.traffic_router.core.ds;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -48,6 +49,14 @@ public class DeliveryServiceMatcher implements Comparable<DeliveryServiceMatcher
 		requestMatchers.add(new RequestMatcher(type, string, target));
 	}
 
+	public void addMatch(final RequestMatcher requestMatcher) {
+		requestMatchers.add(requestMatcher);
+	}
+
+	public List<RequestMatcher> getRequestMatchers() {
+		return Collections.unmodifiableList(requestMatchers);
+	}
+
 	public boolean matches(final Request request) {
 		for (final RequestMatcher matcher : requestMatchers) {
 			if (!matcher.matches(request)) {
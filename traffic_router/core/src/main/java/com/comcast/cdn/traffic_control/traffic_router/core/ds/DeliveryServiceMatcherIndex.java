@@ -0,0 +1,185 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.ds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.request.Request;
+import com.comcast.cdn.traffic_control.traffic_router.core.request.RequestMatcher;
+
+/**
+ * Finds the first of an ordered collection of {@link DeliveryServiceMatcher}s that matches a
+ * {@link Request}, without trying every matcher's regular expressions against every request.
+ * <p>
+ * Most matchers carry a host regex that only matches literal labels, such as
+ * <code>.*\.ds-name\..*</code>, <code>.*\.example\.com</code> or <code>edge\.example\.com</code>.
+ * Such a regex can only match a hostname that has its first literal label as one of its own
+ * labels, so these matchers are filed under that label and are only tried against hostnames
+ * that carry it. Every other matcher is tried against every request. Candidates are still
+ * matched in full, and the first match in the original order wins, exactly as a scan of the
+ * collection would find it.
+ * </p>
+ */
+public class DeliveryServiceMatcherIndex {
+	// an optional leading ".*\.", literal labels separated by "\.", and an optional trailing "\..*"
+	private static final Pattern LITERAL_HOST_REGEX = Pattern.compile("(?:\\.\\*\\\\\\.)?([\\w-]+)(?:\\\\\\.[\\w-]+)*(?:\\\\\\.\\.\\*)?");
+
+	private final DeliveryServiceMatcher[] matchers;
+	private final Map<String, int[]> byLabel = new HashMap<String, int[]>();
+	private final int[] unindexed;
+
+	/**
+	 * @param deliveryServiceMatchers
+	 *            the matchers, in the order they are to be tried
+	 */
+	public DeliveryServiceMatcherIndex(final Collection<DeliveryServiceMatcher> deliveryServiceMatchers) {
+		matchers = deliveryServiceMatchers.toArray(new DeliveryServiceMatcher[deliveryServiceMatchers.size()]);
+
+		final Map<String, List<Integer>> labelRanks = new HashMap<String, List<Integer>>();
+		final List<Integer> unindexedRanks = new ArrayList<Integer>();
+
+		for (int rank = 0; rank < matchers.length; rank++) {
+			final String label = getLiteralLabel(matchers[rank]);
+
+			if (label == null) {
+				unindexedRanks.add(rank);
+				continue;
+			}
+
+			List<Integer> ranks = labelRanks.get(label);
+
+			if (ranks == null) {
+				ranks = new ArrayList<Integer>();
+				labelRanks.put(label, ranks);
+			}
+
+			ranks.add(rank);
+		}
+
+		for (final Map.Entry<String, List<Integer>> entry : labelRanks.entrySet()) {
+			byLabel.put(entry.getKey(), toArray(entry.getValue()));
+		}
+
+		unindexed = toArray(unindexedRanks);
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+
+		return array;
+	}
+
+	private static String getLiteralLabel(final DeliveryServiceMatcher deliveryServiceMatcher) {
+		for (final RequestMatcher requestMatcher : deliveryServiceMatcher.getRequestMatchers()) {
+			if (requestMatcher.getType() != DeliveryServiceMatcher.Type.HOST) {
+				continue;
+			}
+
+			final Matcher matcher = LITERAL_HOST_REGEX.matcher(requestMatcher.getRegex());
+
+			if (matcher.matches()) {
+				return toLowerCase(matcher.group(1));
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * Host regexes are case insensitive for ASCII characters only, so anything else is left as is
+	 * rather than risk folding it onto an ASCII letter.
+	 */
+	private static String toLowerCase(final String string) {
+		final char[] chars = string.toCharArray();
+
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] >= 'A' && chars[i] <= 'Z') {
+				chars[i] += 'a' - 'A';
+			}
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Gets the first matcher that matches the request.
+	 *
+	 * @param request
+	 *            the request to match
+	 * @return the first matching matcher, or null if none match
+	 */
+	public DeliveryServiceMatcher getMatcher(final Request request) {
+		int best = firstMatch(unindexed, request, matchers.length);
+		final String hostname = request.getHostname();
+
+		if (hostname != null && !byLabel.isEmpty()) {
+			final String lowerCaseHostname = toLowerCase(hostname);
+			int start = 0;
+
+			while (start <= lowerCaseHostname.length()) {
+				int end = lowerCaseHostname.indexOf('.', start);
+
+				if (end == -1) {
+					end = lowerCaseHostname.length();
+				}
+
+				final int[] ranks = byLabel.get(lowerCaseHostname.substring(start, end));
+
+				if (ranks != null) {
+					best = firstMatch(ranks, request, best);
+				}
+
+				start = end + 1;
+			}
+		}
+
+		return best < matchers.length ? matchers[best] : null;
+	}
+
+	public DeliveryService getDeliveryService(final Request request) {
+		final DeliveryServiceMatcher matcher = getMatcher(request);
+		return matcher != null ? matcher.getDeliveryService() : null;
+	}
+
+	// the rank of the first of the ranked matchers ahead of the given rank that matches, or the given rank
+	private int firstMatch(final int[] ranks, final Request request, final int before) {
+		for (final int rank : ranks) {
+			if (rank >= before) {
+				break;
+			}
+
+			if (matchers[rank].matches(request)) {
+				return rank;
+			}
+		}
+
+		return before;
+	}
+
+	public int size() {
+		return matchers.length;
+	}
+}
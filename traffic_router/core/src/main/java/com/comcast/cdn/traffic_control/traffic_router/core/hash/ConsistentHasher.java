@@ -19,19 +19,110 @@ import com.comcast.cdn.traffic_control.traffic_router.core.ds.Dispersion;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 public class ConsistentHasher {
+	public static final String RING = "ring";
+	public static final String RENDEZVOUS = "rendezvous";
+	public static final String JUMP = "jump";
+
 	final private MD5HashFunction hashFunction = new MD5HashFunction();
+	final private Map<String, HashingStrategy> strategies = new HashMap<String, HashingStrategy>();
+
+	public ConsistentHasher() {
+		strategies.put(RING, new RingHashingStrategy());
+		strategies.put(RENDEZVOUS, new RendezvousHashingStrategy());
+		strategies.put(JUMP, new JumpHashingStrategy());
+	}
 
 	public <T extends Hashable> T selectHashable(final List<T> hashables, final Dispersion dispersion, final String s) {
 		final List<T> selectedHashables = selectHashables(hashables, dispersion, s);
 		return !selectedHashables.isEmpty() ? selectedHashables.get(0) : null;
 	}
 
+	public <T extends Hashable> T selectHashable(final String ringId, final List<T> hashables, final Dispersion dispersion, final String s) {
+		return selectHashable(RING, ringId, hashables, dispersion, s);
+	}
+
+	public <T extends Hashable> T selectHashable(final String strategy, final String id, final List<T> hashables, final Dispersion dispersion, final String s) {
+		final List<T> selectedHashables = selectHashables(strategy, id, hashables, dispersion, s);
+		return !selectedHashables.isEmpty() ? selectedHashables.get(0) : null;
+	}
+
+	/**
+	 * Selects hashables using one of the {@link HashingStrategy hashing strategies}. Lists with
+	 * hashables that have no hashes are always ordered as {@link #selectHashables(List, Dispersion, String)}
+	 * does.
+	 *
+	 * @param strategy
+	 *            the name of the hashing strategy; {@link #RING} if unknown
+	 * @param id
+	 *            the id of the lists of hashables, see {@link HashingStrategy#select(String, List, double, int)}
+	 * @param hashables
+	 *            the hashables to select from
+	 * @param dispersion
+	 *            the number of hashables to select and whether to shuffle them, or null to order all
+	 * @param s
+	 *            the string to hash
+	 * @return the selected hashables
+	 */
+	public <T extends Hashable> List<T> selectHashables(final String strategy, final String id, final List<T> hashables, final Dispersion dispersion, final String s) {
+		if (id == null || hashables.isEmpty() || !hasHashes(hashables)) {
+			return selectHashables(hashables, dispersion, s);
+		}
+
+		final int limit = dispersion != null ? dispersion.getLimit() : hashables.size();
+		final List<T> selectedHashables = getHashingStrategy(strategy).select(id, hashables, hashFunction.hash(s), limit);
+
+		if (dispersion != null && dispersion.isShuffled()) {
+			Collections.shuffle(selectedHashables);
+		}
+
+		return selectedHashables;
+	}
+
+	/**
+	 * Selects hashables like {@link #selectHashables(List, Dispersion, String)} does, but from a
+	 * {@link HashRing} that is kept between calls, see {@link RingHashingStrategy}.
+	 *
+	 * @param ringId
+	 *            the id of the rings to select from
+	 * @param hashables
+	 *            the hashables to select from
+	 * @param dispersion
+	 *            the number of hashables to select and whether to shuffle them, or null to order all
+	 * @param s
+	 *            the string to hash
+	 * @return the selected hashables
+	 */
+	public <T extends Hashable> List<T> selectHashables(final String ringId, final List<T> hashables, final Dispersion dispersion, final String s) {
+		return selectHashables(RING, ringId, hashables, dispersion, s);
+	}
+
+	private HashingStrategy getHashingStrategy(final String strategy) {
+		final HashingStrategy hashingStrategy = strategies.get(strategy);
+		return hashingStrategy != null ? hashingStrategy : strategies.get(RING);
+	}
+
+	public static boolean isHashingStrategy(final String strategy) {
+		return RING.equals(strategy) || RENDEZVOUS.equals(strategy) || JUMP.equals(strategy);
+	}
+
+	private static <T extends Hashable> boolean hasHashes(final List<T> hashables) {
+		for (final T hashable : hashables) {
+			if (!hashable.hasHashes()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	public <T extends Hashable> List<T> selectHashables(final List<T> hashables, final String s) {
 		return selectHashables(hashables, null, s);
 	}
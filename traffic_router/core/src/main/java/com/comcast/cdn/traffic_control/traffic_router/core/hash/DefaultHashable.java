@@ -16,11 +16,25 @@
 package com.comcast.cdn.traffic_control.traffic_router.core.hash;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.TreeSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Doubles;
 
 public class DefaultHashable implements Hashable<DefaultHashable>, Comparable<DefaultHashable> {
-	private Double[] hashes;
+	/*
+	 * Hashes only depend on the hash id and count, so hashables generated for the same cache by
+	 * successive configurations share them; they are dropped once no hashable uses them anymore.
+	 */
+	private static final Cache<String, double[]> GENERATED_HASHES = CacheBuilder.newBuilder().weakValues().build();
+
+	private String hashId;
+	private volatile double[] hashes;
+	private List<Double> hashValues;
+	private int hashCount;
+	private long hashSeed;
 	private int order = 0;
 
 	@Override
@@ -35,31 +49,93 @@ public class DefaultHashable implements Hashable<DefaultHashable>, Comparable<De
 
 	@Override
 	public boolean hasHashes() {
-		return hashes.length > 0 ? true : false;
+		return hashCount > 0;
 	}
 
 	@Override
 	public double getClosestHash(final double hash) {
-		return hashes[NumberSearcher.findClosest(hashes, hash)];
+		final double[] values = getHashes();
+		return values[NumberSearcher.findClosest(values, hash)];
 	}
 
+	/**
+	 * Sets up the hashes, which are only generated once they are first needed: strategies that
+	 * hash with the hash seed and count alone never do.
+	 */
 	@Override
 	public DefaultHashable generateHashes(final String hashId, final int hashCount) {
-		final TreeSet<Double> hashSet = new TreeSet<Double>();
+		this.hashId = hashId;
+		this.hashCount = hashCount;
+		this.hashSeed = Double.doubleToLongBits(new MD5HashFunction().hash(hashId));
+		this.hashes = null;
+		return this;
+	}
+
+	private double[] getHashes() {
+		double[] values = hashes;
+
+		if (values != null) {
+			return values;
+		}
+
+		final String key = hashCount + ":" + hashId;
+		values = GENERATED_HASHES.getIfPresent(key);
+
+		if (values == null) {
+			values = generateHashValues(hashId, hashCount);
+			GENERATED_HASHES.put(key, values);
+		}
+
+		hashValues = Collections.unmodifiableList(Doubles.asList(values));
+		hashes = values;
+		return values;
+	}
+
+	private static double[] generateHashValues(final String hashId, final int hashCount) {
 		final MD5HashFunction hashFunction = new MD5HashFunction();
+		final double[] values = new double[Math.max(hashCount, 0)];
 
-		for (int i = 0; i < hashCount; i++) {
-			hashSet.add(hashFunction.hash(hashId + "--" + i));
+		for (int i = 0; i < values.length; i++) {
+			values[i] = hashFunction.hash(hashId + "--" + i);
 		}
 
-		hashes = new Double[hashSet.size()];
-		System.arraycopy(hashSet.toArray(),0,hashes,0,hashSet.size());
-		return this;
+		Arrays.sort(values);
+
+		// drop duplicates
+		int count = 0;
+
+		for (int i = 0; i < values.length; i++) {
+			if (count == 0 || Double.compare(values[i], values[count - 1]) != 0) {
+				values[count++] = values[i];
+			}
+		}
+
+		return count == values.length ? values : Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * Gets the number of hashes that were requested, which serves as the weight of the hashable.
+	 */
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Gets a value derived from the hash id only, identifying the hashable independent of its weight.
+	 */
+	@Override
+	public long getHashSeed() {
+		return hashSeed;
 	}
 
+	/**
+	 * Gets a read only view of the hashes, sorted.
+	 */
 	@Override
 	public List<Double> getHashValues() {
-		return Arrays.asList(hashes);
+		getHashes();
+		return hashValues;
 	}
 
 	@Override
@@ -0,0 +1,308 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable ring of the hashes of a fixed list of {@link Hashable}s, kept as a sorted primitive
+ * array with a parallel array of owner indexes.
+ * <p>
+ * Selecting from the ring gives the same order as {@link ConsistentHasher#selectHashables(List, String)}:
+ * hashables are ordered by the distance of their closest hash to the requested hash, ties going to
+ * the hashable earlier in the list. Instead of finding the closest hash of every hashable and
+ * sorting them, the ring is walked outwards from the requested hash until enough hashables have
+ * been seen.
+ * </p>
+ * <p>
+ * A ring can also select from only some of its hashables, such as the caches of a cache location
+ * that are available, ordering them as if the ring had been built from just those.
+ * </p>
+ */
+public class HashRing<T extends Hashable> {
+	private final List<T> hashables;
+	private final Map<Hashable, Integer> indexes = new IdentityHashMap<Hashable, Integer>();
+	private final double[] hashes;
+	private final int[] owners;
+	private final boolean complete;
+
+	public HashRing(final List<T> hashables) {
+		this.hashables = Collections.unmodifiableList(new ArrayList<T>(hashables));
+
+		int count = 0;
+		boolean allHashed = true;
+
+		for (final T hashable : hashables) {
+			if (hashable.hasHashes()) {
+				count += hashable.getHashValues().size();
+			} else {
+				allHashed = false;
+			}
+		}
+
+		final double[] values = new double[count];
+		final int[] valueOwners = new int[count];
+		int index = 0;
+
+		for (int owner = 0; owner < hashables.size(); owner++) {
+			final T hashable = hashables.get(owner);
+			indexes.put(hashable, owner);
+
+			if (!hashable.hasHashes()) {
+				continue;
+			}
+
+			for (final Object value : hashable.getHashValues()) {
+				values[index] = (Double) value;
+				valueOwners[index] = owner;
+				index++;
+			}
+		}
+
+		final Integer[] order = new Integer[count];
+
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+
+		// the sort is stable, so equal hashes keep the order of their owners in the list
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+		this.hashes = new double[count];
+		this.owners = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			hashes[i] = values[order[i]];
+			owners[i] = valueOwners[order[i]];
+		}
+
+		this.complete = allHashed;
+	}
+
+	public List<T> getHashables() {
+		return hashables;
+	}
+
+	/**
+	 * Whether every hashable has hashes; hashables without hashes are ordered by
+	 * {@link ConsistentHasher} rather than by the ring.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Whether the hashable is one of the hashables of the ring.
+	 */
+	public boolean contains(final Hashable hashable) {
+		return indexes.containsKey(hashable);
+	}
+
+	/**
+	 * Whether the ring was built from exactly these hashables, in this order.
+	 */
+	public boolean hasHashables(final List<T> candidates) {
+		if (candidates.size() != hashables.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < candidates.size(); i++) {
+			if (candidates.get(i) != hashables.get(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Selects the hashables closest to a hash.
+	 *
+	 * @param hash
+	 *            the hash of the request
+	 * @param limit
+	 *            the maximum number of hashables to select
+	 * @return the selected hashables, closest first
+	 */
+	public List<T> select(final double hash, final int limit) {
+		return select(hash, limit, hashables, null);
+	}
+
+	/**
+	 * Selects the candidates closest to a hash, ordered as a ring of only the candidates would
+	 * order them.
+	 *
+	 * @param hash
+	 *            the hash of the request
+	 * @param limit
+	 *            the maximum number of hashables to select
+	 * @param candidates
+	 *            the hashables of the ring to select from
+	 * @return the selected candidates, closest first, or null if a candidate is not on the ring
+	 */
+	public List<T> select(final double hash, final int limit, final List<T> candidates) {
+		final int[] positions = new int[hashables.size()];
+		Arrays.fill(positions, -1);
+
+		for (int i = 0; i < candidates.size(); i++) {
+			final Integer index = indexes.get(candidates.get(i));
+
+			if (index == null) {
+				return null;
+			}
+
+			positions[index] = i;
+		}
+
+		return select(hash, limit, candidates, positions);
+	}
+
+	/*
+	 * Positions map each owner to its position in the list to select from, -1 for owners that are
+	 * not in it; null when selecting from all hashables.
+	 */
+	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
+	private List<T> select(final double hash, final int limit, final List<T> from, final int[] positions) {
+		final int wanted = Math.min(limit, from.size());
+
+		if (wanted <= 0 || hashes.length == 0) {
+			return new ArrayList<T>();
+		}
+
+		final boolean[] seen = new boolean[hashables.size()];
+		final int[] candidates = new int[from.size()];
+		final double[] deltas = new double[from.size()];
+		int found = 0;
+		int left = lowerBound(hash) - 1;
+		int right = left + 1;
+
+		// walk outwards; deltas never decrease, and the walk continues past the last wanted hashable while deltas tie
+		while (left >= 0 || right < hashes.length) {
+			final double leftDelta = left >= 0 ? Math.abs(hash - hashes[left]) : Double.POSITIVE_INFINITY;
+			final double rightDelta = right < hashes.length ? Math.abs(hash - hashes[right]) : Double.POSITIVE_INFINITY;
+			final boolean useLeft = leftDelta <= rightDelta;
+			final double delta = useLeft ? leftDelta : rightDelta;
+			final int owner = useLeft ? owners[left--] : owners[right++];
+
+			if (found >= wanted && delta > deltas[found - 1]) {
+				break;
+			}
+
+			final int position = positions != null ? positions[owner] : owner;
+
+			if (position >= 0 && !seen[owner]) {
+				seen[owner] = true;
+				candidates[found] = position;
+				deltas[found] = delta;
+				found++;
+			}
+		}
+
+		return order(from, candidates, deltas, found, wanted);
+	}
+
+	/*
+	 * ConsistentHasher keys each hashable by its delta in list order, moving a key that is already
+	 * taken up to the next representable double; assign the keys the same way so that ties break
+	 * identically.
+	 */
+	private List<T> order(final List<T> from, final int[] candidates, final double[] deltas, final int found, final int wanted) {
+		sortByFirst(candidates, deltas, found);
+
+		for (int i = 1; i < found; i++) {
+			while (containsKey(deltas, i, deltas[i])) {
+				deltas[i] = Math.nextUp(deltas[i]);
+			}
+		}
+
+		sortByFirst(deltas, candidates, found);
+
+		final List<T> selected = new ArrayList<T>(wanted);
+
+		for (int i = 0; i < wanted; i++) {
+			selected.add(from.get(candidates[i]));
+		}
+
+		return selected;
+	}
+
+	private static boolean containsKey(final double[] keys, final int length, final double key) {
+		for (int i = 0; i < length; i++) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// insertion sorts of two parallel arrays; only as many entries as are selected are sorted
+	private static void sortByFirst(final int[] keys, final double[] values, final int length) {
+		for (int i = 1; i < length; i++) {
+			final int key = keys[i];
+			final double value = values[i];
+			int j = i - 1;
+
+			while (j >= 0 && keys[j] > key) {
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	private static void sortByFirst(final double[] keys, final int[] values, final int length) {
+		for (int i = 1; i < length; i++) {
+			final double key = keys[i];
+			final int value = values[i];
+			int j = i - 1;
+
+			while (j >= 0 && keys[j] > key) {
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	private int lowerBound(final double hash) {
+		int low = 0;
+		int high = hashes.length;
+
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+
+			if (hashes[mid] < hash) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+}
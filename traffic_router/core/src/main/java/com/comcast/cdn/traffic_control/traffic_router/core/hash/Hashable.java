@@ -22,6 +22,8 @@ public interface Hashable <E> extends Comparable<E> {
 	double getClosestHash(double hash);
 	List<Double> getHashValues();
 	boolean hasHashes();
+	int getHashCount();
+	long getHashSeed();
 	int getOrder();
 	void setOrder(int order);
 }
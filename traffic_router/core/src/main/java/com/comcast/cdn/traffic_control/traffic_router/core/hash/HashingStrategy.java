@@ -0,0 +1,53 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hash;
+
+import java.util.List;
+
+/**
+ * Orders the hashables a request may be sent to, closest first, for the hash of the request.
+ * <p>
+ * Hashables passed to a strategy all have hashes; {@link ConsistentHasher} takes care of
+ * hashables without any and of the dispersion of the selected hashables.
+ * </p>
+ */
+public interface HashingStrategy {
+	/**
+	 * Selects hashables for a request.
+	 *
+	 * @param id
+	 *            an id shared by the lists of hashables that change together, such as the caches
+	 *            of a delivery service; strategies may keep state per id
+	 * @param hashables
+	 *            the hashables to select from
+	 * @param hash
+	 *            the hash of the request
+	 * @param limit
+	 *            the maximum number of hashables to select
+	 * @return the selected hashables, closest first
+	 */
+	<T extends Hashable> List<T> select(String id, List<T> hashables, double hash, int limit);
+
+	/**
+	 * Spreads the bits of a 64 bit value over all of the result (the finalizer of SplitMix64).
+	 */
+	static long mix(final long value) {
+		long z = value;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jump consistent hashing (Lamping and Veach, 2014).
+ * <p>
+ * Requests are spread evenly over the hashables in list order using no memory at all. Hash counts
+ * are not used as weights, and only hashables removed from the end of the list move nothing but
+ * their own requests; removing one from the middle remaps the requests of the hashables behind it.
+ * </p>
+ */
+public class JumpHashingStrategy implements HashingStrategy {
+	private static final double JUMP = 1L << 31;
+
+	@Override
+	public <T extends Hashable> List<T> select(final String id, final List<T> hashables, final double hash, final int limit) {
+		final int wanted = Math.min(limit, hashables.size());
+		final List<T> selected = new ArrayList<T>(Math.max(wanted, 0));
+
+		if (wanted <= 0) {
+			return selected;
+		}
+
+		final long key = HashingStrategy.mix(Double.doubleToLongBits(hash));
+
+		if (wanted == 1) {
+			selected.add(hashables.get(jump(key, hashables.size())));
+			return selected;
+		}
+
+		// further picks jump over the hashables that are left
+		final List<T> remaining = new ArrayList<T>(hashables);
+		selected.add(remaining.remove(jump(key, remaining.size())));
+
+		for (int n = 1; n < wanted; n++) {
+			selected.add(remaining.remove(jump(HashingStrategy.mix(key + n), remaining.size())));
+		}
+
+		return selected;
+	}
+
+	static int jump(final long key, final int buckets) {
+		long k = key;
+		long bucket = -1;
+		long next = 0;
+
+		while (next < buckets) {
+			bucket = next;
+			k = k * 2862933555777941757L + 1;
+			next = (long) ((bucket + 1) * (JUMP / ((k >>> 33) + 1)));
+		}
+
+		return (int) bucket;
+	}
+}
@@ -15,7 +15,7 @@
 
 package com.comcast.cdn.traffic_control.traffic_router.core.hash;
 
-import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -27,14 +27,73 @@ import org.springframework.stereotype.Component;
  */
 @Component
 public class MD5HashFunction {
+    private static final int DIGEST_LENGTH = 16;
 
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(MD5HashFunction::md5Digest);
+    private static final ThreadLocal<byte[]> DIGEST_BUFFER = ThreadLocal.withInitial(() -> new byte[DIGEST_LENGTH]);
+
+    @SuppressWarnings("PMD.AvoidThrowingRawExceptionTypes")
     public double hash(final String value) {
         final byte[] valueBytes = value != null ? value.getBytes() : "".getBytes();
-        return new BigInteger(1, md5Digest().digest(valueBytes)).doubleValue();
+        final MessageDigest digest = DIGEST.get();
+        final byte[] buffer = DIGEST_BUFFER.get();
+
+        try {
+            digest.update(valueBytes);
+            digest.digest(buffer, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            digest.reset();
+            throw new RuntimeException("Failed to compute MD5 digest", e);
+        }
+
+        return toDouble(buffer);
+    }
+
+    /**
+     * Converts a 16 byte digest, read as an unsigned big-endian integer, to the nearest double; this
+     * equals {@code new BigInteger(1, digest).doubleValue()}.
+     */
+    static double toDouble(final byte[] digest) {
+        final long high = toLong(digest, 0);
+        final long low = toLong(digest, 8);
+
+        if (high == 0) {
+            return unsignedToDouble(low);
+        }
+
+        final int shift = Long.numberOfLeadingZeros(high);
+
+        if (shift == 0) {
+            // the bits of low only matter for rounding
+            return Math.scalb(unsignedToDouble(high | (low != 0 ? 1 : 0)), Long.SIZE);
+        }
+
+        final long top = (high << shift) | (low >>> (Long.SIZE - shift));
+        final long rest = low << shift;
+        return Math.scalb(unsignedToDouble(top | (rest != 0 ? 1 : 0)), Long.SIZE - shift);
+    }
+
+    private static long toLong(final byte[] bytes, final int offset) {
+        long value = 0;
+
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+
+        return value;
+    }
+
+    // the low bit keeps track of the bits shifted out so that the conversion still rounds correctly
+    private static double unsignedToDouble(final long value) {
+        if (value >= 0) {
+            return value;
+        }
+
+        return ((value >>> 1) | (value & 1)) * 2.0;
     }
 
     @SuppressWarnings("PMD.AvoidThrowingRawExceptionTypes")
-    MessageDigest md5Digest() {
+    static MessageDigest md5Digest() {
         // https://docs.oracle.com/javase/8/docs/api/java/security/MessageDigest.html
 
         // Every implementation of the Java platform is required to support the following standard MessageDigest algorithms:
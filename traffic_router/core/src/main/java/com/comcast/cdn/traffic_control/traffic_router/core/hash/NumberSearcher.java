@@ -40,4 +40,27 @@ public class NumberSearcher {
 
 		return (biggerThanDelta < smallerThanDelta) ? biggerThanIndex : smallerThanIndex;
 	}
+
+	public static int findClosest(final double[] numbers, final double target) {
+		final int index = Arrays.binarySearch(numbers, target);
+		if (index >= 0) {
+			return index;
+		}
+
+		final int biggerThanIndex = -(index + 1);
+		if (biggerThanIndex == numbers.length) {
+			return numbers.length - 1;
+		}
+
+		if (biggerThanIndex == 0) {
+			return 0;
+		}
+
+		final int smallerThanIndex = biggerThanIndex - 1;
+
+		final double biggerThanDelta = Math.abs(numbers[biggerThanIndex] - target);
+		final double smallerThanDelta = Math.abs(numbers[smallerThanIndex] - target);
+
+		return (biggerThanDelta < smallerThanDelta) ? biggerThanIndex : smallerThanIndex;
+	}
 }
@@ -0,0 +1,70 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weighted rendezvous (highest random weight) hashing.
+ * <p>
+ * Every hashable scores the request with a random value derived from its hash seed and the request
+ * hash, scaled by its hash count as weight, and the highest scores win. No replicas are needed,
+ * and removing a hashable only moves the requests it had won.
+ * </p>
+ */
+public class RendezvousHashingStrategy implements HashingStrategy {
+	private static final double UNIT = 0x1.0p-53;
+
+	@Override
+	public <T extends Hashable> List<T> select(final String id, final List<T> hashables, final double hash, final int limit) {
+		final int wanted = Math.min(limit, hashables.size());
+		final List<T> selected = new ArrayList<T>(Math.max(wanted, 0));
+
+		if (wanted <= 0) {
+			return selected;
+		}
+
+		final long key = Double.doubleToLongBits(hash);
+		final double[] scores = new double[hashables.size()];
+
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = score(key, hashables.get(i));
+		}
+
+		// selection of the highest scores, ties going to the hashable earlier in the list
+		for (int n = 0; n < wanted; n++) {
+			int best = -1;
+
+			for (int i = 0; i < scores.length; i++) {
+				if (scores[i] >= 0 && (best < 0 || scores[i] > scores[best])) {
+					best = i;
+				}
+			}
+
+			selected.add(hashables.get(best));
+			scores[best] = -1;
+		}
+
+		return selected;
+	}
+
+	private static double score(final long key, final Hashable hashable) {
+		// uniform in (0, 1)
+		final double random = ((HashingStrategy.mix(key ^ hashable.getHashSeed()) >>> 11) + 0.5) * UNIT;
+		return hashable.getHashCount() / -Math.log(random);
+	}
+}
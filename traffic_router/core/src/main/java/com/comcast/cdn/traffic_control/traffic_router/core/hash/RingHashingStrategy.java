@@ -0,0 +1,82 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the hashables with the replica hashes closest to the request hash, from a
+ * {@link HashRing} kept between requests.
+ * <p>
+ * Rings are kept per id and cache location: a ring holds every hashable it has been asked to
+ * select from together with any of its other hashables, so the caches of a cache location that
+ * are available for one request and those available for another share a ring that selects from
+ * whichever are passed in. A ring only grows, when a list brings a hashable it has not seen.
+ * </p>
+ */
+public class RingHashingStrategy implements HashingStrategy {
+	private final Map<String, Map<Hashable, HashRing>> hashRings = new ConcurrentHashMap<>();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends Hashable> List<T> select(final String id, final List<T> hashables, final double hash, final int limit) {
+		final Map<Hashable, HashRing> rings = getHashRings(id);
+		final HashRing<T> hashRing = rings.get(hashables.get(0));
+		final List<T> selected = hashRing != null ? hashRing.select(hash, limit, hashables) : null;
+
+		if (selected != null) {
+			return selected;
+		}
+
+		return addHashRing(rings, hashRing, hashables).select(hash, limit, hashables);
+	}
+
+	private Map<Hashable, HashRing> getHashRings(final String id) {
+		Map<Hashable, HashRing> rings = hashRings.get(id);
+
+		if (rings == null) {
+			hashRings.putIfAbsent(id, new ConcurrentHashMap<>());
+			rings = hashRings.get(id);
+		}
+
+		return rings;
+	}
+
+	/*
+	 * Builds a ring of the hashables of an existing ring and the new hashables, and makes it the
+	 * ring of each of them.
+	 */
+	private <T extends Hashable> HashRing<T> addHashRing(final Map<Hashable, HashRing> rings, final HashRing<T> hashRing, final List<T> hashables) {
+		final List<T> members = hashRing != null ? new ArrayList<T>(hashRing.getHashables()) : new ArrayList<T>();
+
+		for (final T hashable : hashables) {
+			if (hashRing == null || !hashRing.contains(hashable)) {
+				members.add(hashable);
+			}
+		}
+
+		final HashRing<T> added = new HashRing<T>(members);
+
+		for (final T member : members) {
+			rings.put(member, added);
+		}
+
+		return added;
+	}
+}
@@ -16,41 +16,44 @@
 package com.comcast.cdn.traffic_control.traffic_router.core.http;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.request.HTTPRequest;
+import com.comcast.cdn.traffic_control.traffic_router.core.util.AccessEventFormat;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 
 import javax.servlet.http.HttpServletRequest;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class HTTPAccessEventBuilder {
     private static String formatRequest(final HttpServletRequest request) {
-        String url = formatObject(request.getRequestURL());
+        final StringBuffer requestURL = request.getRequestURL();
 
-        if ("-".equals(url)) {
-            return url;
+        if (requestURL == null) {
+            return "-";
         }
 
-        if (request.getQueryString() != null && !request.getQueryString().isEmpty()) {
-            final String queryString = "?" + request.getQueryString();
-            final StringBuilder stringBuilder = new StringBuilder(url);
-            stringBuilder.append(queryString);
-            url = stringBuilder.toString();
+        final String queryString = request.getQueryString();
+
+        if (queryString == null || queryString.isEmpty()) {
+            return requestURL.toString();
         }
 
-        return url;
+        return new StringBuilder(requestURL.length() + 1 + queryString.length()).append(requestURL).append('?').append(queryString).toString();
     }
 
     private static String formatObject(final Object o) {
         return (o == null) ? "-" : o.toString();
     }
 
-    private static String formatRequestHeaders(final Map<String, String> requestHeaders) {
+    private static StringBuilder appendObject(final StringBuilder stringBuilder, final Object o) {
+        return (o == null) ? stringBuilder.append('-') : stringBuilder.append(o);
+    }
+
+    private static void appendRequestHeaders(final StringBuilder stringBuilder, final Map<String, String> requestHeaders) {
         if (requestHeaders == null || requestHeaders.isEmpty()) {
-            return "rh=\"-\"";
+            stringBuilder.append("rh=\"-\"");
+            return;
         }
 
-        final StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
         for (final Map.Entry<String, String> entry : requestHeaders.entrySet()) {
             if (entry.getValue() == null || entry.getValue().isEmpty()) {
@@ -66,55 +69,51 @@ public class HTTPAccessEventBuilder {
 
             stringBuilder.append("rh=\"");
             stringBuilder.append(entry.getKey()).append(": ");
-            stringBuilder.append(entry.getValue().replaceAll("\"", "'"));
+            AccessEventFormat.appendQuoted(stringBuilder, entry.getValue());
             stringBuilder.append('"');
         }
-
-        return stringBuilder.toString();
     }
 
-    @SuppressWarnings("PMD.UseStringBufferForStringAppends")
     public static String create(final HTTPAccessRecord httpAccessRecord) {
-        final long start = httpAccessRecord.getRequestDate().getTime();
-        final String timeString = String.format("%d.%03d", start / 1000, start % 1000);
+        return event(httpAccessRecord).get();
+    }
 
+    /**
+     * Captures what an access event needs from the servlet request, which is recycled once the
+     * response is sent, along with the response time, so that the event can be formatted later.
+     *
+     * @param httpAccessRecord
+     *            the record to log
+     * @return formats the access event
+     */
+    public static Supplier<String> event(final HTTPAccessRecord httpAccessRecord) {
         final HttpServletRequest httpServletRequest = httpAccessRecord.getRequest();
 
-        String chi = formatObject(httpServletRequest.getRemoteAddr());
+        final String remoteIp = formatObject(httpServletRequest.getRemoteAddr());
         final String url = formatRequest(httpServletRequest);
         final String cqhm = formatObject(httpServletRequest.getMethod());
         final String cqhv = formatObject(httpServletRequest.getProtocol());
 
-        final String resultType = formatObject(httpAccessRecord.getResultType());
-        final String rerr = formatObject(httpAccessRecord.getRerr());
-
-        String resultDetails = "-";
-        if (!"-".equals(resultType)) {
-            resultDetails = formatObject(httpAccessRecord.getResultDetails());
-        }
-
-        String rloc = "-";
-        final Geolocation resultLocation = httpAccessRecord.getResultLocation();
-
-        if (resultLocation != null) {
-            final DecimalFormat decimalFormat = new DecimalFormat("0.00");
-            decimalFormat.setRoundingMode(RoundingMode.DOWN);
-            rloc = decimalFormat.format(resultLocation.getLatitude()) + "," + decimalFormat.format(resultLocation.getLongitude());
-        }
-
         final String xMmClientIpHeader = httpServletRequest.getHeader(HTTPRequest.X_MM_CLIENT_IP);
         final String fakeIpParameter = httpServletRequest.getParameter(HTTPRequest.FAKE_IP);
 
-        final String remoteIp = chi;
+        String chi = remoteIp;
         if (xMmClientIpHeader != null) {
             chi = xMmClientIpHeader;
         } else if (fakeIpParameter != null) {
             chi = fakeIpParameter;
         }
 
-        final String rgb = formatObject(httpAccessRecord.getRegionalGeoResult());
+        final String clientIp = chi;
+        final long nanoTime = System.nanoTime();
+        return () -> create(httpAccessRecord, clientIp, remoteIp, url, cqhm, cqhv, nanoTime);
+    }
+
+    private static String create(final HTTPAccessRecord httpAccessRecord, final String chi, final String remoteIp, final String url,
+                                 final String cqhm, final String cqhv, final long nanoTime) {
+        final StringBuilder stringBuilder = AccessEventFormat.getStringBuilder();
 
-        final StringBuilder stringBuilder = new StringBuilder(timeString)
+        AccessEventFormat.appendSeconds(stringBuilder, httpAccessRecord.getRequestDate().getTime())
             .append(" qtype=HTTP chi=")
             .append(chi)
             .append(" rhi=");
@@ -128,25 +127,34 @@ public class HTTPAccessEventBuilder {
         stringBuilder.append(" url=\"").append(url)
             .append("\" cqhm=").append(cqhm)
             .append(" cqhv=").append(cqhv)
-            .append(" rtype=").append(resultType)
-            .append(" rloc=\"").append(rloc)
-            .append("\" rdtl=").append(resultDetails)
-            .append(" rerr=\"").append(rerr)
-            .append("\" rgb=\"").append(rgb).append('"');
+            .append(" rtype=");
 
-        if (httpAccessRecord.getResponseCode() != -1) {
-            final String pssc = formatObject(httpAccessRecord.getResponseCode());
-            final double ttms = (System.nanoTime() - httpAccessRecord.getRequestNanoTime()) / 1000000.0;
-            stringBuilder.append(" pssc=").append(pssc).append(" ttms=").append(String.format("%.03f",ttms));
+        appendObject(stringBuilder, httpAccessRecord.getResultType()).append(" rloc=\"");
+
+        final Geolocation resultLocation = httpAccessRecord.getResultLocation();
+
+        if (resultLocation != null) {
+            AccessEventFormat.appendTwoDecimals(stringBuilder, resultLocation.getLatitude()).append(',');
+            AccessEventFormat.appendTwoDecimals(stringBuilder, resultLocation.getLongitude());
+        } else {
+            stringBuilder.append('-');
         }
 
-        final String respurl = " rurl=\"" + formatObject(httpAccessRecord.getResponseURL()) + "\"";
-        stringBuilder.append(respurl);
+        stringBuilder.append("\" rdtl=");
+        appendObject(stringBuilder, httpAccessRecord.getResultType() != null ? httpAccessRecord.getResultDetails() : null).append(" rerr=\"");
+        appendObject(stringBuilder, httpAccessRecord.getRerr()).append("\" rgb=\"");
+        appendObject(stringBuilder, httpAccessRecord.getRegionalGeoResult()).append('"');
+
+        if (httpAccessRecord.getResponseCode() != -1) {
+            stringBuilder.append(" pssc=").append(httpAccessRecord.getResponseCode()).append(" ttms=");
+            AccessEventFormat.appendMillis(stringBuilder, nanoTime - httpAccessRecord.getRequestNanoTime());
+        }
 
-        final String respurls = " rurls=\"" + formatObject(httpAccessRecord.getResponseURLs()) + "\" ";
-        stringBuilder.append(respurls);
+        stringBuilder.append(" rurl=\"");
+        appendObject(stringBuilder, httpAccessRecord.getResponseURL()).append("\" rurls=\"");
+        appendObject(stringBuilder, httpAccessRecord.getResponseURLs()).append("\" ");
 
-        stringBuilder.append(formatRequestHeaders(httpAccessRecord.getRequestHeaders()));
+        appendRequestHeaders(stringBuilder, httpAccessRecord.getRequestHeaders());
         return stringBuilder.toString();
     }
 }
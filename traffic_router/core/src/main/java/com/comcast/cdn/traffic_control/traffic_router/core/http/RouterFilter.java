@@ -21,8 +21,8 @@ import com.comcast.cdn.traffic_control.traffic_router.core.router.HTTPRouteResul
 import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouter;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouterManager;
+import com.comcast.cdn.traffic_control.traffic_router.core.util.AccessLogWriter;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationException;
-import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -38,7 +38,6 @@ import java.util.Map;
 import java.util.Set;
 
 public class RouterFilter extends OncePerRequestFilter {
-	private static final Logger ACCESS = Logger.getLogger("com.comcast.cdn.traffic_control.traffic_router.core.access");
 	public static final String REDIRECT_QUERY_PARAM = "trred";
 	private static final String HEAD = "HEAD";
 
@@ -69,7 +68,7 @@ public class RouterFilter extends OncePerRequestFilter {
 			}
 
 			final HTTPAccessRecord access = new HTTPAccessRecord.Builder(requestDate, request).build();
-			ACCESS.info(HTTPAccessEventBuilder.create(access));
+			AccessLogWriter.getInstance().log(HTTPAccessEventBuilder.event(access));
 			return;
 		}
 
@@ -118,7 +117,7 @@ public class RouterFilter extends OncePerRequestFilter {
 				.requestHeaders(accessRequestHeaders)
 				.regionalGeoResult(track.getRegionalGeoResult())
 				.build();
-			ACCESS.info(HTTPAccessEventBuilder.create(access));
+			AccessLogWriter.getInstance().log(HTTPAccessEventBuilder.event(access));
 			statTracker.saveTrack(track);
 		}
 	}
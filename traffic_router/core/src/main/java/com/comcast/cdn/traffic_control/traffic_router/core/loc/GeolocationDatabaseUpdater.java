@@ -18,8 +18,10 @@ package com.comcast.cdn.traffic_control.traffic_router.core.loc;
 import java.io.File;
 import java.io.IOException;
 
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationService;
+
 public class GeolocationDatabaseUpdater extends AbstractServiceUpdater {
-	private MaxmindGeolocationService maxmindGeolocationService;
+	private GeolocationService maxmindGeolocationService;
 
 	@Override
 	public boolean verifyDatabase(final File dbFile) throws IOException {
@@ -41,7 +43,7 @@ public class GeolocationDatabaseUpdater extends AbstractServiceUpdater {
 		return loaded;
 	}
 
-	public void setMaxmindGeolocationService(final MaxmindGeolocationService maxmindGeolocationService) {
+	public void setMaxmindGeolocationService(final GeolocationService maxmindGeolocationService) {
 		this.maxmindGeolocationService = maxmindGeolocationService;
 	}
 }
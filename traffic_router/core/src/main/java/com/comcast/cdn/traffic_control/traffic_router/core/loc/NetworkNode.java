@@ -323,16 +323,6 @@ public class NetworkNode implements Comparable<NetworkNode> {
                 cacheLocation = null;
             }
 
-            if (this instanceof SuperNode) {
-                final SuperNode superNode = (SuperNode) this;
-
-                if (superNode.children6 != null) {
-                    for (final NetworkNode child : superNode.children6.keySet()) {
-                        child.clearCacheLocations(clearCachesOnly);
-                    }
-                }
-            }
-
             if (children != null) {
                 for (final NetworkNode child : children.keySet()) {
                     child.clearCacheLocations(clearCachesOnly);
@@ -341,40 +331,75 @@ public class NetworkNode implements Comparable<NetworkNode> {
         }
     }
 
+    /**
+     * The root of a tree of networks. Networks are kept in a {@link NetworkTrie} rather than in
+     * child maps, so adding a network does not scan its siblings and finding the network of an
+     * IPv4 address does not parse it into a {@link NetworkNode}.
+     */
     public static class SuperNode extends NetworkNode {
-        private Map<NetworkNode, NetworkNode> children6;
+        private final NetworkTrie<NetworkNode> networks = new NetworkTrie<NetworkNode>();
 
         public SuperNode() throws NetworkNodeException {
             super(DEFAULT_SUB_STR);
         }
 
-        public Boolean add6(final NetworkNode nn) {
-            if(children6 == null) {
-                children6 = new TreeMap<NetworkNode,NetworkNode>();
+        @Override
+        public Boolean add(final NetworkNode nn) {
+            synchronized(this) {
+                return networks.add(nn.cidrAddress, nn);
             }
-            return add(children6, nn);
         }
 
+        public Boolean add6(final NetworkNode nn) {
+            return add(nn);
+        }
+
+        @Override
         public NetworkNode getNetwork(final String ip) throws NetworkNodeException {
-            final NetworkNode nn = new NetworkNode(ip);
-            if (nn.cidrAddress.isIpV6()) {
-                return getNetwork6(nn);
+            final long ipv4 = NetworkTrie.parseIpV4(ip);
+
+            if (ipv4 >= 0) {
+                return orThis(networks.getIpV4(ipv4));
             }
-            return getNetwork(nn);
+
+            return getNetwork(new NetworkNode(ip));
+        }
+
+        @Override
+        public NetworkNode getNetwork(final NetworkNode networkNode) {
+            return orThis(networks.get(networkNode.cidrAddress.getHostBytes()));
         }
 
         public NetworkNode getNetwork6(final NetworkNode networkNode) {
-            if (children6 == null) {
-                return this;
-            }
+            return getNetwork(networkNode);
+        }
 
-            final NetworkNode c = children6.get(networkNode);
+        /**
+         * @return the number of leading bits of the address that decide its network
+         * @see NetworkTrie#getScope(byte[])
+         */
+        public int getScope(final InetAddress address) {
+            return networks.getScope(address.getAddress());
+        }
 
-            if (c == null) {
-                return this;
-            }
+        private NetworkNode orThis(final NetworkNode networkNode) {
+            return networkNode != null ? networkNode : this;
+        }
 
-            return c.getNetwork(networkNode);
+        @Override
+        public int size() {
+            return 1 + networks.size();
+        }
+
+        @Override
+        public void clearCacheLocations(final boolean clearCachesOnly) {
+            synchronized(this) {
+                super.clearCacheLocations(clearCachesOnly);
+
+                for (final NetworkNode network : networks.values()) {
+                    network.clearCacheLocations(clearCachesOnly);
+                }
+            }
         }
     }
 
@@ -0,0 +1,376 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.loc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.util.CidrAddress;
+
+/**
+ * A path compressed binary (Patricia) trie of IPv4 and IPv6 prefixes used for longest prefix
+ * matching.
+ * <p>
+ * Addresses are held as two longs, the first 64 bits and the last 64 bits, with IPv4 addresses
+ * in the top 32 bits of the first long. Each node stores its prefix together with the masks for
+ * its length, so matching a node against an address is a couple of xors and ands, and lookups
+ * allocate nothing. Adding a prefix walks at most one node per bit of the prefix.
+ * </p>
+ * <p>
+ * The trie is not safe for concurrent modification; build it before publishing it to readers.
+ * </p>
+ */
+public class NetworkTrie<T> {
+    private static final int IPV4_BITS = 32;
+    private static final int IPV6_BITS = 128;
+
+    private Node<T> root4;
+    private Node<T> root6;
+    private int size;
+
+    private static class Node<T> {
+        private final long hi;
+        private final long lo;
+        private final long maskHi;
+        private final long maskLo;
+        private final int length;
+        private T value;
+        private Node<T> zero;
+        private Node<T> one;
+
+        Node(final long hi, final long lo, final int length, final T value) {
+            this.maskHi = maskHi(length);
+            this.maskLo = maskLo(length);
+            this.hi = hi & maskHi;
+            this.lo = lo & maskLo;
+            this.length = length;
+            this.value = value;
+        }
+
+        boolean matches(final long addressHi, final long addressLo) {
+            return ((addressHi ^ hi) & maskHi) == 0 && ((addressLo ^ lo) & maskLo) == 0;
+        }
+
+        Node<T> child(final long addressHi, final long addressLo) {
+            return bit(addressHi, addressLo, length) == 0 ? zero : one;
+        }
+
+        void setChild(final Node<T> child) {
+            if (bit(child.hi, child.lo, length) == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+
+    /**
+     * Adds a prefix unless the same prefix was already added.
+     *
+     * @return true if the prefix was added, false if it was already present
+     */
+    public boolean add(final CidrAddress cidrAddress, final T value) {
+        final byte[] address = cidrAddress.getHostBytes();
+        final long hi = toLong(address, 0);
+        final long lo = address.length > 8 ? toLong(address, 8) : 0;
+        final boolean ipV4 = address.length == 4;
+        final Node<T> node = new Node<T>(hi, lo, cidrAddress.getNetmaskLength(), value);
+        final Node<T> root = ipV4 ? root4 : root6;
+
+        if (root == null) {
+            replace(null, null, node, ipV4);
+            size++;
+            return true;
+        }
+
+        return add(root, node, ipV4);
+    }
+
+    private boolean add(final Node<T> root, final Node<T> added, final boolean ipV4) {
+        Node<T> parent = null;
+        Node<T> node = root;
+
+        while (true) {
+            final int common = commonPrefixLength(node, added);
+
+            if (common < node.length) {
+                // the added prefix branches off above this node, so split the edge leading to it
+                final Node<T> split;
+
+                if (common == added.length) {
+                    split = added;
+                } else {
+                    split = new Node<T>(added.hi, added.lo, common, null);
+                    split.setChild(added);
+                }
+
+                split.setChild(node);
+                replace(parent, node, split, ipV4);
+                size++;
+                return true;
+            }
+
+            if (node.length == added.length) {
+                if (node.value != null) {
+                    return false;
+                }
+
+                node.value = added.value;
+                size++;
+                return true;
+            }
+
+            final Node<T> child = node.child(added.hi, added.lo);
+
+            if (child == null) {
+                node.setChild(added);
+                size++;
+                return true;
+            }
+
+            parent = node;
+            node = child;
+        }
+    }
+
+    private void replace(final Node<T> parent, final Node<T> node, final Node<T> replacement, final boolean ipV4) {
+        if (parent == null) {
+            if (ipV4) {
+                root4 = replacement;
+            } else {
+                root6 = replacement;
+            }
+        } else if (parent.zero == node) {
+            parent.zero = replacement;
+        } else {
+            parent.one = replacement;
+        }
+    }
+
+    /**
+     * Finds the value of the longest prefix containing an IPv4 address.
+     *
+     * @param address
+     *            the address as an unsigned 32 bit number
+     * @return the value, or null if no prefix contains the address
+     */
+    public T getIpV4(final long address) {
+        return get(root4, address << IPV4_BITS, 0);
+    }
+
+    /**
+     * Finds the value of the longest prefix containing an IPv6 address.
+     *
+     * @param hi
+     *            the first 64 bits of the address
+     * @param lo
+     *            the last 64 bits of the address
+     * @return the value, or null if no prefix contains the address
+     */
+    public T getIpV6(final long hi, final long lo) {
+        return get(root6, hi, lo);
+    }
+
+    /**
+     * Finds the value of the longest prefix containing a 4 or 16 byte address.
+     */
+    public T get(final byte[] address) {
+        if (address.length == 4) {
+            return get(root4, toLong(address, 0), 0);
+        }
+
+        return get(root6, toLong(address, 0), toLong(address, 8));
+    }
+
+    private T get(final Node<T> root, final long hi, final long lo) {
+        T found = null;
+        Node<T> node = root;
+
+        while (node != null && node.matches(hi, lo)) {
+            if (node.value != null) {
+                found = node.value;
+            }
+
+            node = node.child(hi, lo);
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds how many leading bits of a 4 or 16 byte address decide its longest prefix match.
+     * <p>
+     * Every address sharing that many leading bits with the given one has the same longest match,
+     * so the result is never shorter than the matching prefix, and it is longer whenever a more
+     * specific prefix lies in the way. This is the scope of an answer chosen by the match, in the
+     * sense of the EDNS client subnet option (RFC 7871).
+     * </p>
+     */
+    public int getScope(final byte[] address) {
+        if (address.length == 4) {
+            return getScope(root4, toLong(address, 0), 0);
+        }
+
+        return getScope(root6, toLong(address, 0), toLong(address, 8));
+    }
+
+    private int getScope(final Node<T> root, final long hi, final long lo) {
+        int scope = 0;
+        Node<T> node = root;
+
+        while (node != null) {
+            if (!node.matches(hi, lo)) {
+                // the prefixes below branch off the address after the bits they have in common
+                return Math.max(scope, commonPrefixLength(node, hi, lo) + 1);
+            }
+
+            if (node.value != null) {
+                scope = node.length;
+            }
+
+            final Node<T> child = node.child(hi, lo);
+
+            // prefixes on the other branch differ from the address in the next bit
+            if ((child == node.zero ? node.one : node.zero) != null) {
+                scope = node.length + 1;
+            }
+
+            node = child;
+        }
+
+        return scope;
+    }
+
+    /**
+     * @return the number of prefixes in the trie
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the values of all prefixes, IPv4 before IPv6 and each in address order
+     */
+    public List<T> values() {
+        final List<T> values = new ArrayList<T>(size);
+        collect(root4, values);
+        collect(root6, values);
+        return values;
+    }
+
+    private void collect(final Node<T> node, final List<T> values) {
+        if (node == null) {
+            return;
+        }
+
+        if (node.value != null) {
+            values.add(node.value);
+        }
+
+        collect(node.zero, values);
+        collect(node.one, values);
+    }
+
+    /**
+     * Parses a dotted quad IPv4 address without allocating.
+     *
+     * @return the address as an unsigned 32 bit number, or -1 if the string is not a dotted quad
+     */
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
+    public static long parseIpV4(final String ip) {
+        final int length = ip.length();
+
+        if (length < 7 || length > 15) {
+            return -1;
+        }
+
+        long address = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+
+        for (int i = 0; i < length; i++) {
+            final char c = ip.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                digits++;
+
+                if (digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+
+        return (address << 8) | octet;
+    }
+
+    private static int commonPrefixLength(final Node<?> a, final Node<?> b) {
+        final int max = Math.min(a.length, b.length);
+        final long diffHi = a.hi ^ b.hi;
+        final int common = diffHi != 0 ? Long.numberOfLeadingZeros(diffHi) : 64 + Long.numberOfLeadingZeros(a.lo ^ b.lo);
+        return Math.min(common, max);
+    }
+
+    private static int commonPrefixLength(final Node<?> node, final long hi, final long lo) {
+        final long diffHi = node.hi ^ hi;
+        final int common = diffHi != 0 ? Long.numberOfLeadingZeros(diffHi) : 64 + Long.numberOfLeadingZeros(node.lo ^ lo);
+        return Math.min(common, node.length);
+    }
+
+    private static int bit(final long hi, final long lo, final int index) {
+        if (index >= IPV6_BITS) {
+            return 0;
+        }
+
+        return (int) (index < 64 ? hi >>> (63 - index) : lo >>> (127 - index)) & 1;
+    }
+
+    private static long maskHi(final int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        return length >= 64 ? -1L : -1L << (64 - length);
+    }
+
+    private static long maskLo(final int length) {
+        return length <= 64 ? 0 : -1L << (128 - length);
+    }
+
+    private static long toLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        final int end = Math.min(offset + 8, bytes.length);
+
+        for (int i = offset; i < end; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+
+        // left align shorter addresses so that IPv4 addresses occupy the top 32 bits
+        return value << (8 * (offset + 8 - end));
+    }
+}
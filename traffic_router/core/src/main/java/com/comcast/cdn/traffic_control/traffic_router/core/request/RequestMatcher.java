@@ -49,6 +49,14 @@ public class RequestMatcher implements Comparable<RequestMatcher> {
 		this(type, regex, "");
 	}
 
+	public Type getType() {
+		return type;
+	}
+
+	public String getRegex() {
+		return pattern.pattern();
+	}
+
 	public boolean matches(final Request request) {
 		final String target = getTarget(request);
 
@@ -0,0 +1,117 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.router;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
+import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNode;
+import com.comcast.cdn.traffic_control.traffic_router.core.request.DNSRequest;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultDetails;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+
+/**
+ * DNS routing decisions made from the coverage zone network of the client, so that further
+ * requests for the same name from anywhere in that network are answered without routing again.
+ * <p>
+ * Only decisions that follow from the coverage zone network alone belong here: the caller leaves
+ * out answers that are shuffled per request. The cache belongs to a single {@link TrafficRouter},
+ * so a new configuration starts with an empty one, and it is cleared whenever the states of caches
+ * or delivery services change. Coverage zone networks are told apart by identity, so a reloaded
+ * coverage zone file simply stops matching the decisions made for the previous one.
+ * </p>
+ */
+class DNSRouteCache {
+	private final Cache<Key, Decision> decisions;
+
+	DNSRouteCache(final CacheBuilderSpec spec) {
+		decisions = CacheBuilder.from(spec).build();
+	}
+
+	/**
+	 * @return the result of an earlier request from the network, with the track filled in as
+	 *         routing it would have, or null if there is none
+	 */
+	DNSRouteResult get(final DNSRequest request, final NetworkNode network, final Track track) {
+		final Decision decision = decisions.getIfPresent(new Key(request, network));
+
+		if (decision == null) {
+			return null;
+		}
+
+		track.setResult(ResultType.CZ);
+		track.setResultDetails(decision.resultDetails);
+		track.setResultLocation(decision.location);
+		track.setClientGeolocation(decision.location);
+
+		final DNSRouteResult result = new DNSRouteResult();
+		result.setAddresses(decision.addresses);
+		return result;
+	}
+
+	void put(final DNSRequest request, final NetworkNode network, final DNSRouteResult result, final Track track) {
+		decisions.put(new Key(request, network), new Decision(result.getAddresses(), track));
+	}
+
+	void invalidateAll() {
+		decisions.invalidateAll();
+	}
+
+	private static final class Key {
+		private final String hostname;
+		private final int qtype;
+		private final NetworkNode network;
+
+		Key(final DNSRequest request, final NetworkNode network) {
+			this.hostname = request.getHostname();
+			this.qtype = request.getQtype();
+			this.network = network;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * hostname.hashCode() + qtype) + System.identityHashCode(network);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			final Key key = (Key) obj;
+			return network == key.network && qtype == key.qtype && hostname.equals(key.hostname);
+		}
+	}
+
+	private static final class Decision {
+		private final List<InetRecord> addresses;
+		private final ResultDetails resultDetails;
+		private final Geolocation location;
+
+		Decision(final List<InetRecord> addresses, final Track track) {
+			this.addresses = Collections.unmodifiableList(addresses);
+			this.resultDetails = track.getResultDetails();
+			this.location = track.getResultLocation();
+		}
+	}
+}
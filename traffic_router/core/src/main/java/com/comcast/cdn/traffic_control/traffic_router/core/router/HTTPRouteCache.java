@@ -0,0 +1,114 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache;
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
+import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNode;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultDetails;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+
+/**
+ * The caches selected for a delivery service from the coverage zone network of the client, so
+ * that further HTTP requests to the delivery service from anywhere in that network only have to
+ * hash their path onto the same caches.
+ * <p>
+ * Like {@link DNSRouteCache}, the selections belong to a single {@link TrafficRouter} and are
+ * cleared whenever the states of caches or delivery services change.
+ * </p>
+ */
+class HTTPRouteCache {
+	private final com.google.common.cache.Cache<Key, Selection> selections;
+
+	HTTPRouteCache(final CacheBuilderSpec spec) {
+		selections = CacheBuilder.from(spec).build();
+	}
+
+	/**
+	 * @return the caches selected for an earlier request from the network, with the track filled
+	 *         in as selecting them would have, or null if there are none
+	 */
+	List<Cache> get(final DeliveryService deliveryService, final NetworkNode network, final Track track) {
+		final Selection selection = selections.getIfPresent(new Key(deliveryService, network));
+
+		if (selection == null) {
+			return null;
+		}
+
+		track.setResult(ResultType.CZ);
+		track.setResultDetails(selection.resultDetails);
+		track.setResultLocation(selection.cacheLocation.getGeolocation());
+		track.setClientGeolocation(selection.clientGeolocation);
+
+		// callers are free to narrow down the caches they get
+		return new ArrayList<Cache>(selection.caches);
+	}
+
+	void put(final DeliveryService deliveryService, final NetworkNode network, final CacheLocation cacheLocation, final List<Cache> caches, final Track track) {
+		selections.put(new Key(deliveryService, network), new Selection(cacheLocation, caches, track));
+	}
+
+	void invalidateAll() {
+		selections.invalidateAll();
+	}
+
+	private static final class Key {
+		private final String deliveryServiceId;
+		private final NetworkNode network;
+
+		Key(final DeliveryService deliveryService, final NetworkNode network) {
+			this.deliveryServiceId = deliveryService.getId();
+			this.network = network;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * deliveryServiceId.hashCode() + System.identityHashCode(network);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			final Key key = (Key) obj;
+			return network == key.network && deliveryServiceId.equals(key.deliveryServiceId);
+		}
+	}
+
+	private static final class Selection {
+		private final CacheLocation cacheLocation;
+		private final List<Cache> caches;
+		private final ResultDetails resultDetails;
+		private final Geolocation clientGeolocation;
+
+		Selection(final CacheLocation cacheLocation, final List<Cache> caches, final Track track) {
+			this.cacheLocation = cacheLocation;
+			this.caches = new ArrayList<Cache>(caches);
+			this.resultDetails = track.getResultDetails();
+			this.clientGeolocation = track.getClientGeolocation();
+		}
+	}
+}
@@ -18,12 +18,19 @@ package com.comcast.cdn.traffic_control.traffic_router.core.router;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.RegionalGeoResult;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
+import com.comcast.cdn.traffic_control.traffic_router.core.util.LatencyHistogram;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.RouteType;
 
@@ -199,10 +206,10 @@ public class StatTracker {
 		}
 
 		public final void start() {
-			time = System.currentTimeMillis();
+			time = System.nanoTime();
 		}
 		public final void end() {
-			time = System.currentTimeMillis() - time;
+			time = System.nanoTime() - time;
 		}
 	}
 
@@ -210,40 +217,222 @@ public class StatTracker {
 		return new Track();
 	}
 
-	final private Map<String, Tallies> dnsMap = new HashMap<String, Tallies>();
-	final private Map<String, Tallies> httpMap = new HashMap<String, Tallies>();
+	/*
+	 * A counter for each result type of one name, created up front so that counting a request
+	 * never allocates or locks, and a latency histogram for each result type the name has seen
+	 * if the name has latencies of its own.
+	 */
+	private static class Counters {
+		private final LongAdder[] results = new LongAdder[ResultType.values().length];
+		private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<LatencyHistogram>(results.length);
+		private final boolean ownLatencies;
+
+		Counters(final boolean ownLatencies) {
+			this.ownLatencies = ownLatencies;
+
+			for (int i = 0; i < results.length; i++) {
+				results[i] = new LongAdder();
+			}
+		}
+
+		void increment(final ResultType resultType) {
+			results[resultType.ordinal()].increment();
+		}
+
+		void recordLatency(final ResultType resultType, final long nanos) {
+			LatencyHistogram latency = latencies.get(resultType.ordinal());
+
+			if (latency == null) {
+				latencies.compareAndSet(resultType.ordinal(), null, new LatencyHistogram());
+				latency = latencies.get(resultType.ordinal());
+			}
+
+			latency.record(nanos);
+		}
+
+		Map<String, LatencyHistogram.Snapshot> getLatencies() {
+			final Map<String, LatencyHistogram.Snapshot> snapshots = new HashMap<String, LatencyHistogram.Snapshot>();
+
+			for (final ResultType resultType : ResultType.values()) {
+				final LatencyHistogram latency = latencies.get(resultType.ordinal());
+
+				if (latency != null) {
+					snapshots.put(resultType.toString(), latency.getSnapshot());
+				}
+			}
+
+			return snapshots;
+		}
+
+		private int count(final ResultType resultType) {
+			return results[resultType.ordinal()].intValue();
+		}
+
+		Tallies toTallies() {
+			final Tallies tallies = new Tallies();
+			tallies.errCount = count(ResultType.ERROR);
+			tallies.czCount = count(ResultType.CZ);
+			tallies.geoCount = count(ResultType.GEO);
+			tallies.deepCzCount = count(ResultType.DEEP_CZ);
+			tallies.missCount = count(ResultType.MISS);
+			tallies.dsrCount = count(ResultType.DS_REDIRECT);
+			tallies.staticRouteCount = count(ResultType.STATIC_ROUTE);
+			tallies.fedCount = count(ResultType.FED);
+			tallies.regionalDeniedCount = count(ResultType.RGDENY);
+			tallies.regionalAlternateCount = count(ResultType.RGALT);
+			return tallies;
+		}
+	}
+
+	/*
+	 * The counters of each name of one route type. Names are request host names, which clients
+	 * choose, so only the first names seen get latency histograms of their own; the latencies of
+	 * any further names are recorded under "other".
+	 */
+	private static class NameCounters {
+		private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+		private final Counters otherLatencies = new Counters(true);
+		private final AtomicInteger latencyNames = new AtomicInteger();
+
+		Counters get(final String name) {
+			final Counters counters = this.counters.get(name);
+
+			if (counters != null) {
+				return counters;
+			}
+
+			final boolean ownLatencies = latencyNames.incrementAndGet() <= MAX_LATENCY_NAMES;
+			final Counters created = new Counters(ownLatencies);
+			final Counters existing = this.counters.putIfAbsent(name, created);
+
+			if (existing == null) {
+				return created;
+			}
+
+			if (ownLatencies) {
+				latencyNames.decrementAndGet();
+			}
+
+			return existing;
+		}
+
+		void recordLatency(final Counters counters, final ResultType resultType, final long nanos) {
+			(counters.ownLatencies ? counters : otherLatencies).recordLatency(resultType, nanos);
+		}
+	}
+
+	private static final int MAX_LATENCY_NAMES = 1000;
+	private static final String OTHER_NAMES = "other";
+
+	final private NameCounters dnsCounters = new NameCounters();
+	final private NameCounters httpCounters = new NameCounters();
+
+	/**
+	 * @return a snapshot of the DNS tallies of each name
+	 */
 	public Map<String, Tallies> getDnsMap() {
-		return dnsMap;
+		return snapshot(dnsCounters);
 	}
+
+	/**
+	 * @return a snapshot of the HTTP tallies of each name
+	 */
 	public Map<String, Tallies> getHttpMap() {
-		return httpMap;
+		return snapshot(httpCounters);
+	}
+
+	private static Map<String, Tallies> snapshot(final NameCounters counters) {
+		final Map<String, Tallies> snapshot = new HashMap<String, Tallies>();
+
+		for (final Map.Entry<String, Counters> entry : counters.counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().toTallies());
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Takes latency snapshots of each result type of each name, for both DNS and HTTP. Names
+	 * seen after the first thousand of a route type share the snapshots of the name "other".
+	 *
+	 * @return snapshots by route type, then name, then result type
+	 */
+	public Map<String, Map<String, Map<String, LatencyHistogram.Snapshot>>> getLatencies() {
+		final Map<String, Map<String, Map<String, LatencyHistogram.Snapshot>>> latencies = new HashMap<String, Map<String, Map<String, LatencyHistogram.Snapshot>>>();
+		latencies.put(RouteType.DNS.toString(), getLatencies(dnsCounters));
+		latencies.put(RouteType.HTTP.toString(), getLatencies(httpCounters));
+		return latencies;
 	}
+
+	private static Map<String, Map<String, LatencyHistogram.Snapshot>> getLatencies(final NameCounters counters) {
+		final Map<String, Map<String, LatencyHistogram.Snapshot>> latencies = new HashMap<String, Map<String, LatencyHistogram.Snapshot>>();
+
+		for (final Map.Entry<String, Counters> entry : counters.counters.entrySet()) {
+			final Map<String, LatencyHistogram.Snapshot> snapshots = entry.getValue().getLatencies();
+
+			if (!snapshots.isEmpty()) {
+				latencies.put(entry.getKey(), snapshots);
+			}
+		}
+
+		final Map<String, LatencyHistogram.Snapshot> others = counters.otherLatencies.getLatencies();
+
+		if (!others.isEmpty()) {
+			latencies.put(OTHER_NAMES, others);
+		}
+
+		return latencies;
+	}
+
 	public int getTotalDnsCount() {
-		return totalDnsCount;
+		return totalDnsCount.intValue();
 	}
 	public long getAverageDnsTime() {
-		if(totalDnsCount==0) { return 0; }
-		return totalDnsTime/totalDnsCount;
+		final long count = totalDnsCount.sum();
+		if(count==0) { return 0; }
+		return TimeUnit.NANOSECONDS.toMillis(totalDnsTime.sum()/count);
 	}
 	public int getTotalHttpCount() {
-		return totalHttpCount;
+		return totalHttpCount.intValue();
 	}
 	public long getAverageHttpTime() {
-		if(totalHttpCount==0) { return 0; }
-		return totalHttpTime/totalHttpCount;
+		final long count = totalHttpCount.sum();
+		if(count==0) { return 0; }
+		return TimeUnit.NANOSECONDS.toMillis(totalHttpTime.sum()/count);
+	}
+	/**
+	 * @return the number of DNS requests canceled because they ran past their task timeout
+	 */
+	public long getTotalDnsTimeoutCount() {
+		return totalDnsTimeoutCount.sum();
+	}
+	public void countDnsTimeout() {
+		totalDnsTimeoutCount.increment();
+	}
+	/**
+	 * @return the number of DNS requests discarded because the request queue was full
+	 */
+	public long getTotalDnsRejectedCount() {
+		return totalDnsRejectedCount.sum();
+	}
+	public void countDnsRejection() {
+		totalDnsRejectedCount.increment();
 	}
 	public int getTotalDsMissCount() {
-		return totalDsMissCount;
+		return totalDsMissCount.intValue();
 	}
 	public void setTotalDsMissCount(final int totalDsMissCount) {
-		this.totalDsMissCount = totalDsMissCount;
+		this.totalDsMissCount.reset();
+		this.totalDsMissCount.add(totalDsMissCount);
 	}
 
-	private int totalDnsCount;
-	private long totalDnsTime;
-	private int totalHttpCount;
-	private long totalHttpTime;
-	private int totalDsMissCount = 0;
+	private final LongAdder totalDnsCount = new LongAdder();
+	private final LongAdder totalDnsTimeoutCount = new LongAdder();
+	private final LongAdder totalDnsRejectedCount = new LongAdder();
+	private final LongAdder totalDnsTime = new LongAdder();
+	private final LongAdder totalHttpCount = new LongAdder();
+	private final LongAdder totalHttpTime = new LongAdder();
+	private final LongAdder totalDsMissCount = new LongAdder();
 	public Map<String,Long> getUpdateTracker() {
 		return TrafficRouterManager.getTimeTracker();
 	}
@@ -256,67 +445,30 @@ public class StatTracker {
 	public void saveTrack(final Track t) {
 		if (t.result == ResultType.DS_MISS) {
 			// don't tabulate this, it's for a DS that doesn't exist
-			totalDsMissCount++;
+			totalDsMissCount.increment();
 			return;
 		}
 
 		t.end();
 
-		synchronized(this) {
-			Map<String,Tallies> map;
-			if(t.routeType == RouteType.DNS) {
-				totalDnsCount++;
-				totalDnsTime += t.time;
-				map = dnsMap;
-			} else {
-				totalHttpCount++;
-				totalHttpTime += t.time;
-				map = httpMap;
-			}
-			Tallies tallies = map.get(t.fqdn);
-			if(tallies == null) {
-				tallies = new Tallies();
-				map.put((t.fqdn==null)?"null":t.fqdn, tallies);
-			}
-			incTally(t, tallies);
+		final NameCounters map;
+		if(t.routeType == RouteType.DNS) {
+			totalDnsCount.increment();
+			totalDnsTime.add(t.time);
+			map = dnsCounters;
+		} else {
+			totalHttpCount.increment();
+			totalHttpTime.add(t.time);
+			map = httpCounters;
 		}
-	}
 
-	@SuppressWarnings("PMD.CyclomaticComplexity")
-	private static void incTally(final Track t, final Tallies tallies) {
-		switch(t.result) {
-		case ERROR:
-			tallies.errCount++;
-			break;
-		case CZ:
-			tallies.czCount++;
-			break;
-		case GEO:
-			tallies.geoCount++;
-			break;
-		case DEEP_CZ:
-			tallies.deepCzCount++;
-			break;
-		case MISS:
-			tallies.missCount++;
-			break;
-		case DS_REDIRECT:
-			tallies.dsrCount++;
-			break;
-		case STATIC_ROUTE:
-			tallies.staticRouteCount++;
-			break;
-		case FED:
-			tallies.fedCount++;
-			break;
-		case RGDENY:
-			tallies.regionalDeniedCount++;
-			break;
-		case RGALT:
-			tallies.regionalAlternateCount++;
-			break;
-		default:
-			break;
+		final String fqdn = (t.fqdn==null)?"null":t.fqdn;
+		final Counters counters = map.get(fqdn);
+		counters.increment(t.result);
+
+		// the tracks that create each name at startup take no time to route
+		if (t.result != ResultType.INIT) {
+			map.recordLatency(counters, t.result, t.time);
 		}
 	}
 
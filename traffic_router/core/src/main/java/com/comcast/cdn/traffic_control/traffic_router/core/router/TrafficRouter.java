@@ -26,10 +26,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -43,6 +45,7 @@ import com.comcast.cdn.traffic_control.traffic_router.core.hash.ConsistentHasher
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.MaxmindGeolocationService;
 import com.comcast.cdn.traffic_control.traffic_router.core.util.JsonUtils;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.CacheBuilderSpec;
 import org.apache.log4j.Logger;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -52,6 +55,7 @@ import org.xbill.DNS.Zone;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation.LocalizationMethod;
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocationIndex;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.ZoneManager;
@@ -77,7 +81,7 @@ import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Tr
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.AnonymousIp;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.AnonymousIpDatabaseService;
 
-@SuppressWarnings("PMD.ExcessivePublicCount")
+@SuppressWarnings({"PMD.ExcessivePublicCount", "PMD.TooManyFields"})
 public class TrafficRouter {
 	public static final Logger LOGGER = Logger.getLogger(TrafficRouter.class);
 	public static final String XTC_STEERING_OPTION = "x-tc-steering-option";
@@ -91,6 +95,8 @@ public class TrafficRouter {
 	private final FederationRegistry federationRegistry;
 	private final boolean consistentDNSRouting;
 	private final boolean clientSteeringDiversityEnabled;
+	private final DNSRouteCache dnsRouteCache;
+	private final HTTPRouteCache httpRouteCache;
 
 	private final Random random = new Random(System.nanoTime());
 	private Set<String> requestHeaders = new HashSet<String>();
@@ -117,6 +123,12 @@ public class TrafficRouter {
 		this.federationRegistry = federationRegistry;
 		this.consistentDNSRouting = JsonUtils.optBoolean(cr.getConfig(), "consistent.dns.routing");
 		this.clientSteeringDiversityEnabled = JsonUtils.optBoolean(cr.getConfig(), CLIENT_STEERING_DIVERSITY);
+
+		final CacheBuilderSpec dnsRouteCacheSpec = getRouteCacheSpec(cr.getConfig(), "dns");
+		final CacheBuilderSpec httpRouteCacheSpec = getRouteCacheSpec(cr.getConfig(), "http");
+		this.dnsRouteCache = dnsRouteCacheSpec != null ? new DNSRouteCache(dnsRouteCacheSpec) : null;
+		this.httpRouteCache = httpRouteCacheSpec != null ? new HTTPRouteCache(httpRouteCacheSpec) : null;
+
 		this.zoneManager = new ZoneManager(this, statTracker, trafficOpsUtils, trafficRouterManager);
 
 		if (cr.getConfig() != null) {
@@ -133,6 +145,21 @@ public class TrafficRouter {
 		}
 	}
 
+	/**
+	 * @return the spec of the cache of routing decisions for a protocol, or null if the cache is
+	 *         disabled
+	 */
+	private static CacheBuilderSpec getRouteCacheSpec(final JsonNode config, final String protocol) {
+		final int maximumSize = JsonUtils.optInt(config, protocol + ".routing.cache.maxsize", 0); // off unless configured
+
+		if (maximumSize <= 0) {
+			return null;
+		}
+
+		return CacheBuilderSpec.parse("maximumSize=" + maximumSize + ",expireAfterWrite="
+			+ JsonUtils.optString(config, protocol + ".routing.cache.expiration", "300s"));
+	}
+
 	public ZoneManager getZoneManager() {
 		return zoneManager;
 	}
@@ -182,6 +209,15 @@ public class TrafficRouter {
 	boolean setState(final JsonNode states) throws UnknownHostException {
 		setCacheStates(states.get("caches"));
 		setDsStates(states.get("deliveryServices"));
+
+		if (dnsRouteCache != null) {
+			dnsRouteCache.invalidateAll();
+		}
+
+		if (httpRouteCache != null) {
+			httpRouteCache.invalidateAll();
+		}
+
 		return true;
 	}
 	private boolean setDsStates(final JsonNode dsStates) {
@@ -260,11 +296,18 @@ public class TrafficRouter {
 		int locationsTested = 0;
 
 		final int locationLimit = ds.getLocationLimit();
-		final List<CacheLocation> geoEnabledCacheLocations = filterEnabledLocations(getCacheRegister().getCacheLocations(), LocalizationMethod.GEO);
-		final List<CacheLocation> cacheLocations1 = ds.filterAvailableLocations(geoEnabledCacheLocations);
-		final List<CacheLocation> cacheLocations = orderCacheLocations(cacheLocations1, clientLocation);
+		final CacheLocationIndex cacheLocationIndex = getCacheRegister().getCacheLocationIndex();
+		final Iterator<CacheLocation> cacheLocations;
+
+		if (cacheLocationIndex != null) {
+			cacheLocations = cacheLocationIndex.nearest(clientLocation, isUsableLocation(ds, LocalizationMethod.GEO));
+		} else {
+			final List<CacheLocation> geoEnabledCacheLocations = filterEnabledLocations(getCacheRegister().getCacheLocations(), LocalizationMethod.GEO);
+			cacheLocations = orderCacheLocations(ds.filterAvailableLocations(geoEnabledCacheLocations), clientLocation).iterator();
+		}
 
-		for (final CacheLocation location : cacheLocations) {
+		while (cacheLocations.hasNext()) {
+			final CacheLocation location = cacheLocations.next();
 			final List<Cache> caches = selectCaches(location, ds);
 			if (caches != null) {
 				track.setResultLocation(location.getGeolocation());
@@ -286,11 +329,17 @@ public class TrafficRouter {
 		return selectCaches(request, ds, track, true);
 	}
 
-	@SuppressWarnings("PMD.CyclomaticComplexity")
+	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
 	protected List<Cache> selectCaches(final HTTPRequest request, final DeliveryService ds, final Track track, final boolean enableDeep) throws GeolocationException {
 		CacheLocation cacheLocation;
 		ResultType result = ResultType.CZ;
 		final boolean useDeep = enableDeep && (ds.getDeepCache() == DeliveryService.DeepCachingType.ALWAYS);
+		final NetworkNode network = !useDeep && httpRouteCache != null ? getNetworkNode(request.getClientIP()) : null;
+		final List<Cache> cachedCaches = network != null ? httpRouteCache.get(ds, network, track) : null;
+
+		if (cachedCaches != null) {
+			return cachedCaches;
+		}
 
 		if (useDeep) {
 			// Deep caching is enabled. See if there are deep caches available
@@ -303,13 +352,18 @@ public class TrafficRouter {
 				cacheLocation = getCoverageZoneCacheLocation(request.getClientIP(), ds);
 			}
 		} else {
-			// Deep caching not enabled for this Delivery Service; use the regular CZ
-			cacheLocation = getCoverageZoneCacheLocation(request.getClientIP(), ds, useDeep, track);
+			// Deep caching not enabled for this Delivery Service; use the regular CZ, from the network already looked up for the route cache
+			cacheLocation = network != null ? getCoverageZoneCacheLocation(network, request.getClientIP(), ds.getId(), false, track)
+				: getCoverageZoneCacheLocation(request.getClientIP(), ds, useDeep, track);
 		}
 
 		List<Cache>caches = selectCachesByCZ(ds, cacheLocation, track, result);
 
 		if (caches != null) {
+			if (network != null) {
+				httpRouteCache.put(ds, network, cacheLocation, caches, track);
+			}
+
 			return caches;
 		}
 
@@ -391,13 +445,27 @@ public class TrafficRouter {
 			return result;
 		}
 
-		final CacheLocation cacheLocation = getCoverageZoneCacheLocation(request.getClientIP(), ds, false, track);
+		final NetworkNode network = getRouteCacheNetwork(request, ds);
+		final DNSRouteResult cachedResult = network != null ? dnsRouteCache.get(request, network, track) : null;
+
+		if (cachedResult != null) {
+			return cachedResult;
+		}
+
+		// the network looked up for the route cache is the one the cache location is found from
+		final CacheLocation cacheLocation = network != null ? getCoverageZoneCacheLocation(network, request.getClientIP(), ds.getId(), false, track)
+			: getCoverageZoneCacheLocation(request.getClientIP(), ds, false, track);
 		List<Cache> caches = selectCachesByCZ(ds, cacheLocation, track);
 
 		if (caches != null) {
 			track.setResult(ResultType.CZ);
 			track.setClientGeolocation(cacheLocation.getGeolocation());
 			result.setAddresses(inetRecordsFromCaches(ds, caches, request));
+
+			if (network != null) {
+				dnsRouteCache.put(request, network, result, track);
+			}
+
 			return result;
 		}
 
@@ -435,13 +503,42 @@ public class TrafficRouter {
 		return result;
 	}
 
+	/**
+	 * @return the coverage zone network under which the routing decision for the request is
+	 *         cached, or null if the decision isn't cached
+	 */
+	private NetworkNode getRouteCacheNetwork(final DNSRequest request, final DeliveryService ds) {
+		// answers picked at random from the caches of a location differ from one request to the next
+		if (dnsRouteCache == null || (ds.getMaxDnsIps() > 0 && !isConsistentDNSRouting())) {
+			return null;
+		}
+
+		return getNetworkNode(request.getClientIP());
+	}
+
+	/**
+	 * Finds the EDNS client subnet scope of answers routed by coverage zone.
+	 *
+	 * @return the number of leading bits of the client address that decide its coverage zone
+	 *         network, or -1 if the coverage zone networks aren't indexed
+	 */
+	public int getCoverageZoneScope(final InetAddress clientAddress) {
+		final NetworkNode networkNode = NetworkNode.getInstance();
+
+		if (!(networkNode instanceof NetworkNode.SuperNode)) {
+			return -1;
+		}
+
+		return ((NetworkNode.SuperNode) networkNode).getScope(clientAddress);
+	}
+
 	public List<InetRecord> inetRecordsFromCaches(final DeliveryService ds, final List<Cache> caches, final Request request) {
 		final List<InetRecord> addresses = new ArrayList<InetRecord>();
 		final int maxDnsIps = ds.getMaxDnsIps();
 		List<Cache> selectedCaches;
 
 		if (maxDnsIps > 0 && isConsistentDNSRouting()) { // only consistent hash if we must
-			selectedCaches = (List<Cache>) consistentHasher.selectHashables(caches, ds.getDispersion(), request.getHostname());
+			selectedCaches = (List<Cache>) consistentHasher.selectHashables(ds.getConsistentHashAlgorithm(), ds.getId(), caches, ds.getDispersion(), request.getHostname());
 		} else if (maxDnsIps > 0) {
 			/*
 			 * We also shuffle in NameServer when adding Records to the Message prior
@@ -579,7 +676,7 @@ public class TrafficRouter {
 						}
 					}
 				}
-				final Cache cache = consistentHasher.selectHashable(caches, ds.getDispersion(), pathToHash);
+				final Cache cache = consistentHasher.selectHashable(ds.getConsistentHashAlgorithm(), ds.getId(), caches, ds.getDispersion(), pathToHash);
 				steeringResult.setCache(cache);
 				selectedCaches.add(cache);
 			} else {
@@ -707,7 +804,7 @@ public class TrafficRouter {
 
 		// Pattern based consistent hashing
 		final String pathToHash = buildPatternBasedHashString(deliveryService, request);
-		final Cache cache = consistentHasher.selectHashable(caches, deliveryService.getDispersion(), pathToHash);
+		final Cache cache = consistentHasher.selectHashable(deliveryService.getConsistentHashAlgorithm(), deliveryService.getId(), caches, deliveryService.getDispersion(), pathToHash);
 
 		// Enforce anonymous IP blocking if a DS has anonymous blocking enabled
 		// and the feature is enabled
@@ -818,9 +915,17 @@ public class TrafficRouter {
 		return getCoverageZoneCacheLocation(ip, deliveryServiceId, false, null); // default is not deep
 	}
 
-	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
 	public CacheLocation getCoverageZoneCacheLocation(final String ip, final String deliveryServiceId, final boolean useDeep, final Track track) {
 		final NetworkNode networkNode = useDeep ? getDeepNetworkNode(ip) : getNetworkNode(ip);
+		return getCoverageZoneCacheLocation(networkNode, ip, deliveryServiceId, useDeep, track);
+	}
+
+	/**
+	 * Finds the cache location for a client from the coverage zone network already looked up for
+	 * its address.
+	 */
+	@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
+	public CacheLocation getCoverageZoneCacheLocation(final NetworkNode networkNode, final String ip, final String deliveryServiceId, final boolean useDeep, final Track track) {
 		final LocalizationMethod localizationMethod = useDeep ? LocalizationMethod.DEEP_CZ : LocalizationMethod.CZ;
 
 		if (networkNode == null) {
@@ -890,9 +995,15 @@ public class TrafficRouter {
 
 		// We had a hit in the CZF but the name does not match a known cache location.
 		// Check whether the CZF entry has a geolocation and use it if so.
-		List<CacheLocation> availableLocations = cacheRegister.filterAvailableLocations(deliveryServiceId);
-		availableLocations = filterEnabledLocations(availableLocations, localizationMethod);
-		final CacheLocation closestCacheLocation = getClosestCacheLocation(availableLocations, networkNode.getGeolocation(), cacheRegister.getDeliveryService(deliveryServiceId));
+		final CacheLocation closestCacheLocation;
+
+		if (cacheRegister.getCacheLocationIndex() != null) {
+			closestCacheLocation = getNearestCacheLocation(cacheRegister.getCacheLocationIndex(), networkNode.getGeolocation(), deliveryService, localizationMethod);
+		} else {
+			final List<CacheLocation> availableLocations = filterEnabledLocations(cacheRegister.filterAvailableLocations(deliveryServiceId), localizationMethod);
+			closestCacheLocation = getClosestCacheLocation(availableLocations, networkNode.getGeolocation(), deliveryService);
+		}
+
 		if (closestCacheLocation != null) {
 			LOGGER.debug("Got closest CZ cache group " + closestCacheLocation.getId() + " for " + ip + ", ds " + deliveryServiceId);
 			if (track != null) {
@@ -963,7 +1074,7 @@ public class TrafficRouter {
 		}
 
 		final String pathToHash = buildPatternBasedHashString(deliveryService, request);
-		return consistentHasher.selectHashable(caches, deliveryService.getDispersion(), pathToHash);
+		return consistentHasher.selectHashable(deliveryService.getConsistentHashAlgorithm(), deliveryService.getId(), caches, deliveryService.getDispersion(), pathToHash);
 	}
 
 	/**
@@ -1007,7 +1118,7 @@ public class TrafficRouter {
 		}
 
 		final String pathToHash = buildPatternBasedHashString(deliveryService, request);
-		return consistentHasher.selectHashable(caches, deliveryService.getDispersion(), pathToHash);
+		return consistentHasher.selectHashable(deliveryService.getConsistentHashAlgorithm(), deliveryService.getId(), caches, deliveryService.getDispersion(), pathToHash);
 	}
 
 	public String buildPatternBasedHashStringDeliveryService(final String deliveryServiceId, final String requestPath) {
@@ -1118,7 +1229,7 @@ public class TrafficRouter {
 		}
 
 		final String pathToHash = buildPatternBasedHashString(deliveryService, request);
-		return consistentHasher.selectHashable(caches, deliveryService.getDispersion(), pathToHash);
+		return consistentHasher.selectHashable(deliveryService.getConsistentHashAlgorithm(), deliveryService.getId(), caches, deliveryService.getDispersion(), pathToHash);
 	}
 
 	/**
@@ -1194,6 +1305,29 @@ public class TrafficRouter {
 		return cacheLocations;
 	}
 
+	private static Predicate<CacheLocation> isUsableLocation(final DeliveryService deliveryService, final LocalizationMethod localizationMethod) {
+		return cacheLocation -> cacheLocation.isEnabledFor(localizationMethod) && deliveryService.isLocationAvailable(cacheLocation);
+	}
+
+	private CacheLocation getNearestCacheLocation(final CacheLocationIndex cacheLocationIndex, final Geolocation clientLocation,
+			final DeliveryService deliveryService, final LocalizationMethod localizationMethod) {
+		if (clientLocation == null || deliveryService == null) {
+			return null;
+		}
+
+		final Iterator<CacheLocation> nearestLocations = cacheLocationIndex.nearest(clientLocation, isUsableLocation(deliveryService, localizationMethod));
+
+		while (nearestLocations.hasNext()) {
+			final CacheLocation cacheLocation = nearestLocations.next();
+
+			if (!getSupportingCaches(cacheLocation.getCaches(), deliveryService).isEmpty()) {
+				return cacheLocation;
+			}
+		}
+
+		return null;
+	}
+
 	private CacheLocation getClosestCacheLocation(final List<CacheLocation> cacheLocations, final Geolocation clientLocation, final DeliveryService deliveryService) {
 		if (clientLocation == null) {
 			return null;
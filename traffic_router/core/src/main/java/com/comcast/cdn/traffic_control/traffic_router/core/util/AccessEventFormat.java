@@ -0,0 +1,208 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Appends the numbers in access events without the formatters that used to produce them.
+ * <p>
+ * Each method writes exactly what the <code>String.format</code> or {@link DecimalFormat}
+ * pattern it replaces writes, in an English locale, for every value the access log sees; the
+ * rare values that would need care to get right, such as negative numbers that truncate to
+ * zero, are handed to the original formatter. The string builder returned by
+ * {@link #getStringBuilder()} belongs to the calling thread and is reused for every event it
+ * formats.
+ * </p>
+ */
+public final class AccessEventFormat {
+	private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+	private static final long MAX_EXACT_NANOS = 1000000000000000L;
+
+	private static final ThreadLocal<StringBuilder> STRING_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+	private static final ThreadLocal<DecimalFormat> TWO_DECIMALS = ThreadLocal.withInitial(() -> truncating("0.00"));
+	private static final ThreadLocal<DecimalFormat> UP_TO_TWO_DECIMALS = ThreadLocal.withInitial(() -> truncating(".##"));
+
+	private AccessEventFormat() {
+	}
+
+	private static DecimalFormat truncating(final String pattern) {
+		// the same separators as the fast paths, whatever the default locale
+		final DecimalFormat decimalFormat = new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(Locale.US));
+		decimalFormat.setRoundingMode(RoundingMode.DOWN);
+		return decimalFormat;
+	}
+
+	/**
+	 * @return an empty string builder that only the calling thread uses
+	 */
+	public static StringBuilder getStringBuilder() {
+		StringBuilder stringBuilder = STRING_BUILDER.get();
+
+		// don't hold on to the memory of an unusually long event forever
+		if (stringBuilder.capacity() > MAX_RETAINED_CAPACITY) {
+			stringBuilder = new StringBuilder(512);
+			STRING_BUILDER.set(stringBuilder);
+		}
+
+		stringBuilder.setLength(0);
+		return stringBuilder;
+	}
+
+	/**
+	 * Appends milliseconds since the epoch as seconds, like <code>String.format(Locale.US, "%d.%03d", millis / 1000, millis % 1000)</code>.
+	 */
+	public static StringBuilder appendSeconds(final StringBuilder stringBuilder, final long millis) {
+		if (millis < 0) {
+			return stringBuilder.append(String.format(Locale.US, "%d.%03d", millis / 1000, millis % 1000));
+		}
+
+		stringBuilder.append(millis / 1000).append('.');
+		return appendPadded(stringBuilder, millis % 1000);
+	}
+
+	/**
+	 * Appends nanoseconds as milliseconds rounded half up to three decimals, like
+	 * <code>String.format(Locale.US, "%.03f", nanos / 1000000.0)</code>.
+	 */
+	public static StringBuilder appendMillis(final StringBuilder stringBuilder, final long nanos) {
+		if (nanos <= -MAX_EXACT_NANOS || nanos >= MAX_EXACT_NANOS) {
+			return stringBuilder.append(String.format(Locale.US, "%.03f", nanos / 1000000.0));
+		}
+
+		if (nanos < 0) {
+			stringBuilder.append('-');
+		}
+
+		final long micros = (Math.abs(nanos) + 500) / 1000;
+		stringBuilder.append(micros / 1000).append('.');
+		return appendPadded(stringBuilder, micros % 1000);
+	}
+
+	private static StringBuilder appendPadded(final StringBuilder stringBuilder, final long thousandths) {
+		if (thousandths < 100) {
+			stringBuilder.append('0');
+		}
+
+		if (thousandths < 10) {
+			stringBuilder.append('0');
+		}
+
+		return stringBuilder.append(thousandths);
+	}
+
+	/**
+	 * Appends a number truncated to two decimals, like a {@link DecimalFormat} of <code>"0.00"</code>
+	 * rounding {@link RoundingMode#DOWN}.
+	 */
+	public static StringBuilder appendTwoDecimals(final StringBuilder stringBuilder, final double value) {
+		if (!appendTruncated(stringBuilder, value, true)) {
+			stringBuilder.append(TWO_DECIMALS.get().format(value));
+		}
+
+		return stringBuilder;
+	}
+
+	/**
+	 * Appends a number truncated to at most two decimals, like a {@link DecimalFormat} of
+	 * <code>".##"</code> rounding {@link RoundingMode#DOWN}.
+	 */
+	public static StringBuilder appendUpToTwoDecimals(final StringBuilder stringBuilder, final double value) {
+		if (!appendTruncated(stringBuilder, value, false)) {
+			stringBuilder.append(UP_TO_TWO_DECIMALS.get().format(value));
+		}
+
+		return stringBuilder;
+	}
+
+	/*
+	 * DecimalFormat truncates the shortest decimal that represents the double, which is what
+	 * Double.toString() writes out for magnitudes between 10^-3 and 10^7.
+	 */
+	@SuppressWarnings("PMD.NPathComplexity")
+	private static boolean appendTruncated(final StringBuilder stringBuilder, final double value, final boolean fixed) {
+		final double magnitude = Math.abs(value);
+
+		if (!(magnitude >= 0.01 && magnitude < 1.0e7)) {
+			return false;
+		}
+
+		final String digits = Double.toString(magnitude);
+		final int point = digits.indexOf('.');
+		final boolean leadingZero = point == 1 && digits.charAt(0) == '0';
+		final char tenths = digits.charAt(point + 1);
+		final char hundredths = point + 2 < digits.length() ? digits.charAt(point + 2) : '0';
+
+		if (value < 0) {
+			stringBuilder.append('-');
+		}
+
+		if (fixed) {
+			stringBuilder.append(digits, 0, point).append('.').append(tenths).append(hundredths);
+			return true;
+		}
+
+		if (!leadingZero) {
+			stringBuilder.append(digits, 0, point);
+		}
+
+		// ".##" keeps one fraction digit, as its minimum integer digits of zero come with a minimum of one fraction digit
+		stringBuilder.append('.').append(tenths);
+
+		if (hundredths != '0') {
+			stringBuilder.append(hundredths);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Appends a string with each double quote replaced by a single quote.
+	 */
+	public static StringBuilder appendQuoted(final StringBuilder stringBuilder, final String string) {
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			stringBuilder.append(c == '"' ? '\'' : c);
+		}
+
+		return stringBuilder;
+	}
+
+	/**
+	 * Removes characters up to and including space from both ends of what was appended from a
+	 * position on, like {@link String#trim()}.
+	 */
+	public static StringBuilder trimFrom(final StringBuilder stringBuilder, final int from) {
+		int end = stringBuilder.length();
+
+		while (end > from && stringBuilder.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		stringBuilder.setLength(end);
+
+		int start = from;
+
+		while (start < end && stringBuilder.charAt(start) <= ' ') {
+			start++;
+		}
+
+		return stringBuilder.delete(from, start);
+	}
+}
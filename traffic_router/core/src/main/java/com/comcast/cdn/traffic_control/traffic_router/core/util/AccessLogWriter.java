@@ -0,0 +1,297 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes access events to the access log from a background thread.
+ * <p>
+ * Request threads only place an unformatted event in a bounded, lock free ring buffer. A single
+ * writer thread wakes up every flush interval, or sooner once the buffer is half full, and formats
+ * and logs everything waiting in one batch, so neither formatting nor disk stalls hold up
+ * responses. When the buffer is full, events are either dropped and counted, or the request
+ * thread waits for room. Until the writer is started, and after it is stopped, events are written
+ * on the calling thread.
+ * </p>
+ */
+@SuppressWarnings({"PMD.MoreThanOneLogger", "PMD.LoggerIsNotStaticFinal", "PMD.TooManyFields"})
+public class AccessLogWriter {
+	public static final String ACCESS_LOGGER = "com.comcast.cdn.traffic_control.traffic_router.core.access";
+	private static final Logger LOGGER = Logger.getLogger(AccessLogWriter.class);
+	private static AccessLogWriter instance;
+
+	private final Logger accessLogger;
+	private int capacity = 65536;
+	private long flushInterval = 100;
+	private boolean blockWhenFull;
+	private boolean enabled = true;
+
+	private AtomicReferenceArray<Supplier<String>> events;
+	private AtomicLongArray sequences;
+	private int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+	private final LongAdder dropped = new LongAdder();
+	private long droppedReported;
+
+	private volatile Thread writer;
+	private volatile boolean running;
+	private final Object drainLock = new Object();
+
+	public AccessLogWriter(final Logger accessLogger) {
+		this.accessLogger = accessLogger;
+	}
+
+	public static synchronized AccessLogWriter getInstance() {
+		if (instance == null) {
+			instance = new AccessLogWriter(Logger.getLogger(ACCESS_LOGGER));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Logs an access event, formatting it later on the writer thread when the writer is running.
+	 *
+	 * @param event
+	 *            formats the event; it must not depend on anything that changes once the request is
+	 *            answered
+	 */
+	public void log(final Supplier<String> event) {
+		if (!running) {
+			accessLogger.info(event.get());
+			return;
+		}
+
+		while (!offer(event)) {
+			if (!blockWhenFull) {
+				dropped.increment();
+				return;
+			}
+
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+
+			if (!running) {
+				accessLogger.info(event.get());
+				return;
+			}
+		}
+
+		// the writer stopped while the event was offered, and may have drained for the last time already
+		if (!running) {
+			drainStopped();
+		}
+	}
+
+	// multiple producer, single consumer: a slot's sequence says whose turn it is to use the slot next
+	private boolean offer(final Supplier<String> event) {
+		long position = tail.get();
+
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - position;
+
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+
+				position = tail.get();
+			} else if (difference < 0) {
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+
+		final int index = (int) position & mask;
+		events.lazySet(index, event);
+		sequences.set(index, position + 1);
+
+		if (position - head >= capacity >> 1) {
+			LockSupport.unpark(writer);
+		}
+
+		return true;
+	}
+
+	private Supplier<String> poll() {
+		final int index = (int) head & mask;
+
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+
+		final Supplier<String> event = events.get(index);
+		events.lazySet(index, null);
+		sequences.lazySet(index, head + mask + 1);
+		head++;
+		return event;
+	}
+
+	/**
+	 * Formats and writes every waiting event.
+	 *
+	 * @return the number of events written
+	 */
+	int drain() {
+		int written = 0;
+		Supplier<String> event;
+
+		while ((event = poll()) != null) {
+			try {
+				accessLogger.info(event.get());
+			} catch (RuntimeException e) {
+				LOGGER.warn("Failed to write access event: " + e.getMessage(), e);
+			}
+
+			written++;
+		}
+
+		final long droppedCount = dropped.sum();
+
+		if (droppedCount != droppedReported) {
+			LOGGER.warn("Access log buffer full, dropped " + (droppedCount - droppedReported) + " access events");
+			droppedReported = droppedCount;
+		}
+
+		return written;
+	}
+
+	public synchronized void init() {
+		if (!enabled || running) {
+			return;
+		}
+
+		int size = 2;
+
+		while (size < capacity && size < 1 << 30) {
+			size <<= 1;
+		}
+
+		capacity = size;
+		mask = size - 1;
+		events = new AtomicReferenceArray<Supplier<String>>(size);
+		sequences = new AtomicLongArray(size);
+
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+
+		tail.set(0);
+		head = 0;
+
+		writer = new Thread(this::write, "AccessLogWriter");
+		writer.setDaemon(true);
+		running = true;
+		writer.start();
+	}
+
+	/*
+	 * Events are only taken from the buffer with the drain lock held. While running, only the
+	 * writer takes it; once stopped, the writer drains one last time and request threads that
+	 * offered an event after that drain it themselves.
+	 */
+	private void write() {
+		final long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+
+		while (running) {
+			synchronized (drainLock) {
+				drain();
+			}
+
+			LockSupport.parkNanos(this, flushIntervalNanos);
+		}
+
+		drainStopped();
+	}
+
+	private void drainStopped() {
+		synchronized (drainLock) {
+			drain();
+		}
+	}
+
+	public synchronized void destroy() {
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		LockSupport.unpark(writer);
+
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param capacity
+	 *            the number of events the buffer holds, rounded up to a power of two when the writer
+	 *            is started
+	 */
+	public void setCapacity(final int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @param flushInterval
+	 *            milliseconds the writer waits between batches when the buffer is not filling up
+	 */
+	public void setFlushInterval(final long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * @param blockWhenFull
+	 *            true to make request threads wait for room in a full buffer, false to drop events
+	 */
+	public void setBlockWhenFull(final boolean blockWhenFull) {
+		this.blockWhenFull = blockWhenFull;
+	}
+
+	/**
+	 * @param enabled
+	 *            false to keep writing events on the request threads
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+}
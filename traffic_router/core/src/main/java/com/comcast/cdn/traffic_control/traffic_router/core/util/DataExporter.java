@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -34,8 +35,10 @@ import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.Resolver;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.CachingGeolocationService;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationException;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationService;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNode;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNodeException;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouter;
@@ -246,6 +249,73 @@ public class DataExporter {
 		return createCacheStatsMap(trafficRouterManager.getTrafficRouter().getZoneManager().getDynamicCacheStats());
 	}
 
+	public Map<String, Object> getGeolocationCacheStats() {
+		final GeolocationService geolocationService = trafficRouterManager.getTrafficRouter().getGeolocationService();
+
+		if (!(geolocationService instanceof CachingGeolocationService)) {
+			return new HashMap<String, Object>();
+		}
+
+		return createCacheStatsMap(((CachingGeolocationService) geolocationService).getCacheStats());
+	}
+
+	/**
+	 * @param buckets
+	 *            true to include the cumulative count of each bucket, so that pollers can work out
+	 *            the percentiles of an interval from two requests
+	 * @return latency percentiles in milliseconds by route type, then name, then result type, all
+	 *         since startup
+	 */
+	public Map<String, Object> getLatencyStats(final boolean buckets) {
+		final Map<String, Object> latencyStats = new HashMap<String, Object>();
+
+		for (final Map.Entry<String, Map<String, Map<String, LatencyHistogram.Snapshot>>> routeType : statTracker.getLatencies().entrySet()) {
+			final Map<String, Object> names = new HashMap<String, Object>();
+
+			for (final Map.Entry<String, Map<String, LatencyHistogram.Snapshot>> name : routeType.getValue().entrySet()) {
+				final Map<String, Object> resultTypes = new HashMap<String, Object>();
+
+				for (final Map.Entry<String, LatencyHistogram.Snapshot> resultType : name.getValue().entrySet()) {
+					resultTypes.put(resultType.getKey(), createLatencyStatsMap(resultType.getValue(), buckets));
+				}
+
+				names.put(name.getKey(), resultTypes);
+			}
+
+			latencyStats.put(routeType.getKey(), names);
+		}
+
+		return latencyStats;
+	}
+
+	private static double toMillis(final double nanos) {
+		return nanos / 1000000;
+	}
+
+	private Map<String, Object> createLatencyStatsMap(final LatencyHistogram.Snapshot snapshot, final boolean buckets) {
+		final Map<String, Object> latencyStatsMap = new HashMap<String, Object>();
+		latencyStatsMap.put("count", snapshot.getTotalCount());
+		latencyStatsMap.put("sum", toMillis(snapshot.getSum()));
+		latencyStatsMap.put("mean", toMillis(snapshot.getMean()));
+		latencyStatsMap.put("p50", toMillis(snapshot.getValueAtPercentile(50)));
+		latencyStatsMap.put("p90", toMillis(snapshot.getValueAtPercentile(90)));
+		latencyStatsMap.put("p99", toMillis(snapshot.getValueAtPercentile(99)));
+		latencyStatsMap.put("p999", toMillis(snapshot.getValueAtPercentile(99.9)));
+		latencyStatsMap.put("max", toMillis(snapshot.getMaxValue()));
+
+		if (buckets) {
+			final Map<String, Long> bucketMap = new LinkedHashMap<String, Long>();
+
+			for (final Map.Entry<Long, Long> bucket : snapshot.getCumulativeCounts().entrySet()) {
+				bucketMap.put(Double.toString(toMillis(bucket.getKey())), bucket.getValue());
+			}
+
+			latencyStatsMap.put("buckets", bucketMap);
+		}
+
+		return latencyStatsMap;
+	}
+
 	private Map<String, Object> createCacheStatsMap(final CacheStats cacheStats) {
 		final Map<String, Object> cacheStatsMap = new HashMap<String, Object>();
 		cacheStatsMap.put("requestCount", cacheStats.requestCount());
@@ -0,0 +1,169 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies in log-linear buckets, in the manner of HdrHistogram.
+ * <p>
+ * Values up to 63 nanoseconds get a bucket each; above that, every power of two is split into
+ * 32 buckets, so a percentile is never off by more than about 3%. Values over an hour are counted
+ * as an hour. Recording is a pair of atomic increments and never allocates, so it's cheap enough
+ * for every request. Readers take a snapshot of everything counted so far; anything that wants an
+ * interval subtracts an earlier snapshot's counts itself, so that readers can't steal each
+ * other's intervals.
+ * </p>
+ */
+public class LatencyHistogram {
+	public static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+	private static final int SUB_BUCKET_HALF_BITS = 5;
+	private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_BITS;
+	private static final long SUB_BUCKET_MASK = (SUB_BUCKET_HALF_COUNT << 1) - 1;
+	private static final int LENGTH = countsIndex(HIGHEST_TRACKABLE_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+	private final LongAdder sum = new LongAdder();
+
+	static int countsIndex(final long value) {
+		final int bucketIndex = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_HALF_BITS;
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+		return ((bucketIndex + 1) << SUB_BUCKET_HALF_BITS) + subBucketIndex - SUB_BUCKET_HALF_COUNT;
+	}
+
+	private static int bucketIndex(final int countsIndex) {
+		return Math.max((countsIndex >> SUB_BUCKET_HALF_BITS) - 1, 0);
+	}
+
+	static long lowestEquivalentValue(final int countsIndex) {
+		final int bucketIndex = bucketIndex(countsIndex);
+		final long subBucketIndex = countsIndex - (bucketIndex << SUB_BUCKET_HALF_BITS);
+		return subBucketIndex << bucketIndex;
+	}
+
+	static long highestEquivalentValue(final int countsIndex) {
+		return lowestEquivalentValue(countsIndex) + (1L << bucketIndex(countsIndex)) - 1;
+	}
+
+	/**
+	 * @param nanos
+	 *            a latency in nanoseconds; negative values are counted as zero
+	 */
+	public void record(final long nanos) {
+		final long value = Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE_VALUE);
+		counts.incrementAndGet(countsIndex(value));
+		sum.add(value);
+	}
+
+	/**
+	 * @return everything counted so far
+	 */
+	public Snapshot getSnapshot() {
+		final long[] copy = new long[LENGTH];
+
+		for (int i = 0; i < LENGTH; i++) {
+			copy[i] = counts.get(i);
+		}
+
+		return new Snapshot(copy, sum.sum());
+	}
+
+	/**
+	 * The counts of a histogram at one point in time. All values are in nanoseconds.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long totalCount;
+		private final long sum;
+
+		Snapshot(final long[] counts, final long sum) {
+			long totalCount = 0;
+
+			for (final long count : counts) {
+				totalCount += count;
+			}
+
+			this.counts = counts;
+			this.totalCount = totalCount;
+			this.sum = sum;
+		}
+
+		public long getTotalCount() {
+			return totalCount;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		public double getMean() {
+			return totalCount == 0 ? 0 : (double) sum / totalCount;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return the highest value that the given percentage of values are equivalent to or below,
+		 *         or 0 if nothing was counted
+		 */
+		public long getValueAtPercentile(final double percentile) {
+			if (totalCount == 0) {
+				return 0;
+			}
+
+			final double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+			final long target = Math.max((long) Math.ceil(fraction * totalCount), 1);
+			long seen = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+
+				if (seen >= target) {
+					return highestEquivalentValue(i);
+				}
+			}
+
+			return highestEquivalentValue(counts.length - 1);
+		}
+
+		public long getMaxValue() {
+			return getValueAtPercentile(100);
+		}
+
+		/**
+		 * @return the number of values equivalent to or below the highest value of each bucket that
+		 *         counted anything, in order of that value
+		 */
+		public SortedMap<Long, Long> getCumulativeCounts() {
+			final SortedMap<Long, Long> cumulativeCounts = new TreeMap<Long, Long>();
+			long seen = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0) {
+					seen += counts[i];
+					cumulativeCounts.put(highestEquivalentValue(i), seen);
+				}
+			}
+
+			return cumulativeCounts;
+		}
+	}
+}
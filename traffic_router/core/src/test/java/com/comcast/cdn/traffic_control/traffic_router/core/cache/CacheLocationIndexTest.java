@@ -0,0 +1,116 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.cache;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.router.CacheLocationComparator;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+public class CacheLocationIndexTest {
+	private final Random random = new Random(2112);
+	private final List<CacheLocation> cacheLocations = new ArrayList<CacheLocation>();
+	private CacheLocationIndex cacheLocationIndex;
+
+	@Before
+	public void before() {
+		for (int i = 0; i < 300; i++) {
+			cacheLocations.add(new CacheLocation("location-" + i, randomGeolocation()));
+		}
+
+		cacheLocationIndex = new CacheLocationIndex(cacheLocations);
+	}
+
+	private Geolocation randomGeolocation() {
+		return new Geolocation(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+	}
+
+	private List<CacheLocation> sorted(final Geolocation from, final Predicate<CacheLocation> filter) {
+		final List<CacheLocation> sorted = new ArrayList<CacheLocation>();
+
+		for (final CacheLocation cacheLocation : cacheLocations) {
+			if (filter.test(cacheLocation)) {
+				sorted.add(cacheLocation);
+			}
+		}
+
+		Collections.sort(sorted, new CacheLocationComparator(from));
+		return sorted;
+	}
+
+	private List<CacheLocation> all(final Iterator<CacheLocation> iterator) {
+		final List<CacheLocation> all = new ArrayList<CacheLocation>();
+
+		while (iterator.hasNext()) {
+			all.add(iterator.next());
+		}
+
+		return all;
+	}
+
+	@Test
+	public void itOrdersLocationsByDistance() {
+		for (int i = 0; i < 100; i++) {
+			final Geolocation from = randomGeolocation();
+			assertThat(all(cacheLocationIndex.nearest(from, cacheLocation -> true)), equalTo(sorted(from, cacheLocation -> true)));
+		}
+	}
+
+	@Test
+	public void itFindsTheNearestMatchingLocations() {
+		final Predicate<CacheLocation> even = cacheLocation -> Integer.parseInt(cacheLocation.getId().substring(9)) % 2 == 0;
+
+		for (int i = 0; i < 100; i++) {
+			final Geolocation from = randomGeolocation();
+			assertThat(cacheLocationIndex.nearest(from, even, 5), equalTo(sorted(from, even).subList(0, 5)));
+		}
+	}
+
+	@Test
+	public void itPutsLocationsWithoutGeolocationsLast() {
+		final CacheLocation nowhere = new CacheLocation("nowhere", null);
+		final CacheLocation denver = new CacheLocation("denver", new Geolocation(39.7, -104.9));
+		final CacheLocation boston = new CacheLocation("boston", new Geolocation(42.3, -71.0));
+		final List<CacheLocation> locations = new ArrayList<CacheLocation>();
+		locations.add(nowhere);
+		locations.add(boston);
+		locations.add(denver);
+
+		final CacheLocationIndex index = new CacheLocationIndex(locations);
+
+		assertThat(index.size(), equalTo(3));
+		assertThat(all(index.nearest(new Geolocation(40.0, -105.0), cacheLocation -> true)), contains(denver, boston, nowhere));
+		assertThat(all(index.nearest(null, cacheLocation -> true)), containsInAnyOrder(denver, boston, nowhere));
+	}
+
+	@Test
+	public void itFindsNothingInAnEmptyIndex() {
+		final CacheLocationIndex index = new CacheLocationIndex(new ArrayList<CacheLocation>());
+		assertThat(index.nearest(new Geolocation(0, 0), cacheLocation -> true).hasNext(), equalTo(false));
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.config;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.Cache;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AppliedConfigTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Geolocation geolocation = new Geolocation(39.7, -104.9);
+	private DeliveryService deliveryService;
+	private List<DeliveryServiceMatcher> matchers;
+	private Cache cache;
+	private AppliedConfig appliedConfig;
+
+	@Before
+	public void before() throws Exception {
+		deliveryService = mock(DeliveryService.class);
+		when(deliveryService.getId()).thenReturn("ds-1");
+		matchers = Collections.singletonList(new DeliveryServiceMatcher(deliveryService));
+		cache = new Cache("edge-1", "edge-1", 1, geolocation);
+
+		final Map<String, DeliveryService> deliveryServices = new HashMap<String, DeliveryService>();
+		deliveryServices.put("ds-1", deliveryService);
+
+		appliedConfig = new AppliedConfig(
+			mapper.readTree("{\"ds-1\": {\"routingName\": \"edge\", \"matchsets\": []}}"),
+			mapper.readTree("{\"edge-1\": {\"locationId\": \"loc-1\", \"port\": 80}}"),
+			deliveryServices,
+			Collections.singletonMap("ds-1", matchers),
+			Collections.singletonMap("edge-1", cache));
+	}
+
+	@Test
+	public void itReusesDeliveryServicesWithTheSameJson() throws Exception {
+		final JsonNode same = mapper.readTree("{\"routingName\": \"edge\", \"matchsets\": []}");
+		final JsonNode changed = mapper.readTree("{\"routingName\": \"cdn\", \"matchsets\": []}");
+
+		assertThat(appliedConfig.getDeliveryService("ds-1", same), sameInstance(deliveryService));
+		assertThat(appliedConfig.getDeliveryService("ds-1", changed), nullValue());
+		assertThat(appliedConfig.getDeliveryService("ds-2", same), nullValue());
+	}
+
+	@Test
+	public void itOnlyReusesTheMatchersOfReusedDeliveryServices() {
+		final DeliveryService rebuilt = mock(DeliveryService.class);
+		when(rebuilt.getId()).thenReturn("ds-1");
+
+		assertThat(appliedConfig.getDeliveryServiceMatchers(deliveryService), sameInstance(matchers));
+		assertThat(appliedConfig.getDeliveryServiceMatchers(rebuilt), nullValue());
+		assertThat(appliedConfig.getDeliveryServiceMatchers(null), nullValue());
+	}
+
+	@Test
+	public void itReusesCachesWithTheSameJsonAndLocation() throws Exception {
+		final JsonNode same = mapper.readTree("{\"locationId\": \"loc-1\", \"port\": 80}");
+		final JsonNode changed = mapper.readTree("{\"locationId\": \"loc-1\", \"port\": 8080}");
+
+		assertThat(appliedConfig.getCache("edge-1", same, new Geolocation(39.7, -104.9)), sameInstance(cache));
+		assertThat(appliedConfig.getCache("edge-1", same, new Geolocation(40.0, -104.9)), nullValue());
+		assertThat(appliedConfig.getCache("edge-1", changed, geolocation), nullValue());
+		assertThat(appliedConfig.getCache("edge-2", same, geolocation), nullValue());
+	}
+
+	@Test
+	public void itCountsWhatWasReused() {
+		final Map<String, Cache> caches = new HashMap<String, Cache>();
+		caches.put("edge-1", cache);
+		caches.put("edge-2", new Cache("edge-2", "edge-2", 1, geolocation));
+
+		assertThat(appliedConfig.countReusedCaches(caches), equalTo(1));
+		assertThat(AppliedConfig.NONE.countReusedCaches(caches), equalTo(0));
+		assertThat(AppliedConfig.NONE.getDeliveryService("ds-1", mapper.createObjectNode()), nullValue());
+	}
+}
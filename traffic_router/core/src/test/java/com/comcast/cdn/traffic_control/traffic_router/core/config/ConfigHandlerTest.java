@@ -16,6 +16,7 @@
 package com.comcast.cdn.traffic_control.traffic_router.core.config;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -34,6 +35,8 @@ import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doAnswer;
 
@@ -86,7 +89,7 @@ public class ConfigHandlerTest {
         
         CacheRegister register = PowerMockito.mock(CacheRegister.class);
 
-        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register);
+        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, AppliedConfig.NONE);
         assertThat(urlType[0], equalTo("DS_URL"));
         assertThat(typeUrl[0], equalTo(""));
     }
@@ -123,7 +126,7 @@ public class ConfigHandlerTest {
 
         CacheRegister register = PowerMockito.mock(CacheRegister.class);
 
-        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register);
+        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, AppliedConfig.NONE);
         assertThat(urlType[0], equalTo(""));
         assertThat(typeUrl[0], equalTo(""));
     }
@@ -162,7 +165,7 @@ public class ConfigHandlerTest {
 
         when(register.getDeliveryService(any(HTTPRequest.class), anyBoolean())).thenReturn(null);
 
-        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register);
+        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, AppliedConfig.NONE);
         assertThat(urlType[0], equalTo("NOT_DS_URL"));
         assertThat(typeUrl[0], equalTo(path));
     }
@@ -204,7 +207,7 @@ public class ConfigHandlerTest {
 
         when(register.getDeliveryService(any(HTTPRequest.class), anyBoolean())).thenReturn(anotherDs);
 
-        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register);
+        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, AppliedConfig.NONE);
         assertThat(urlType[0], equalTo("NOT_DS_URL"));
         assertThat(typeUrl[0], equalTo(path));
     }
@@ -243,11 +246,38 @@ public class ConfigHandlerTest {
 
         when(register.getDeliveryService(any(HTTPRequest.class), anyBoolean())).thenReturn(ds);
 
-        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register);
+        Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, AppliedConfig.NONE);
         assertThat(urlType[0], equalTo("DS_URL"));
         assertThat(typeUrl[0], equalTo(path));
     }
 
+    @Test
+    public void itLeavesReusedDeliveryServicesAlone() throws Exception {
+        final String dsId = "reused-ds";
+        Map<String, DeliveryService> dsMap = new HashMap<String, DeliveryService>();
+
+        DeliveryService ds = mock(DeliveryService.class);
+        when(ds.getId()).thenReturn(dsId);
+        when(ds.getGeoRedirectUrl()).thenReturn("http://test.com/ds/url");
+        when(ds.getGeoRedirectUrlType()).thenReturn("DS_URL");
+        dsMap.put(dsId, ds);
+
+        AppliedConfig appliedConfig = new AppliedConfig(null, null, dsMap, new HashMap<>(), new HashMap<>());
+        CacheRegister register = PowerMockito.mock(CacheRegister.class);
+
+        when(register.getDeliveryService(any(HTTPRequest.class), anyBoolean())).thenReturn(ds);
+        Set<String> changed = Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, appliedConfig);
+        assertThat(changed.isEmpty(), equalTo(true));
+
+        // the redirect url now belongs to another delivery service, so the reused one must be built again
+        when(register.getDeliveryService(any(HTTPRequest.class), anyBoolean())).thenReturn(null);
+        changed = Whitebox.invokeMethod(handler, "initGeoFailedRedirect", dsMap, register, appliedConfig);
+        assertThat(changed, equalTo(Collections.singleton(dsId)));
+
+        verify(ds, never()).setGeoRedirectUrlType(anyString());
+        verify(ds, never()).setGeoRedirectFile(anyString());
+    }
+
     @Test
     public void testParseLocalizationMethods() throws Exception {
         LocalizationMethod[] allMethods = new LocalizationMethod[] {
@@ -28,6 +28,7 @@ import org.xbill.DNS.*;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.util.Random;
+import java.util.function.Supplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -130,6 +131,24 @@ public class DNSAccessEventBuilderTest {
                 " rcode=SERVFAIL rtype=- rloc=\"-\" rdtl=- rerr=\"Server Error:RuntimeException:boom it failed\" ttl=\"-\" ans=\"-\""));
     }
 
+    @Test
+    public void itFormatsTheHeaderAsItWasWhenLogged() throws Exception {
+        final Message query = Message.newQuery(Record.newRecord(Name.fromString("www.example.com."), Type.A, DClass.IN, 12345L));
+        when(System.currentTimeMillis()).thenReturn(144140678789L);
+        when(System.nanoTime()).thenReturn(100000000L, 100000000L + 789876321L);
+
+        final DNSAccessRecord dnsAccessRecord = new DNSAccessRecord.Builder(144140678000L, client).dnsMessage(query).build();
+        final Supplier<String> event = DNSAccessEventBuilder.event(dnsAccessRecord, new RuntimeException("boom it failed"));
+
+        // the server failure response shares the header of the query
+        query.getHeader().setID(1);
+        query.getHeader().setRcode(Rcode.NOERROR);
+
+        assertThat(event.get(), equalTo("144140678.000 qtype=DNS chi=192.168.10.11 rhi=- ttms=789.876" +
+                " xn=65535 fqdn=www.example.com. type=A class=IN" +
+                " rcode=SERVFAIL rtype=- rloc=\"-\" rdtl=- rerr=\"Server Error:RuntimeException:boom it failed\" ttl=\"-\" ans=\"-\""));
+    }
+
     @Test
     public void itAddsResultTypeData() throws Exception {
         final Name name = Name.fromString("www.example.com.");
@@ -221,4 +240,29 @@ public class DNSAccessEventBuilderTest {
                 " xn=65535 fqdn=www.example.com. type=A class=IN" +
                 " rcode=NOERROR rtype=CZ rloc=\"39.75,-104.99\" rdtl=- rerr=\"-\" ttl=\"1\" ans=\"foo\""));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void itTrimsAnswersAndKeepsOneDecimalOfWholeCoordinates() throws Exception {
+        when(System.currentTimeMillis()).thenReturn(144140678789L);
+        when(System.nanoTime()).thenReturn(100000000L, 100000000L + 1234500L);
+
+        final Name name = Name.fromString("www.example.com.");
+        final Message response = spy(Message.newQuery(Record.newRecord(name, Type.TXT, DClass.IN, 12345L)));
+        response.getHeader().setRcode(Rcode.NOERROR);
+
+        final Record record1 = mock(Record.class);
+        when(record1.rdataToString()).thenReturn(" \"say \\\"hi\\\"\"");
+        when(record1.getTTL()).thenReturn(30L);
+        final Record record2 = mock(Record.class);
+        when(record2.rdataToString()).thenReturn("\"bye\"\t");
+        when(record2.getTTL()).thenReturn(60L);
+        when(response.getSectionArray(Section.ANSWER)).thenReturn(new Record[] {record1, record2});
+
+        final DNSAccessRecord dnsAccessRecord = new DNSAccessRecord.Builder(144140678009L, client)
+                .dnsMessage(response).resultType(ResultType.GEO).resultLocation(new Geolocation(40, -0.5)).build();
+
+        assertThat(DNSAccessEventBuilder.create(dnsAccessRecord), equalTo("144140678.009 qtype=DNS chi=192.168.10.11 rhi=- ttms=1.235" +
+                " xn=65535 fqdn=www.example.com. type=TXT class=IN" +
+                " rcode=NOERROR rtype=GEO rloc=\"40.0,-.5\" rdtl=- rerr=\"-\" ttl=\"30 60\" ans=\"\"say \\\"hi\\\"\" \"bye\"\""));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
+import com.comcast.cdn.traffic_control.traffic_router.shared.ZoneTestRecords;
+import com.google.common.cache.CacheBuilderSpec;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Zone;
+
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DynamicZoneKeysTest {
+	private final DynamicZoneKeys dynamicZoneKeys = new DynamicZoneKeys(CacheBuilderSpec.parse(""));
+	private Zone staticZone;
+	private Name name;
+	private ZoneKey zoneKey;
+
+	@Before
+	public void before() throws Exception {
+		final List<Record> records = ZoneTestRecords.generateZoneRecords(false);
+		staticZone = new Zone(ZoneTestRecords.origin, records.toArray(new Record[records.size()]));
+		name = new Name("edge.example.com.");
+		zoneKey = new ZoneKey(ZoneTestRecords.origin, new ArrayList<>(records));
+	}
+
+	private List<InetRecord> addresses(final String... addresses) throws Exception {
+		final List<InetRecord> inetRecords = new ArrayList<>();
+
+		for (final String address : addresses) {
+			inetRecords.add(new InetRecord(InetAddress.getByName(address), 30));
+		}
+
+		return inetRecords;
+	}
+
+	@Test
+	public void itFindsTheKeyOfTheSameAnswer() throws Exception {
+		final List<InetRecord> addresses = addresses("192.0.2.1", "192.0.2.2");
+		dynamicZoneKeys.put(staticZone, name, addresses, true, zoneKey);
+		addresses.clear();
+
+		assertThat(dynamicZoneKeys.get(staticZone, name, addresses("192.0.2.1", "192.0.2.2"), true), sameInstance(zoneKey));
+	}
+
+	@Test
+	public void itTellsDifferentAnswersApart() throws Exception {
+		dynamicZoneKeys.put(staticZone, name, addresses("192.0.2.1", "192.0.2.2"), true, zoneKey);
+
+		final Zone otherStaticZone = new Zone(ZoneTestRecords.origin, ZoneTestRecords.records.toArray(new Record[0]));
+
+		assertThat(dynamicZoneKeys.get(otherStaticZone, name, addresses("192.0.2.1", "192.0.2.2"), true), nullValue());
+		assertThat(dynamicZoneKeys.get(staticZone, new Name("other.example.com."), addresses("192.0.2.1", "192.0.2.2"), true), nullValue());
+		assertThat(dynamicZoneKeys.get(staticZone, name, addresses("192.0.2.2", "192.0.2.1"), true), nullValue());
+		assertThat(dynamicZoneKeys.get(staticZone, name, addresses("192.0.2.1", "192.0.2.2"), false), nullValue());
+		assertThat(dynamicZoneKeys.get(staticZone, name, Arrays.asList(new InetRecord(InetAddress.getByName("192.0.2.1"), 60),
+			new InetRecord(InetAddress.getByName("192.0.2.2"), 30)), true), nullValue());
+	}
+
+	@Test
+	public void itDoesNotKeepStaticZonesAlive() throws Exception {
+		final WeakReference<Zone> replacedZone = new WeakReference<>(new Zone(ZoneTestRecords.origin, ZoneTestRecords.records.toArray(new Record[0])));
+		dynamicZoneKeys.put(replacedZone.get(), name, addresses("192.0.2.1"), true, zoneKey);
+
+		for (int i = 0; i < 50 && replacedZone.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertThat(replacedZone.get() == null, equalTo(true));
+	}
+}
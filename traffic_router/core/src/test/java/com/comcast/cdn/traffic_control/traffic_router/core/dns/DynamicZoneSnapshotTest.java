@@ -0,0 +1,154 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.comcast.cdn.traffic_control.traffic_router.shared.ZoneTestRecords;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSKEYRecord;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.Zone;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DynamicZoneSnapshotTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File snapshot;
+	private DnsSecKeyPair ksk;
+	private DnsSecKeyPair zsk;
+
+	@Before
+	public void before() throws Exception {
+		ZoneTestRecords.generateZoneRecords(false);
+		snapshot = new File(temporaryFolder.getRoot(), "zones-dynamic.snapshot");
+		ksk = keyPair(ZoneTestRecords.ksk1, DNSKEYRecord.Flags.ZONE_KEY | DNSKEYRecord.Flags.SEP_KEY);
+		zsk = keyPair(ZoneTestRecords.zsk1, DNSKEYRecord.Flags.ZONE_KEY);
+	}
+
+	private DnsSecKeyPair keyPair(final KeyPair keyPair, final int flags) throws Exception {
+		final DNSKEYRecord dnskeyRecord = new DNSKEYRecord(ZoneTestRecords.origin, DClass.IN, 3600, flags, DNSKEYRecord.Protocol.DNSSEC,
+			DNSSEC.Algorithm.RSASHA256, keyPair.getPublic());
+
+		final DnsSecKeyPair dnsSecKeyPair = mock(DnsSecKeyPair.class);
+		when(dnsSecKeyPair.getDNSKEYRecord()).thenReturn(dnskeyRecord);
+		when(dnsSecKeyPair.getPrivate()).thenReturn(keyPair.getPrivate());
+		return dnsSecKeyPair;
+	}
+
+	private List<Record> dynamicRecords(final String address) throws Exception {
+		final List<Record> records = new ArrayList<>(ZoneTestRecords.records);
+		records.add(ksk.getDNSKEYRecord());
+		records.add(zsk.getDNSKEYRecord());
+		records.add(new ARecord(new Name("edge.example.com."), DClass.IN, 30, InetAddress.getByName(address)));
+		return records;
+	}
+
+	private SignedZoneKey signedZoneKey(final List<Record> records, final long signedAgo, final long validity) throws Exception {
+		final SignedZoneKey zoneKey = new SignedZoneKey(ZoneTestRecords.origin, records);
+		final Calendar expiration = Calendar.getInstance();
+
+		zoneKey.setTimestamp(System.currentTimeMillis() - signedAgo);
+		expiration.setTimeInMillis(zoneKey.getTimestamp() + validity);
+		zoneKey.setSignatureExpiration(expiration);
+		zoneKey.setKSKExpiration(expiration);
+		zoneKey.setZSKExpiration(expiration);
+		return zoneKey;
+	}
+
+	private Zone sign(final SignedZoneKey zoneKey) throws Exception {
+		final List<Record> signedRecords = new ZoneSignerImpl(null).signZone(ZoneTestRecords.origin, new ArrayList<>(zoneKey.getRecords()),
+			Collections.singletonList(ksk), Collections.singletonList(zsk), new Date(zoneKey.getTimestamp() - TimeUnit.HOURS.toMillis(1)),
+			zoneKey.getSignatureExpiration().getTime(), true, DSRecord.SHA256_DIGEST_ID);
+		return new SignedZone(ZoneTestRecords.origin, signedRecords.toArray(new Record[signedRecords.size()]));
+	}
+
+	@Test
+	public void itReadsBackTheZonesItWrites() throws Exception {
+		final SignedZoneKey signedZoneKey = signedZoneKey(dynamicRecords("192.0.2.1"), 0, TimeUnit.DAYS.toMillis(2));
+		final ZoneKey zoneKey = new ZoneKey(ZoneTestRecords.origin, new ArrayList<>(ZoneTestRecords.records));
+		final Map<ZoneKey, Zone> zones = new HashMap<>();
+
+		zones.put(signedZoneKey, sign(signedZoneKey));
+		zones.put(zoneKey, new Zone(ZoneTestRecords.origin, zoneKey.getRecords().toArray(new Record[0])));
+		zones.put(signedZoneKey(dynamicRecords("192.0.2.2"), TimeUnit.HOURS.toMillis(36) + 1000, TimeUnit.DAYS.toMillis(2)), sign(signedZoneKey));
+		DynamicZoneSnapshot.write(snapshot, zones);
+
+		final Map<ZoneKey, Zone> read = DynamicZoneSnapshot.read(snapshot);
+
+		// the zone past its refresh horizon is signed again instead
+		assertThat(read.size(), equalTo(2));
+
+		final SignedZoneKey readKey = (SignedZoneKey) read.keySet().stream().filter(key -> key instanceof SignedZoneKey).findFirst().get();
+		assertThat(readKey, equalTo(signedZoneKey));
+		assertThat(readKey.getTimestamp(), equalTo(signedZoneKey.getTimestamp()));
+		assertThat(readKey.getSignatureExpiration(), equalTo(signedZoneKey.getSignatureExpiration()));
+		assertThat(read.get(readKey), instanceOf(SignedZone.class));
+		assertThat(read.get(readKey).toMasterFile(), equalTo(zones.get(signedZoneKey).toMasterFile()));
+		assertThat(read.get(readKey).findExactMatch(new Name("edge.example.com."), Type.A).sigs().hasNext(), equalTo(true));
+		assertThat(read.get(zoneKey), notNullValue());
+	}
+
+	@Test
+	public void itIgnoresSnapshotsItCannotRead() throws Exception {
+		assertThat(DynamicZoneSnapshot.read(snapshot).size(), equalTo(0));
+
+		Files.write(snapshot.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+		assertThat(DynamicZoneSnapshot.read(snapshot).size(), equalTo(0));
+	}
+
+	@Test
+	public void itIgnoresSnapshotsWithLengthsPastTheirEnd() throws Exception {
+		final SignedZoneKey signedZoneKey = signedZoneKey(dynamicRecords("192.0.2.1"), 0, TimeUnit.DAYS.toMillis(2));
+		DynamicZoneSnapshot.write(snapshot, Collections.singletonMap(signedZoneKey, sign(signedZoneKey)));
+
+		// the length of the origin follows the magic number, version, zone count and signed flag
+		final byte[] bytes = Files.readAllBytes(snapshot.toPath());
+		ByteBuffer.wrap(bytes).putInt(13, Integer.MAX_VALUE);
+		Files.write(snapshot.toPath(), bytes);
+
+		assertThat(DynamicZoneSnapshot.read(snapshot).size(), equalTo(0));
+	}
+}
@@ -15,11 +15,13 @@
 
 package com.comcast.cdn.traffic_control.traffic_router.core.dns;
 
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouter;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.TrafficRouterManager;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.DNSAccessRecord;
 import com.comcast.cdn.traffic_control.traffic_router.core.dns.NameServer;
+import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNode;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.util.JsonUtils;
 import org.junit.Before;
@@ -49,6 +51,7 @@ import java.util.List;
 
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({Header.class, NameServer.class, TrafficRouterManager.class, TrafficRouter.class, CacheRegister.class})
@@ -187,5 +190,80 @@ public class NameServerTest {
         assertThat(ipaddr2, equalTo(option.getAddress()));
         nameServer.setEcsEnable(false);
     }
-   
+
+    @Test
+    public void TestCoverageZoneAnswerIsScopedToItsNetwork() throws Exception {
+        Name name = Name.fromString("host1.example.com.");
+        Message query = Message.newQuery(Record.newRecord(name, Type.A, DClass.IN, 12345L));
+
+        int nmask = 24;
+        InetAddress ipaddr = Inet4Address.getByName("192.168.1.0");
+        OPTRecord opt = new OPTRecord(1280, 0, 0, 0, Collections.singletonList(new ClientSubnetOption(nmask, ipaddr)));
+        query.addRecord(opt, Section.ADDITIONAL);
+
+        Record answer = new ARecord(name, DClass.IN, 12345L, Inet4Address.getByName("192.168.8.9"));
+        Zone zone = new Zone(Name.fromString("dns1.example.com."), new Record[] {ar, ns, answer});
+
+        DNSAccessRecord.Builder builder = new DNSAccessRecord.Builder(1L, client);
+
+        nameServer.setTrafficRouterManager(trafficRouterManager);
+        nameServer.setEcsEnable(true);
+
+        when(trafficRouterManager.getTrafficRouter()).thenReturn(trafficRouter);
+        when(trafficRouter.getZone(any(Name.class), any(int.class), eq(ipaddr), any(boolean.class), any(DNSAccessRecord.Builder.class))).thenAnswer(invocation -> {
+            ((DNSAccessRecord.Builder) invocation.getArguments()[4]).resultType(ResultType.CZ);
+            return zone;
+        });
+        // the client's /24 lies in a /16 coverage zone network next to a more specific 192.168.8.0/24
+        when(trafficRouter.getCoverageZoneScope(ipaddr)).thenReturn(21);
+
+        Message res = nameServer.query(query, client, builder);
+
+        ClientSubnetOption option = (ClientSubnetOption) res.getOPT().getOptions(EDNSOption.Code.CLIENT_SUBNET).get(0);
+        assertThat(option.getSourceNetmask(), equalTo(nmask));
+        assertThat(option.getScopeNetmask(), equalTo(21));
+        nameServer.setEcsEnable(false);
+    }
+
+    @Test
+    public void TestCoverageZoneAnswerIsScopedByTheCoverageZoneNetworks() throws Exception {
+        String czmapString = "{" +
+            "\"coverageZones\": {" +
+            "\"us-co-denver\": {\"network\": [\"192.168.0.0/16\"], \"network6\": []}," +
+            "\"us-co-boulder\": {\"network\": [\"192.168.8.0/24\"], \"network6\": []}" +
+            "}" +
+            "}";
+        NetworkNode.generateTree(new ObjectMapper().readTree(czmapString), false);
+
+        Name name = Name.fromString("host1.example.com.");
+        Message query = Message.newQuery(Record.newRecord(name, Type.A, DClass.IN, 12345L));
+
+        int nmask = 24;
+        InetAddress ipaddr = Inet4Address.getByName("192.168.1.0");
+        OPTRecord opt = new OPTRecord(1280, 0, 0, 0, Collections.singletonList(new ClientSubnetOption(nmask, ipaddr)));
+        query.addRecord(opt, Section.ADDITIONAL);
+
+        Record answer = new ARecord(name, DClass.IN, 12345L, Inet4Address.getByName("192.168.8.9"));
+        Zone zone = new Zone(Name.fromString("dns1.example.com."), new Record[] {ar, ns, answer});
+
+        DNSAccessRecord.Builder builder = new DNSAccessRecord.Builder(1L, client);
+
+        nameServer.setTrafficRouterManager(trafficRouterManager);
+        nameServer.setEcsEnable(true);
+
+        when(trafficRouterManager.getTrafficRouter()).thenReturn(trafficRouter);
+        when(trafficRouter.getZone(any(Name.class), any(int.class), eq(ipaddr), any(boolean.class), any(DNSAccessRecord.Builder.class))).thenAnswer(invocation -> {
+            ((DNSAccessRecord.Builder) invocation.getArguments()[4]).resultType(ResultType.CZ);
+            return zone;
+        });
+        when(trafficRouter.getCoverageZoneScope(ipaddr)).thenCallRealMethod();
+
+        Message res = nameServer.query(query, client, builder);
+
+        // 192.168.1.0 and 192.168.8.0/24 first differ in the 21st bit
+        ClientSubnetOption option = (ClientSubnetOption) res.getOPT().getOptions(EDNSOption.Code.CLIENT_SUBNET).get(0);
+        assertThat(option.getSourceNetmask(), equalTo(nmask));
+        assertThat(option.getScopeNetmask(), equalTo(21));
+        nameServer.setEcsEnable(false);
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
+import com.comcast.cdn.traffic_control.traffic_router.shared.ZoneTestRecords;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSKEYRecord;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Zone;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PersistedZonesTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final Calendar keyExpiration = Calendar.getInstance();
+	private DnsSecKeyPair ksk;
+	private DnsSecKeyPair zsk;
+
+	@Before
+	public void before() throws Exception {
+		ZoneTestRecords.generateZoneRecords(false);
+		ksk = keyPair(ZoneTestRecords.ksk1, DNSKEYRecord.Flags.ZONE_KEY | DNSKEYRecord.Flags.SEP_KEY);
+		zsk = keyPair(ZoneTestRecords.zsk1, DNSKEYRecord.Flags.ZONE_KEY);
+		keyExpiration.add(Calendar.YEAR, 1);
+	}
+
+	private DnsSecKeyPair keyPair(final KeyPair keyPair, final int flags) throws Exception {
+		final DNSKEYRecord dnskeyRecord = new DNSKEYRecord(ZoneTestRecords.origin, DClass.IN, 3600, flags, DNSKEYRecord.Protocol.DNSSEC,
+			DNSSEC.Algorithm.RSASHA256, keyPair.getPublic());
+
+		final DnsSecKeyPair dnsSecKeyPair = mock(DnsSecKeyPair.class);
+		when(dnsSecKeyPair.getDNSKEYRecord()).thenReturn(dnskeyRecord);
+		when(dnsSecKeyPair.getPrivate()).thenReturn(keyPair.getPrivate());
+		return dnsSecKeyPair;
+	}
+
+	private List<Record> zoneRecords() {
+		final List<Record> records = new ArrayList<>(ZoneTestRecords.records);
+		records.add(ksk.getDNSKEYRecord());
+		records.add(zsk.getDNSKEYRecord());
+		return records;
+	}
+
+	private void writeSignedZone(final long signedAgo) throws Exception {
+		final Date inception = new Date(System.currentTimeMillis() - signedAgo - TimeUnit.HOURS.toMillis(1));
+		final Date expiration = new Date(inception.getTime() + TimeUnit.DAYS.toMillis(2));
+		final List<Record> signedRecords = new ZoneSignerImpl(null).signZone(ZoneTestRecords.origin, zoneRecords(), Collections.singletonList(ksk),
+			Collections.singletonList(zsk), inception, expiration, true, DSRecord.SHA256_DIGEST_ID);
+		final Zone zone = new Zone(ZoneTestRecords.origin, signedRecords.toArray(new Record[signedRecords.size()]));
+
+		Files.write(new File(temporaryFolder.getRoot(), "example.com.").toPath(), zone.toMasterFile().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private boolean setKeyExpirations(final SignedZoneKey zoneKey) {
+		zoneKey.setKSKExpiration(keyExpiration);
+		zoneKey.setZSKExpiration(keyExpiration);
+		return true;
+	}
+
+	@Test
+	public void itCarriesForwardSignedZonesReadBackFromTheZoneDirectory() throws Exception {
+		writeSignedZone(0);
+		Files.write(new File(temporaryFolder.getRoot(), "example.com.tmp").toPath(), "partial".getBytes(StandardCharsets.UTF_8));
+
+		final Map<ZoneKey, Zone> zones = PersistedZones.read(temporaryFolder.getRoot(), this::setKeyExpirations);
+		assertThat(zones.size(), equalTo(1));
+
+		final ZoneKey persistedKey = zones.keySet().iterator().next();
+		assertThat(persistedKey, instanceOf(SignedZoneKey.class));
+		assertThat(zones.get(persistedKey), instanceOf(SignedZone.class));
+
+		final UnchangedZones unchangedZones = new UnchangedZones(zones);
+		final SignedZoneKey zoneKey = new SignedZoneKey(ZoneTestRecords.origin, zoneRecords());
+
+		assertThat(unchangedZones.carryForward(zoneKey), sameInstance(zones.get(persistedKey)));
+		assertThat(zoneKey.getSignatureExpiration(), notNullValue());
+		assertThat(zoneKey.getKSKExpiration(), equalTo(keyExpiration));
+		assertThat(((SignedZone) zones.get(persistedKey)).getCoveringNsec(new Name("a.example.com.")), notNullValue());
+	}
+
+	@Test
+	public void itSignsZonesPastTheirRefreshHorizonAgain() throws Exception {
+		writeSignedZone(TimeUnit.HOURS.toMillis(36) + TimeUnit.MINUTES.toMillis(1));
+
+		assertThat(PersistedZones.read(temporaryFolder.getRoot(), this::setKeyExpirations).size(), equalTo(0));
+	}
+
+	@Test
+	public void itSignsZonesWithoutSigningKeysAgain() throws Exception {
+		writeSignedZone(0);
+
+		assertThat(PersistedZones.read(temporaryFolder.getRoot(), zoneKey -> false).size(), equalTo(0));
+		assertThat(PersistedZones.read(new File(temporaryFolder.getRoot(), "missing"), this::setKeyExpirations).size(), equalTo(0));
+	}
+
+	@Test
+	public void itSignsZonesAgainWhenDnssecIsOff() throws Exception {
+		writeSignedZone(0);
+
+		final CacheRegister cacheRegister = mock(CacheRegister.class);
+		when(cacheRegister.getConfig()).thenReturn(new ObjectMapper().createObjectNode());
+		final SignatureManager signatureManager = new SignatureManager(null, cacheRegister, null, null);
+
+		assertThat(signatureManager.setKeyExpirations(new SignedZoneKey(ZoneTestRecords.origin, zoneRecords())), equalTo(false));
+		assertThat(PersistedZones.read(temporaryFolder.getRoot(), signatureManager::setKeyExpirations).size(), equalTo(0));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.net.InetAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
+
+public class ResponseCacheTest {
+	private ResponseCache responseCache;
+	private InetAddress resolver;
+	private Name name;
+
+	@Before
+	public void before() throws Exception {
+		responseCache = new ResponseCache(100);
+		resolver = InetAddress.getByName("192.168.1.1");
+		name = Name.fromString("www.example.com.");
+	}
+
+	private Message createQuery(final int id) {
+		final Message query = Message.newQuery(Record.newRecord(name, Type.A, DClass.IN));
+		query.getHeader().setID(id);
+		return query;
+	}
+
+	private Message createResponse(final Message query, final String... addresses) throws Exception {
+		final Message response = new Message(query.getHeader().getID());
+		response.getHeader().setFlag(Flags.QR);
+		response.getHeader().setFlag(Flags.AA);
+		response.addRecord(query.getQuestion(), Section.QUESTION);
+
+		for (final String address : addresses) {
+			response.addRecord(new ARecord(name, DClass.IN, 3600L, InetAddress.getByName(address)), Section.ANSWER);
+		}
+
+		return response;
+	}
+
+	private DNSAccessRecord.Builder createBuilder(final Message response) {
+		return new DNSAccessRecord.Builder(System.currentTimeMillis(), resolver).dnsMessage(response);
+	}
+
+	@Test
+	public void itReplaysResponsesWithTheRequestId() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1");
+		responseCache.put(query.toWire(), createBuilder(response).build(), response.toWire());
+
+		final byte[] request = createQuery(4242).toWire();
+		final ResponseCache.CachedResponse cached = responseCache.get(request, 512);
+
+		assertThat(cached, notNullValue());
+		assertThat(cached.getClient(), nullValue());
+
+		final Message replayed = new Message(cached.getWire(4242));
+		assertThat(replayed.getHeader().getID(), equalTo(4242));
+		assertThat(replayed.getSectionArray(Section.ANSWER), equalTo(response.getSectionArray(Section.ANSWER)));
+		assertThat(cached.getMessage(4242).getHeader().getID(), equalTo(4242));
+
+		// the cached copy is left untouched
+		assertThat(new Message(responseCache.get(request, 512).getWire(7)).getHeader().getID(), equalTo(7));
+	}
+
+	@Test
+	public void itRemembersTheClientSubnetAddress() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1");
+		final InetAddress client = InetAddress.getByName("10.10.10.0");
+		responseCache.put(query.toWire(), createBuilder(response).client(client).build(), response.toWire());
+
+		assertThat(responseCache.get(query.toWire(), 512).getClient(), equalTo(client));
+	}
+
+	@Test
+	public void itDoesNotCacheRoutedResponses() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1");
+		responseCache.put(query.toWire(), createBuilder(response).resultType(ResultType.CZ).build(), response.toWire());
+
+		assertThat(responseCache.get(query.toWire(), 512), nullValue());
+	}
+
+	@Test
+	public void itDoesNotCacheShuffledAddresses() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1", "10.0.0.2");
+		responseCache.put(query.toWire(), createBuilder(response).build(), response.toWire());
+
+		assertThat(responseCache.get(query.toWire(), 512), nullValue());
+	}
+
+	@Test
+	public void itDoesNotCacheFailures() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query);
+		response.getHeader().setRcode(Rcode.SERVFAIL);
+		responseCache.put(query.toWire(), createBuilder(response).build(), response.toWire());
+
+		assertThat(responseCache.get(query.toWire(), 512), nullValue());
+	}
+
+	@Test
+	public void itDoesNotReturnResponsesLongerThanAllowed() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1");
+		final byte[] wire = response.toWire();
+		responseCache.put(query.toWire(), createBuilder(response).build(), wire);
+
+		assertThat(responseCache.get(query.toWire(), wire.length - 1), nullValue());
+		assertThat(responseCache.get(query.toWire(), wire.length), notNullValue());
+	}
+
+	@Test
+	public void itKeysOnTheWholeQuestion() throws Exception {
+		final Message query = createQuery(1);
+		final Message response = createResponse(query, "10.0.0.1");
+		responseCache.put(query.toWire(), createBuilder(response).build(), response.toWire());
+
+		final Message aaaa = Message.newQuery(Record.newRecord(name, Type.AAAA, DClass.IN));
+		aaaa.getHeader().setID(1);
+
+		assertThat(responseCache.get(aaaa.toWire(), 512), nullValue());
+	}
+}
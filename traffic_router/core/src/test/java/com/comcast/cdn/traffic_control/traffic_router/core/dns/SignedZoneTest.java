@@ -0,0 +1,76 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.comcast.cdn.traffic_control.traffic_router.shared.ZoneTestRecords;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SignedZoneTest {
+	private SignedZone signedZone;
+
+	@Before
+	public void before() throws Exception {
+		final List<Record> records = new ArrayList<>(ZoneTestRecords.generateZoneRecords(false));
+		final String[] chain = {"example.com.", "ftp.example.com.", "mirror.ftp.example.com.", "www.example.com.", "mirror.www.example.com."};
+
+		// deliberately out of order
+		for (int i = chain.length - 1; i >= 0; i--) {
+			records.add(new NSECRecord(Name.fromString(chain[i]), DClass.IN, 60, Name.fromString(chain[(i + 1) % chain.length]), new int[] {Type.A}));
+		}
+
+		signedZone = new SignedZone(ZoneTestRecords.origin, records.toArray(new Record[records.size()]));
+	}
+
+	private String covering(final String qname) throws Exception {
+		final RRset rrset = signedZone.getCoveringNsec(Name.fromString(qname));
+		assertThat(rrset.getType(), equalTo(Type.NSEC));
+		return rrset.getName().toString();
+	}
+
+	@Test
+	public void itFindsTheNsecCoveringNamesInCanonicalOrder() throws Exception {
+		assertThat(covering("a.example.com."), equalTo("example.com."));
+		assertThat(covering("a.ftp.example.com."), equalTo("ftp.example.com."));
+		assertThat(covering("zzz.ftp.example.com."), equalTo("mirror.ftp.example.com."));
+		assertThat(covering("gopher.example.com."), equalTo("mirror.ftp.example.com."));
+		assertThat(covering("a.www.example.com."), equalTo("www.example.com."));
+		assertThat(covering("a.mirror.www.example.com."), equalTo("mirror.www.example.com."));
+		assertThat(covering("zzz.example.com."), equalTo("mirror.www.example.com."));
+		assertThat(covering("www.example.com."), equalTo("www.example.com."));
+	}
+
+	@Test
+	public void itHasNothingToCoverWithoutNsecRecords() throws Exception {
+		final List<Record> records = ZoneTestRecords.generateZoneRecords(false);
+		final SignedZone unsigned = new SignedZone(ZoneTestRecords.origin, records.toArray(new Record[records.size()]));
+
+		assertThat(unsigned.getCoveringNsec(Name.fromString("a.example.com.")), nullValue());
+	}
+}
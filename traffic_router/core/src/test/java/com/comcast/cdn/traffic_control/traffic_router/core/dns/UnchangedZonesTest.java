@@ -0,0 +1,116 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Zone;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class UnchangedZonesTest {
+	private Name origin;
+	private LoadingCache<ZoneKey, Zone> zoneCache;
+
+	@Before
+	public void before() throws Exception {
+		origin = Name.fromString("ds.cdn.example.com.");
+		zoneCache = CacheBuilder.newBuilder().build(new CacheLoader<ZoneKey, Zone>() {
+			@Override
+			public Zone load(final ZoneKey zoneKey) throws Exception {
+				return new Zone(zoneKey.getName(), zoneKey.getRecords().toArray(new Record[zoneKey.getRecords().size()]));
+			}
+		});
+	}
+
+	private List<Record> records(final long serial, final long ttl, final String address) throws Exception {
+		final Name ns = Name.fromString("tr.cdn.example.com.");
+
+		return new ArrayList<Record>(Arrays.asList(
+			new SOARecord(origin, DClass.IN, 86400, ns, Name.fromString("admin.example.com."), serial, 28800, 7200, 604800, 60),
+			new NSRecord(origin, DClass.IN, 3600, ns),
+			new ARecord(new Name("edge", origin), DClass.IN, ttl, InetAddress.getByName(address))
+		));
+	}
+
+	@Test
+	public void itIgnoresOnlyTheSerialOfTheSoa() throws Exception {
+		final List<Record> records = new ZoneKey(origin, records(2019011500, 30, "192.0.2.1")).getRecords();
+
+		assertThat(UnchangedZones.isUnchanged(records, new ZoneKey(origin, records(2019011516, 30, "192.0.2.1")).getRecords()), equalTo(true));
+		assertThat(UnchangedZones.isUnchanged(records, new ZoneKey(origin, records(2019011500, 60, "192.0.2.1")).getRecords()), equalTo(false));
+		assertThat(UnchangedZones.isUnchanged(records, new ZoneKey(origin, records(2019011500, 30, "192.0.2.2")).getRecords()), equalTo(false));
+		assertThat(UnchangedZones.isUnchanged(records, records.subList(0, 2)), equalTo(false));
+	}
+
+	@Test
+	public void itCarriesForwardZonesWithUnchangedRecords() throws Exception {
+		final Zone zone = zoneCache.get(new ZoneKey(origin, records(2019011500, 30, "192.0.2.1")));
+		final UnchangedZones unchangedZones = new UnchangedZones(zoneCache);
+
+		assertThat(unchangedZones.carryForward(new ZoneKey(origin, records(2019011500, 30, "192.0.2.2"))), nullValue());
+		assertThat(unchangedZones.carryForward(new ZoneKey(Name.fromString("other.cdn.example.com."), records(2019011500, 30, "192.0.2.1"))), nullValue());
+		assertThat(unchangedZones.size(), equalTo(0));
+
+		assertThat(unchangedZones.carryForward(new ZoneKey(origin, records(2019011516, 30, "192.0.2.1"))), sameInstance(zone));
+		assertThat(unchangedZones.size(), equalTo(1));
+	}
+
+	@Test
+	public void itCarriesForwardTheDynamicZonesOfCarriedForwardZones() throws Exception {
+		zoneCache.get(new ZoneKey(origin, records(2019011500, 30, "192.0.2.1")));
+		final UnchangedZones unchangedZones = new UnchangedZones(zoneCache);
+		unchangedZones.carryForward(new ZoneKey(origin, records(2019011516, 30, "192.0.2.1")));
+
+		final LoadingCache<ZoneKey, Zone> previousDynamicZoneCache = CacheBuilder.newBuilder().build(CacheLoader.from(zoneKey -> (Zone) null));
+		final ZoneKey dynamicKey = new ZoneKey(origin, records(2019011500, 30, "192.0.2.9"));
+		final Zone dynamicZone = new Zone(origin, dynamicKey.getRecords().toArray(new Record[0]));
+		previousDynamicZoneCache.put(dynamicKey, dynamicZone);
+		previousDynamicZoneCache.put(new ZoneKey(Name.fromString("other.cdn.example.com."), new ArrayList<Record>()), dynamicZone);
+
+		final LoadingCache<ZoneKey, Zone> dynamicZoneCache = CacheBuilder.newBuilder().build(CacheLoader.from(zoneKey -> (Zone) null));
+		unchangedZones.carryForwardDynamicZones(previousDynamicZoneCache, dynamicZoneCache);
+
+		assertThat(dynamicZoneCache.size(), equalTo(1L));
+		assertThat(dynamicZoneCache.getIfPresent(dynamicKey), sameInstance(dynamicZone));
+	}
+
+	@Test
+	public void itRebuildsSignedZonesWithoutSignatures() throws Exception {
+		zoneCache.get(new SignedZoneKey(origin, records(2019011500, 30, "192.0.2.1")));
+		final UnchangedZones unchangedZones = new UnchangedZones(zoneCache);
+
+		assertThat(unchangedZones.carryForward(new SignedZoneKey(origin, records(2019011500, 30, "192.0.2.1"))), nullValue());
+		assertThat(unchangedZones.carryForward(new ZoneKey(origin, records(2019011500, 30, "192.0.2.1"))), nullValue());
+	}
+}
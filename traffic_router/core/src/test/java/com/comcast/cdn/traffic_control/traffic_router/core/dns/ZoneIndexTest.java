@@ -0,0 +1,86 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Zone;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ZoneIndexTest {
+	private ZoneIndex zoneIndex;
+	private Zone superZone;
+	private Zone dsZone;
+
+	@Before
+	public void before() throws Exception {
+		final Map<ZoneKey, Zone> zones = new HashMap<>();
+		superZone = addZone(zones, "thecdn.example.com.");
+		dsZone = addZone(zones, "ds-01.thecdn.example.com.");
+		addZone(zones, "ds-02.thecdn.example.com.");
+
+		zoneIndex = new ZoneIndex(zones.keySet(), zones);
+	}
+
+	private Zone addZone(final Map<ZoneKey, Zone> zones, final String domain) throws Exception {
+		final Name origin = Name.fromString(domain);
+		final Name ns = Name.fromString("tr-01." + domain);
+		final List<Record> records = new ArrayList<>();
+		records.add(new SOARecord(origin, DClass.IN, 86400, ns, Name.fromString("admin." + domain), 1, 28800, 7200, 604800, 60));
+		records.add(new NSRecord(origin, DClass.IN, 86400, ns));
+
+		final ZoneKey zoneKey = new ZoneKey(origin, records);
+		final Zone zone = new Zone(origin, records.toArray(new Record[records.size()]));
+		zones.put(zoneKey, zone);
+		return zone;
+	}
+
+	@Test
+	public void itFindsTheClosestEnclosingZone() throws Exception {
+		assertThat(zoneIndex.getZone(Name.fromString("edge.ds-01.thecdn.example.com."), false), equalTo(dsZone));
+		assertThat(zoneIndex.getZone(Name.fromString("ds-01.thecdn.example.com."), false), equalTo(dsZone));
+		assertThat(zoneIndex.getZone(Name.fromString("tr-01.thecdn.example.com."), false), equalTo(superZone));
+	}
+
+	@Test
+	public void itFindsTheSuperDomainFirstWhenAsked() throws Exception {
+		assertThat(zoneIndex.getZone(Name.fromString("ds-01.thecdn.example.com."), true), equalTo(superZone));
+	}
+
+	@Test
+	public void itMatchesCaseInsensitively() throws Exception {
+		assertThat(zoneIndex.getZone(Name.fromString("Edge.DS-01.theCDN.example.COM."), false), equalTo(dsZone));
+	}
+
+	@Test
+	public void itReturnsNullOutsideOfIndexedZones() throws Exception {
+		assertThat(zoneIndex.getZone(Name.fromString("www.example.com."), false), nullValue());
+		assertThat(zoneIndex.getZone(Name.fromString("ds-01.thecdn.example.org."), true), nullValue());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns;
+
+import com.comcast.cdn.traffic_control.traffic_router.shared.ZoneTestRecords;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSKEYRecord;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+import java.net.InetAddress;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ZoneSignerImplTest {
+	private DnsSecKeyPair ksk;
+	private DnsSecKeyPair zsk;
+
+	@Before
+	public void before() throws Exception {
+		ZoneTestRecords.generateZoneRecords(false);
+
+		ksk = keyPair(ZoneTestRecords.ksk1, DNSKEYRecord.Flags.ZONE_KEY | DNSKEYRecord.Flags.SEP_KEY);
+		zsk = keyPair(ZoneTestRecords.zsk1, DNSKEYRecord.Flags.ZONE_KEY);
+	}
+
+	private DnsSecKeyPair keyPair(final KeyPair keyPair, final int flags) throws Exception {
+		final DNSKEYRecord dnskeyRecord = new DNSKEYRecord(ZoneTestRecords.origin, DClass.IN, 3600, flags, DNSKEYRecord.Protocol.DNSSEC,
+			DNSSEC.Algorithm.RSASHA256, keyPair.getPublic());
+
+		final DnsSecKeyPair dnsSecKeyPair = mock(DnsSecKeyPair.class);
+		when(dnsSecKeyPair.getDNSKEYRecord()).thenReturn(dnskeyRecord);
+		when(dnsSecKeyPair.getPrivate()).thenReturn(keyPair.getPrivate());
+		return dnsSecKeyPair;
+	}
+
+	private List<Record> zoneRecords() throws Exception {
+		final List<Record> records = new ArrayList<>(ZoneTestRecords.records);
+
+		records.add(ksk.getDNSKEYRecord());
+		records.add(zsk.getDNSKEYRecord());
+
+		for (int i = 0; i < 300; i++) {
+			final Name name = new Name("edge-" + i, ZoneTestRecords.origin);
+			records.add(new ARecord(name, DClass.IN, 30, InetAddress.getByAddress(new byte[] {10, 0, (byte) (i / 256), (byte) (i % 256)})));
+		}
+
+		return records;
+	}
+
+	private List<Record> sign(final ZoneSigner zoneSigner) throws Exception {
+		return zoneSigner.signZone(ZoneTestRecords.origin, zoneRecords(), Collections.singletonList(ksk), Collections.singletonList(zsk),
+			ZoneTestRecords.start, ZoneTestRecords.expiration, true, DSRecord.SHA256_DIGEST_ID);
+	}
+
+	@Test
+	public void itSignsTheSameRecordsInTheSameOrderInParallel() throws Exception {
+		final List<Record> sequential = sign(new ZoneSignerImpl(null));
+		final List<Record> parallel = sign(new ZoneSignerImpl(new ForkJoinPool(4)));
+
+		assertThat(parallel.size(), equalTo(sequential.size()));
+
+		for (int i = 0; i < sequential.size(); i++) {
+			// Record.equals compares the rdata, which includes the signature of an RRSIG record
+			assertThat(parallel.get(i).toString(), parallel.get(i), equalTo(sequential.get(i)));
+			assertThat(parallel.get(i).toString(), parallel.get(i).getTTL(), equalTo(sequential.get(i).getTTL()));
+		}
+	}
+
+	@Test
+	public void itMakesValidSignaturesMatchingDnsjava() throws Exception {
+		final List<Record> signedRecords = sign(new ZoneSignerImpl(new ForkJoinPool(4)));
+		final List<RRset> rrSets = new RRSetsBuilder().build(signedRecords.stream().filter(record -> record.getType() != Type.RRSIG).collect(Collectors.toList()));
+		int signatures = 0;
+
+		for (final Record record : signedRecords) {
+			if (record.getType() != Type.RRSIG) {
+				continue;
+			}
+
+			final RRSIGRecord rrsig = (RRSIGRecord) record;
+			final RRset rrSet = rrSets.stream()
+				.filter(set -> set.getName().equals(rrsig.getName()) && set.getType() == rrsig.getTypeCovered())
+				.findFirst().get();
+			final DnsSecKeyPair keyPair = rrsig.getTypeCovered() == Type.DNSKEY ? ksk : zsk;
+
+			DNSSEC.verify(rrSet, rrsig, keyPair.getDNSKEYRecord());
+			assertThat(rrsig, equalTo(DNSSEC.sign(rrSet, keyPair.getDNSKEYRecord(), keyPair.getPrivate(), ZoneTestRecords.start, ZoneTestRecords.expiration)));
+			signatures++;
+		}
+
+		assertThat(signatures, greaterThan(300));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns.protocol;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DeadlineQueueTest {
+	private final DeadlineQueue deadlineQueue = new DeadlineQueue("test");
+
+	@After
+	public void after() {
+		deadlineQueue.shutdown();
+	}
+
+	@Test
+	public void itCancelsRequestsPastTheirDeadline() {
+		final FutureTask<Object> running = new FutureTask<>(() -> null);
+		final FutureTask<Object> done = new FutureTask<>(() -> null);
+		done.run();
+
+		deadlineQueue.add(running, 60000);
+		deadlineQueue.add(done, 60000);
+		deadlineQueue.expire(System.nanoTime() + TimeUnit.MINUTES.toNanos(2));
+
+		assertThat(running.isCancelled(), equalTo(true));
+		assertThat(done.isCancelled(), equalTo(false));
+		assertThat(deadlineQueue.getTimedOutCount(), equalTo(1L));
+	}
+
+	@Test
+	public void itLeavesRequestsBeforeTheirDeadlineAlone() {
+		final FutureTask<Object> running = new FutureTask<>(() -> null);
+
+		deadlineQueue.add(running, 60000);
+		deadlineQueue.expire(System.nanoTime());
+
+		assertThat(running.isCancelled(), equalTo(false));
+		assertThat(deadlineQueue.getTimedOutCount(), equalTo(0L));
+	}
+
+	@Test
+	public void itStopsTrackingRequestsOnceTheyComplete() {
+		final FutureTask<Object> running = new FutureTask<>(() -> null);
+		final FutureTask<Object> done = new FutureTask<>(() -> null);
+
+		deadlineQueue.add(running, 60000);
+		final DeadlineQueue.Deadline deadline = deadlineQueue.add(done, 60000);
+		done.run();
+		deadline.remove();
+
+		assertThat(deadlineQueue.size(), equalTo(1));
+
+		deadlineQueue.expire(System.nanoTime() + TimeUnit.MINUTES.toNanos(2));
+
+		assertThat(deadlineQueue.size(), equalTo(0));
+		assertThat(deadlineQueue.getTimedOutCount(), equalTo(1L));
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.dns.protocol;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.dns.DNSAccessRecord;
+import com.comcast.cdn.traffic_control.traffic_router.core.dns.NameServer;
+
+public class TCPConnectionSelectorTest {
+	private final ExecutorService protocolService = Executors.newSingleThreadExecutor();
+	private TCP tcp;
+	private int port;
+
+	@Before
+	public void before() throws Exception {
+		final ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+		port = serverSocket.getLocalPort();
+
+		tcp = new TCP();
+		tcp.setServerSocket(serverSocket);
+		tcp.setExecutorService(new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()));
+		tcp.setCancelService(Executors.newFixedThreadPool(1));
+		tcp.setNameServer(new NameServer() {
+			@Override
+			public Message query(final Message request, final InetAddress clientAddress, final DNSAccessRecord.Builder builder) {
+				if (request.getQuestion().getName().toString().startsWith("slow.")) {
+					// outlast the idle timeout
+					try {
+						Thread.sleep(1500);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+
+				final Message response = new Message(request.getHeader().getID());
+				response.getHeader().setFlag(Flags.QR);
+				response.addRecord(request.getQuestion(), Section.QUESTION);
+				return response;
+			}
+		});
+		tcp.setPersistentConnections(true);
+		tcp.setMaxConnectionQueries(2);
+		tcp.setIdleTimeout(500);
+
+		protocolService.submit(tcp);
+
+		final long deadline = System.currentTimeMillis() + 5000;
+
+		while (tcp.getConnectionSelector() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@After
+	public void after() {
+		tcp.shutdown();
+		protocolService.shutdownNow();
+	}
+
+	private Socket connect() throws Exception {
+		return new Socket(InetAddress.getLoopbackAddress(), port);
+	}
+
+	@Test
+	public void itAnswersPipelinedQueriesOnOneConnection() throws Exception {
+		try (Socket socket = connect()) {
+			socket.setSoTimeout(5000);
+
+			final ByteArrayOutputStream queries = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(queries);
+			final List<Integer> ids = new ArrayList<>();
+
+			for (int i = 0; i < 5; i++) {
+				final Message query = Message.newQuery(Record.newRecord(Name.fromString("edge" + i + ".example.com."), Type.A, DClass.IN));
+				final byte[] wire = query.toWire();
+				ids.add(query.getHeader().getID());
+				out.writeShort(wire.length);
+				out.write(wire);
+			}
+
+			socket.getOutputStream().write(queries.toByteArray());
+
+			final DataInputStream in = new DataInputStream(socket.getInputStream());
+			final List<Integer> answered = new ArrayList<>();
+
+			for (int i = 0; i < 5; i++) {
+				final byte[] response = new byte[in.readUnsignedShort()];
+				in.readFully(response);
+				answered.add(new Message(response).getHeader().getID());
+			}
+
+			assertThat(answered, containsInAnyOrder(ids.toArray()));
+		}
+	}
+
+	@Test
+	public void itClosesIdleConnections() throws Exception {
+		try (Socket socket = connect()) {
+			socket.setSoTimeout(5000);
+			assertThat(socket.getInputStream().read(), equalTo(-1));
+		}
+	}
+
+	@Test
+	public void itKeepsConnectionsOpenWhileAnsweringTheirQueries() throws Exception {
+		try (Socket socket = connect()) {
+			socket.setSoTimeout(5000);
+
+			final Message query = Message.newQuery(Record.newRecord(Name.fromString("slow.example.com."), Type.A, DClass.IN));
+			final byte[] wire = query.toWire();
+			final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeShort(wire.length);
+			out.write(wire);
+
+			final DataInputStream in = new DataInputStream(socket.getInputStream());
+			final byte[] response = new byte[in.readUnsignedShort()];
+			in.readFully(response);
+
+			assertThat(new Message(response).getHeader().getID(), equalTo(query.getHeader().getID()));
+		}
+	}
+}
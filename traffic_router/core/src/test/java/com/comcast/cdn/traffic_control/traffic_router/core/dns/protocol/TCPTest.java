@@ -21,6 +21,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.eq;
@@ -33,12 +34,14 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.xbill.DNS.DClass;
@@ -98,7 +101,25 @@ public class TCPTest {
     public void testSubmit() {
         final SocketHandler r = mock(SocketHandler.class);
         tcp.submit(r);
-        verify(executorService).submit(r);
+
+        final ArgumentCaptor<Runnable> handler = ArgumentCaptor.forClass(Runnable.class);
+        verify(executorService).execute(handler.capture());
+        handler.getValue().run();
+        verify(r).run();
+    }
+
+    @Test
+    public void itCleansUpHandlersCanceledBeforeTheyRun() {
+        final SocketHandler r = mock(SocketHandler.class);
+        tcp.submit(r);
+
+        final ArgumentCaptor<Runnable> handler = ArgumentCaptor.forClass(Runnable.class);
+        verify(executorService).execute(handler.capture());
+        ((Future<?>) handler.getValue()).cancel(true);
+        handler.getValue().run();
+
+        verify(r).cleanup();
+        verify(r, never()).run();
     }
 
     @Test
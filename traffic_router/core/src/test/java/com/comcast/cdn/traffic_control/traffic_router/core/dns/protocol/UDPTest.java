@@ -36,6 +36,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.xbill.DNS.DClass;
@@ -109,7 +110,11 @@ public class UDPTest {
     public void testSubmit() throws Exception {
         final SocketHandler r = mock(SocketHandler.class);
         udp.submit(r);
-        verify(executorService).submit(r);
+
+        final ArgumentCaptor<Runnable> handler = ArgumentCaptor.forClass(Runnable.class);
+        verify(executorService).execute(handler.capture());
+        handler.getValue().run();
+        verify(r).run();
     }
 
     @Test
@@ -0,0 +1,176 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.ds;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.request.HTTPRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher.Type.HEADER;
+import static com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher.Type.HOST;
+import static com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryServiceMatcher.Type.PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+
+public class DeliveryServiceMatcherIndexTest {
+	private static final String[] LABELS = {"ds-one", "ds-two", "Edge", "example", "com", "cdn", "x", "ds_three"};
+
+	private final Random random = new Random(1984);
+	private final TreeSet<DeliveryServiceMatcher> matchers = new TreeSet<DeliveryServiceMatcher>();
+
+	private String randomLabel() {
+		return LABELS[random.nextInt(LABELS.length)];
+	}
+
+	private String randomLabels(final String separator) {
+		final StringBuilder labels = new StringBuilder(randomLabel());
+
+		for (int i = random.nextInt(3); i > 0; i--) {
+			labels.append(separator).append(randomLabel());
+		}
+
+		return labels.toString();
+	}
+
+	private String randomHostRegex() {
+		final String labels = randomLabels("\\.");
+
+		switch (random.nextInt(6)) {
+			case 0:
+				return labels;
+			case 1:
+				return ".*\\." + labels;
+			case 2:
+				return labels + "\\..*";
+			case 3:
+				// not literal, so never indexed
+				return ".*" + randomLabel() + ".*";
+			case 4:
+				return ".*\\." + randomLabel() + "\\.(com|net)";
+			default:
+				return ".*\\." + labels + "\\..*";
+		}
+	}
+
+	private String randomHostname() {
+		final String labels = randomLabels(".");
+
+		switch (random.nextInt(5)) {
+			case 0:
+				return labels.toUpperCase();
+			case 1:
+				return "a." + labels + ".net";
+			case 2:
+				return "." + labels + "..";
+			default:
+				return "edge." + labels + "." + randomLabel();
+		}
+	}
+
+	@Before
+	public void before() {
+		for (int i = 0; i < 200; i++) {
+			final DeliveryServiceMatcher matcher = new DeliveryServiceMatcher(mock(DeliveryService.class));
+			matcher.addMatch(HOST, randomHostRegex(), "");
+
+			if (random.nextInt(4) == 0) {
+				matcher.addMatch(PATH, ".*" + random.nextInt(3) + ".*", "");
+			}
+
+			matchers.add(matcher);
+		}
+	}
+
+	private DeliveryServiceMatcher scan(final HTTPRequest request) {
+		for (final DeliveryServiceMatcher matcher : matchers) {
+			if (matcher.matches(request)) {
+				return matcher;
+			}
+		}
+
+		return null;
+	}
+
+	@Test
+	public void itFindsTheSameMatcherAsAScan() {
+		final DeliveryServiceMatcherIndex index = new DeliveryServiceMatcherIndex(matchers);
+		int found = 0;
+
+		for (int i = 0; i < 5000; i++) {
+			final HTTPRequest request = new HTTPRequest();
+			request.setHostname(randomHostname());
+			request.setPath("/" + random.nextInt(3));
+
+			final DeliveryServiceMatcher expected = scan(request);
+			assertThat(request.getHostname(), index.getMatcher(request), sameInstance(expected));
+			found += expected != null ? 1 : 0;
+		}
+
+		// make sure the comparison is meaningful
+		assertThat(found > 1000, equalTo(true));
+	}
+
+	@Test
+	public void itKeepsTheOrderOfTheMatchers() {
+		final DeliveryService specific = mock(DeliveryService.class);
+		final DeliveryService general = mock(DeliveryService.class);
+		final TreeSet<DeliveryServiceMatcher> ordered = new TreeSet<DeliveryServiceMatcher>();
+
+		final DeliveryServiceMatcher generalMatcher = new DeliveryServiceMatcher(general);
+		generalMatcher.addMatch(HOST, ".*\\.cdn\\..*", "");
+		ordered.add(generalMatcher);
+
+		final DeliveryServiceMatcher specificMatcher = new DeliveryServiceMatcher(specific);
+		specificMatcher.addMatch(HOST, ".*\\.movies\\.cdn\\..*", "");
+		ordered.add(specificMatcher);
+
+		final DeliveryServiceMatcherIndex index = new DeliveryServiceMatcherIndex(ordered);
+		final HTTPRequest request = new HTTPRequest();
+
+		request.setHostname("edge.movies.cdn.example.com");
+		assertThat(index.getDeliveryService(request), sameInstance(specific));
+
+		request.setHostname("edge.cdn.example.com");
+		assertThat(index.getDeliveryService(request), sameInstance(general));
+
+		request.setHostname("edge.example.com");
+		assertThat(index.getDeliveryService(request), nullValue());
+	}
+
+	@Test
+	public void itMatchesRequestsWithoutAHostname() {
+		final DeliveryServiceMatcher headerMatcher = new DeliveryServiceMatcher(mock(DeliveryService.class));
+		headerMatcher.addMatch(HEADER, "yes", "X-Match");
+		final DeliveryServiceMatcher hostMatcher = new DeliveryServiceMatcher(mock(DeliveryService.class));
+		hostMatcher.addMatch(HOST, ".*\\.cdn\\..*", "");
+
+		final TreeSet<DeliveryServiceMatcher> ordered = new TreeSet<DeliveryServiceMatcher>();
+		ordered.add(headerMatcher);
+		ordered.add(hostMatcher);
+
+		final HTTPRequest request = new HTTPRequest();
+		request.setHeaders(Collections.singletonMap("X-Match", "yes"));
+
+		assertThat(new DeliveryServiceMatcherIndex(ordered).getMatcher(request), sameInstance(headerMatcher));
+	}
+}
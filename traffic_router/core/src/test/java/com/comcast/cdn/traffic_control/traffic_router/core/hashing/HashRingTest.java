@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hashing;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.Dispersion;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.ConsistentHasher;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.DefaultHashable;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.HashRing;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.MD5HashFunction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class HashRingTest {
+	private final ConsistentHasher consistentHasher = new ConsistentHasher();
+	private final MD5HashFunction hashFunction = new MD5HashFunction();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Random random = new Random(1234);
+	private List<DefaultHashable> hashables;
+
+	@Before
+	public void before() {
+		hashables = new ArrayList<DefaultHashable>();
+
+		for (int i = 0; i < 20; i++) {
+			hashables.add(new DefaultHashable().generateHashes("edge-cache-" + i, 1 + random.nextInt(1000)));
+		}
+	}
+
+	private Dispersion dispersion(final int limit) throws Exception {
+		return new Dispersion(mapper.readTree("{\"dispersion\": {\"limit\": " + limit + ", \"shuffled\": false}}"));
+	}
+
+	@Test
+	public void itSelectsLikeTheConsistentHasher() throws Exception {
+		final HashRing<DefaultHashable> hashRing = new HashRing<DefaultHashable>(hashables);
+
+		for (int i = 0; i < 2000; i++) {
+			final String path = "/some/path/" + Long.toHexString(random.nextLong()) + ".m3u8";
+			final int limit = 1 + random.nextInt(hashables.size() + 2);
+
+			assertThat(path, hashRing.select(hashFunction.hash(path), limit), equalTo(consistentHasher.selectHashables(hashables, dispersion(limit), path)));
+		}
+	}
+
+	@Test
+	public void itOrdersAllHashablesLikeTheConsistentHasher() throws Exception {
+		final HashRing<DefaultHashable> hashRing = new HashRing<DefaultHashable>(hashables);
+
+		for (int i = 0; i < 200; i++) {
+			final String path = "/" + Long.toHexString(random.nextLong());
+			assertThat(hashRing.select(hashFunction.hash(path), hashables.size()), equalTo(consistentHasher.selectHashables(hashables, path)));
+		}
+	}
+
+	@Test
+	public void itBreaksTiesByListOrder() throws Exception {
+		final List<DefaultHashable> twins = new ArrayList<DefaultHashable>();
+		twins.add(new DefaultHashable().generateHashes("twin", 10));
+		twins.add(new DefaultHashable().generateHashes("twin", 10));
+		twins.add(new DefaultHashable().generateHashes("other", 10));
+
+		final HashRing<DefaultHashable> hashRing = new HashRing<DefaultHashable>(twins);
+
+		for (int i = 0; i < 100; i++) {
+			final String path = "/" + i;
+
+			for (int limit = 1; limit <= twins.size(); limit++) {
+				assertThat(hashRing.select(hashFunction.hash(path), limit), equalTo(consistentHasher.selectHashables(twins, dispersion(limit), path)));
+			}
+		}
+	}
+
+	@Test
+	public void itSelectsFromRingsKeptBetweenCalls() throws Exception {
+		final Dispersion dispersion = dispersion(1);
+
+		for (int i = 0; i < 200; i++) {
+			final String path = "/" + i;
+			assertThat(consistentHasher.selectHashable("ds", hashables, dispersion, path), sameInstance(consistentHasher.selectHashable(hashables, dispersion, path)));
+		}
+
+		// a changed list of hashables rebuilds the ring
+		final List<DefaultHashable> available = new ArrayList<DefaultHashable>(hashables);
+		available.remove(5);
+
+		for (int i = 0; i < 200; i++) {
+			final String path = "/" + i;
+			assertThat(consistentHasher.selectHashable("ds", available, dispersion, path), sameInstance(consistentHasher.selectHashable(available, dispersion, path)));
+		}
+	}
+
+	@Test
+	public void itSelectsFromSomeOfItsHashablesLikeTheConsistentHasher() throws Exception {
+		final HashRing<DefaultHashable> hashRing = new HashRing<DefaultHashable>(hashables);
+
+		for (int i = 0; i < 500; i++) {
+			final List<DefaultHashable> available = new ArrayList<DefaultHashable>();
+
+			for (final DefaultHashable hashable : hashables) {
+				if (random.nextInt(4) > 0) {
+					available.add(hashable);
+				}
+			}
+
+			final String path = "/some/path/" + Long.toHexString(random.nextLong()) + ".m3u8";
+			final int limit = 1 + random.nextInt(hashables.size());
+
+			assertThat(path, hashRing.select(hashFunction.hash(path), limit, available), equalTo(consistentHasher.selectHashables(available, dispersion(limit), path)));
+		}
+	}
+
+	@Test
+	public void itSelectsNothingForHashablesOffTheRing() {
+		final HashRing<DefaultHashable> hashRing = new HashRing<DefaultHashable>(hashables.subList(0, 10));
+		assertThat(hashRing.select(1.0, 1, hashables.subList(5, 15)), nullValue());
+	}
+
+	@Test
+	public void itSharesRingsBetweenListsOfTheSameCacheLocation() throws Exception {
+		final List<DefaultHashable> some = new ArrayList<DefaultHashable>(hashables.subList(0, 12));
+		final List<DefaultHashable> others = new ArrayList<DefaultHashable>(hashables.subList(8, 20));
+		others.add(0, hashables.get(0));
+
+		for (int i = 0; i < 200; i++) {
+			final String path = "/" + i;
+			final List<DefaultHashable> available = i % 2 == 0 ? some : others;
+			assertThat(consistentHasher.selectHashables("ds", available, dispersion(3), path), equalTo(consistentHasher.selectHashables(available, dispersion(3), path)));
+		}
+	}
+
+	@Test
+	public void itSelectsNothingFromAnEmptyRing() throws Exception {
+		assertThat(new HashRing<DefaultHashable>(new ArrayList<DefaultHashable>()).select(1.0, 1), empty());
+		assertThat(consistentHasher.selectHashables("ds", new ArrayList<DefaultHashable>(), dispersion(1), "/path"), empty());
+	}
+}
@@ -16,12 +16,17 @@
 package com.comcast.cdn.traffic_control.traffic_router.core.hashing;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.hash.DefaultHashable;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.MD5HashFunction;
 import com.comcast.cdn.traffic_control.traffic_router.core.hash.NumberSearcher;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertThat;
@@ -48,4 +53,19 @@ public class HashableTest {
 		assertThat(defaultHashable.getClosestHash(1.23), equalTo(hash));
 	}
 
+	@Test
+	public void itGeneratesSortedDistinctHashes() {
+		final List<Double> hashes = new DefaultHashable().generateHashes("hash id", 1000).getHashValues();
+		final MD5HashFunction hashFunction = new MD5HashFunction();
+		final TreeSet<Double> expected = new TreeSet<Double>();
+
+		for (int i = 0; i < 1000; i++) {
+			expected.add(hashFunction.hash("hash id--" + i));
+		}
+
+		assertThat(hashes, equalTo(new ArrayList<Double>(expected)));
+		assertThat(new DefaultHashable().generateHashes("hash id", 1000).getHashValues(), equalTo(hashes));
+		assertThat(new DefaultHashable().generateHashes("hash id", 999).getHashValues().size(), equalTo(999));
+	}
+
 }
@@ -0,0 +1,200 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hashing;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.ds.Dispersion;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.ConsistentHasher;
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.DefaultHashable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class HashingStrategyTest {
+	private static final int CACHES = 20;
+	private static final int PATHS = 20000;
+
+	private final ConsistentHasher consistentHasher = new ConsistentHasher();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final List<String> paths = new ArrayList<String>();
+	private List<DefaultHashable> hashables;
+
+	@Before
+	public void before() {
+		hashables = new ArrayList<DefaultHashable>();
+
+		for (int i = 0; i < CACHES; i++) {
+			hashables.add(new DefaultHashable().generateHashes("edge-cache-" + i, 1000));
+		}
+
+		for (int i = 0; i < PATHS; i++) {
+			paths.add("/some/path/" + i + "/manifest.m3u8");
+		}
+	}
+
+	private Dispersion dispersion(final int limit) throws Exception {
+		return new Dispersion(mapper.readTree("{\"dispersion\": {\"limit\": " + limit + ", \"shuffled\": false}}"));
+	}
+
+	private List<DefaultHashable> select(final String strategy, final List<DefaultHashable> available) throws Exception {
+		final Dispersion dispersion = dispersion(1);
+		final List<DefaultHashable> selected = new ArrayList<DefaultHashable>();
+
+		for (final String path : paths) {
+			selected.add(consistentHasher.selectHashable(strategy, "ds-" + strategy, available, dispersion, path));
+		}
+
+		return selected;
+	}
+
+	// the busiest hashable's share of the paths relative to an even share
+	private double imbalance(final List<DefaultHashable> selected, final List<DefaultHashable> available) {
+		int busiest = 0;
+
+		for (final DefaultHashable hashable : available) {
+			int count = 0;
+
+			for (final DefaultHashable s : selected) {
+				if (s == hashable) {
+					count++;
+				}
+			}
+
+			busiest = Math.max(busiest, count);
+		}
+
+		return busiest / ((double) selected.size() / available.size());
+	}
+
+	private void assertBalancedAndStable(final String strategy, final double maxImbalance, final boolean onlyRemovedMove) throws Exception {
+		final List<DefaultHashable> before = select(strategy, hashables);
+		assertThat(strategy, imbalance(before, hashables), lessThan(maxImbalance));
+
+		final DefaultHashable removed = hashables.get(CACHES / 2);
+		final List<DefaultHashable> available = new ArrayList<DefaultHashable>(hashables);
+		available.remove(removed);
+
+		final List<DefaultHashable> after = select(strategy, available);
+		int moved = 0;
+		int movedUnnecessarily = 0;
+
+		for (int i = 0; i < paths.size(); i++) {
+			assertThat(after.get(i) == removed, equalTo(false));
+
+			if (after.get(i) != before.get(i)) {
+				moved++;
+
+				if (before.get(i) != removed) {
+					movedUnnecessarily++;
+				}
+			}
+		}
+
+		assertThat(strategy, moved, greaterThan(0));
+
+		if (onlyRemovedMove) {
+			assertThat(strategy, movedUnnecessarily, equalTo(0));
+		}
+	}
+
+	@Test
+	public void itBalancesAndKeepsRingSelections() throws Exception {
+		assertBalancedAndStable(ConsistentHasher.RING, 1.5, true);
+	}
+
+	@Test
+	public void itBalancesAndKeepsRendezvousSelections() throws Exception {
+		assertBalancedAndStable(ConsistentHasher.RENDEZVOUS, 1.25, true);
+	}
+
+	@Test
+	public void itBalancesJumpSelections() throws Exception {
+		// jump hash only keeps selections when buckets are removed from the end of the list
+		assertBalancedAndStable(ConsistentHasher.JUMP, 1.25, false);
+	}
+
+	@Test
+	public void itWeighsRendezvousSelectionsByHashCount() throws Exception {
+		final List<DefaultHashable> weighted = new ArrayList<DefaultHashable>();
+		weighted.add(new DefaultHashable().generateHashes("light-cache", 100));
+		weighted.add(new DefaultHashable().generateHashes("heavy-cache", 300));
+
+		int heavy = 0;
+
+		for (final DefaultHashable selected : select(ConsistentHasher.RENDEZVOUS, weighted)) {
+			if (selected == weighted.get(1)) {
+				heavy++;
+			}
+		}
+
+		// expect three quarters of the paths on the heavy cache
+		assertThat(heavy, greaterThan(PATHS * 70 / 100));
+		assertThat(heavy, lessThan(PATHS * 80 / 100));
+	}
+
+	@Test
+	public void itSelectsDistinctHashables() throws Exception {
+		for (final String strategy : new String[] {ConsistentHasher.RING, ConsistentHasher.RENDEZVOUS, ConsistentHasher.JUMP}) {
+			for (int limit = 1; limit <= CACHES + 1; limit++) {
+				final List<DefaultHashable> selected = consistentHasher.selectHashables(strategy, "ds", hashables, dispersion(limit), "/path/" + limit);
+
+				assertThat(strategy, selected.size(), equalTo(Math.min(limit, CACHES)));
+				assertThat(strategy, new HashSet<DefaultHashable>(selected).size(), equalTo(selected.size()));
+				assertThat(strategy, consistentHasher.selectHashables(strategy, "ds", hashables, dispersion(limit), "/path/" + limit), equalTo(selected));
+			}
+		}
+	}
+
+	@Test
+	public void itRecognizesHashingStrategies() {
+		assertThat(ConsistentHasher.isHashingStrategy("ring"), equalTo(true));
+		assertThat(ConsistentHasher.isHashingStrategy("rendezvous"), equalTo(true));
+		assertThat(ConsistentHasher.isHashingStrategy("jump"), equalTo(true));
+		assertThat(ConsistentHasher.isHashingStrategy("maglev"), equalTo(false));
+	}
+
+	@Test
+	public void itOnlyGeneratesReplicasForTheRing() throws Exception {
+		final List<DefaultHashable> fresh = new ArrayList<DefaultHashable>();
+
+		for (int i = 0; i < CACHES; i++) {
+			fresh.add(new DefaultHashable().generateHashes("replica-cache-" + i, 1000));
+		}
+
+		consistentHasher.selectHashable(ConsistentHasher.RENDEZVOUS, "ds", fresh, dispersion(1), "/path");
+		consistentHasher.selectHashable(ConsistentHasher.JUMP, "ds", fresh, dispersion(1), "/path");
+
+		for (final DefaultHashable hashable : fresh) {
+			assertThat(Whitebox.getInternalState(hashable, "hashes"), nullValue());
+		}
+
+		consistentHasher.selectHashable(ConsistentHasher.RING, "ds", fresh, dispersion(1), "/path");
+
+		for (final DefaultHashable hashable : fresh) {
+			assertThat(hashable.getHashValues().size(), equalTo(1000));
+		}
+	}
+}
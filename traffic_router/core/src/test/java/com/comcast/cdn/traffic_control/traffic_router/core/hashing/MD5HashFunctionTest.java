@@ -0,0 +1,80 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.hashing;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.hash.MD5HashFunction;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MD5HashFunctionTest {
+	private final MD5HashFunction hashFunction = new MD5HashFunction();
+
+	private static double expectedHash(final String value) throws Exception {
+		final byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes());
+		return new BigInteger(1, digest).doubleValue();
+	}
+
+	@Test
+	public void itHashesLikeBigInteger() throws Exception {
+		final Random random = new Random(42);
+
+		for (int i = 0; i < 100000; i++) {
+			final String value = "edge-cache-" + random.nextInt(1000) + "--" + i;
+			assertThat(value, hashFunction.hash(value), equalTo(expectedHash(value)));
+		}
+	}
+
+	@Test
+	public void itHashesNullAsEmpty() throws Exception {
+		assertThat(hashFunction.hash(null), equalTo(expectedHash("")));
+	}
+
+	@Test
+	public void itHashesOnManyThreads() throws Exception {
+		final Thread[] threads = new Thread[4];
+		final boolean[] matched = new boolean[threads.length];
+
+		for (int t = 0; t < threads.length; t++) {
+			final int index = t;
+			threads[t] = new Thread(() -> {
+				boolean allMatched = true;
+
+				try {
+					for (int i = 0; i < 10000; i++) {
+						final String value = "/path/" + index + "/" + i;
+						allMatched &= hashFunction.hash(value) == expectedHash(value);
+					}
+				} catch (Exception e) {
+					allMatched = false;
+				}
+
+				matched[index] = allMatched;
+			});
+			threads[t].start();
+		}
+
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+			assertThat(matched[t], equalTo(true));
+		}
+	}
+}
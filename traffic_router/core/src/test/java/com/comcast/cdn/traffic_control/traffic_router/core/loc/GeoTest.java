@@ -27,6 +27,7 @@ import org.junit.Assert;
 
 import com.comcast.cdn.traffic_control.traffic_router.core.TestBase;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationService;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -39,7 +40,7 @@ public class GeoTest {
 	private static final Logger LOGGER = Logger.getLogger(GeoTest.class);
 
 	private GeolocationDatabaseUpdater geolocationDatabaseUpdater;
-	private MaxmindGeolocationService maxmindGeolocationService;
+	private GeolocationService maxmindGeolocationService;
 	private static ApplicationContext context;
 
 	@BeforeClass
@@ -51,7 +52,7 @@ public class GeoTest {
 	@Before
 	public void setUp() throws Exception {
 		geolocationDatabaseUpdater = (GeolocationDatabaseUpdater) context.getBean("geolocationDatabaseUpdater");
-		maxmindGeolocationService = (MaxmindGeolocationService) context.getBean("maxmindGeolocationService");
+		maxmindGeolocationService = (GeolocationService) context.getBean("maxmindGeolocationService");
 
 		geolocationDatabaseUpdater.loadDatabase();
 
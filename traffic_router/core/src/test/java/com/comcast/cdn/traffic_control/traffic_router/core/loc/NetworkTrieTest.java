@@ -0,0 +1,195 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.loc;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.util.CidrAddress;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class NetworkTrieTest {
+    private final Random random = new Random(5150);
+
+    private CidrAddress randomPrefix(final int bytes, final int maxLength) throws Exception {
+        final byte[] address = new byte[bytes];
+        random.nextBytes(address);
+        // keep prefixes clustered so that they nest and share branches
+        address[0] = (byte) (address[0] & 0x3);
+        return new CidrAddress(InetAddress.getByAddress(address), random.nextInt(maxLength + 1));
+    }
+
+    // the longest prefix containing the address, earliest added on ties, as a list scan would find it
+    private CidrAddress longestMatch(final List<CidrAddress> prefixes, final CidrAddress address) {
+        CidrAddress found = null;
+
+        for (final CidrAddress prefix : prefixes) {
+            if (prefix.compareTo(address) == 0 && (found == null || prefix.getNetmaskLength() > found.getNetmaskLength())) {
+                found = prefix;
+            }
+        }
+
+        return found;
+    }
+
+    private void assertMatchesLikeAScan(final int bytes) throws Exception {
+        final NetworkTrie<CidrAddress> trie = new NetworkTrie<CidrAddress>();
+        final List<CidrAddress> prefixes = new ArrayList<CidrAddress>();
+
+        for (int i = 0; i < 500; i++) {
+            final CidrAddress prefix = randomPrefix(bytes, bytes * 8);
+
+            if (trie.add(prefix, prefix)) {
+                prefixes.add(prefix);
+            }
+        }
+
+        assertThat(trie.size(), equalTo(prefixes.size()));
+
+        for (int i = 0; i < 5000; i++) {
+            final CidrAddress address = randomPrefix(bytes, 0);
+            final CidrAddress host = new CidrAddress(InetAddress.getByAddress(address.getHostBytes()));
+            assertThat(trie.get(host.getHostBytes()), equalTo(longestMatch(prefixes, host)));
+        }
+    }
+
+    private int commonPrefixLength(final CidrAddress prefix, final byte[] address) {
+        final byte[] bytes = prefix.getHostBytes();
+
+        for (int i = 0; i < prefix.getNetmaskLength(); i++) {
+            if (((bytes[i / 8] ^ address[i / 8]) & (0x80 >>> (i % 8))) != 0) {
+                return i;
+            }
+        }
+
+        return prefix.getNetmaskLength();
+    }
+
+    // the bits of the address that keep every prefix not containing it apart, and take in its match
+    private int scopeByScan(final List<CidrAddress> prefixes, final CidrAddress host) {
+        final CidrAddress match = longestMatch(prefixes, host);
+        int scope = match != null ? match.getNetmaskLength() : 0;
+
+        for (final CidrAddress prefix : prefixes) {
+            if (prefix.compareTo(host) != 0) {
+                scope = Math.max(scope, commonPrefixLength(prefix, host.getHostBytes()) + 1);
+            }
+        }
+
+        return scope;
+    }
+
+    private void assertScopesLikeAScan(final int bytes) throws Exception {
+        final NetworkTrie<CidrAddress> trie = new NetworkTrie<CidrAddress>();
+        final List<CidrAddress> prefixes = new ArrayList<CidrAddress>();
+
+        for (int i = 0; i < 200; i++) {
+            final CidrAddress prefix = randomPrefix(bytes, bytes * 8);
+
+            if (trie.add(prefix, prefix)) {
+                prefixes.add(prefix);
+            }
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            final CidrAddress host = new CidrAddress(InetAddress.getByAddress(randomPrefix(bytes, 0).getHostBytes()));
+            assertThat(trie.getScope(host.getHostBytes()), equalTo(scopeByScan(prefixes, host)));
+        }
+    }
+
+    @Test
+    public void itFindsTheLongestIpV4Prefix() throws Exception {
+        assertMatchesLikeAScan(4);
+    }
+
+    @Test
+    public void itFindsTheLongestIpV6Prefix() throws Exception {
+        assertMatchesLikeAScan(16);
+    }
+
+    @Test
+    public void itKeepsTheFirstOfDuplicatePrefixes() throws Exception {
+        final NetworkTrie<String> trie = new NetworkTrie<String>();
+
+        assertThat(trie.add(CidrAddress.fromString("192.168.1.0/24"), "first"), equalTo(true));
+        assertThat(trie.add(CidrAddress.fromString("192.168.1.7/24"), "second"), equalTo(false));
+        assertThat(trie.add(CidrAddress.fromString("192.168.0.0/16"), "supernet"), equalTo(true));
+
+        assertThat(trie.getIpV4(NetworkTrie.parseIpV4("192.168.1.200")), equalTo("first"));
+        assertThat(trie.getIpV4(NetworkTrie.parseIpV4("192.168.2.200")), equalTo("supernet"));
+        assertThat(trie.getIpV4(NetworkTrie.parseIpV4("10.0.0.1")), nullValue());
+        assertThat(trie.values(), contains("supernet", "first"));
+    }
+
+    @Test
+    public void itKeepsAddressFamiliesApart() throws Exception {
+        final NetworkTrie<String> trie = new NetworkTrie<String>();
+        trie.add(CidrAddress.fromString("0.0.0.0/0"), "ipv4");
+        trie.add(CidrAddress.fromString("2001:db8::/32"), "ipv6");
+
+        assertThat(trie.get(InetAddress.getByName("2001:db8::1").getAddress()), equalTo("ipv6"));
+        assertThat(trie.getIpV6(0x20010db800000000L, 1L), equalTo("ipv6"));
+        assertThat(trie.get(InetAddress.getByName("2001:db9::1").getAddress()), nullValue());
+        assertThat(trie.getIpV4(NetworkTrie.parseIpV4("32.1.13.184")), equalTo("ipv4"));
+    }
+
+    @Test
+    public void itScopesAddressesToTheirCoverageZoneNetwork() throws Exception {
+        final NetworkTrie<String> trie = new NetworkTrie<String>();
+        trie.add(CidrAddress.fromString("192.168.0.0/16"), "east");
+        trie.add(CidrAddress.fromString("192.168.8.0/24"), "west");
+        trie.add(CidrAddress.fromString("2001:db8::/32"), "north");
+
+        // the more specific network decides for the whole of itself
+        assertThat(trie.getScope(InetAddress.getByName("192.168.8.77").getAddress()), equalTo(24));
+        // the rest of the supernet is scoped short of the more specific network
+        assertThat(trie.getScope(InetAddress.getByName("192.168.1.0").getAddress()), equalTo(21));
+        assertThat(trie.getScope(InetAddress.getByName("192.168.200.0").getAddress()), equalTo(17));
+        assertThat(trie.getScope(InetAddress.getByName("2001:db8:1::").getAddress()), equalTo(32));
+        // outside the coverage zone networks only the bits that keep them apart matter
+        assertThat(trie.getScope(InetAddress.getByName("10.1.2.0").getAddress()), equalTo(1));
+        assertThat(trie.getScope(InetAddress.getByName("192.169.0.0").getAddress()), equalTo(16));
+        assertThat(new NetworkTrie<String>().getScope(InetAddress.getByName("10.1.2.0").getAddress()), equalTo(0));
+    }
+
+    @Test
+    public void itScopesIpV4AddressesLikeAScan() throws Exception {
+        assertScopesLikeAScan(4);
+    }
+
+    @Test
+    public void itScopesIpV6AddressesLikeAScan() throws Exception {
+        assertScopesLikeAScan(16);
+    }
+
+    @Test
+    public void itParsesDottedQuads() throws Exception {
+        assertThat(NetworkTrie.parseIpV4("192.168.1.255"), equalTo(0xc0a801ffL));
+        assertThat(NetworkTrie.parseIpV4("0.0.0.0"), equalTo(0L));
+        assertThat(NetworkTrie.parseIpV4("255.255.255.255"), equalTo(0xffffffffL));
+
+        for (final String invalid : new String[] {"256.1.1.1", "1.2.3", "1.2.3.4.5", "1..2.3", "1.2.3.", ".1.2.3", "1.2.3.4/24", "::1", "a.b.c.d", "1.2.3.0004"}) {
+            assertThat(invalid, NetworkTrie.parseIpV4(invalid), equalTo(-1L));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.router;
+
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Tallies;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.ResultType;
+import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track.RouteType;
+import com.comcast.cdn.traffic_control.traffic_router.core.util.LatencyHistogram;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+
+public class StatTrackerTest {
+	private StatTracker statTracker;
+
+	@Before
+	public void before() {
+		statTracker = new StatTracker();
+	}
+
+	private void save(final RouteType routeType, final String fqdn, final ResultType resultType) {
+		final Track track = StatTracker.getTrack();
+		track.setRouteType(routeType, fqdn);
+		track.setResult(resultType);
+		statTracker.saveTrack(track);
+	}
+
+	@Test
+	public void itTalliesEachResultOfEachName() {
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+		save(RouteType.DNS, "edge.example.com", ResultType.GEO);
+		save(RouteType.HTTP, "tr.example.com", ResultType.MISS);
+		save(RouteType.HTTP, "tr.example.com", ResultType.RGALT);
+		save(RouteType.HTTP, null, ResultType.ERROR);
+		save(RouteType.HTTP, null, ResultType.ERROR);
+		save(RouteType.HTTP, "missing.example.com", ResultType.DS_MISS);
+
+		final Tallies dns = statTracker.getDnsMap().get("edge.example.com");
+		assertThat(dns.getCzCount(), equalTo(2));
+		assertThat(dns.getGeoCount(), equalTo(1));
+		assertThat(dns.getMissCount(), equalTo(0));
+
+		final Map<String, Tallies> httpMap = statTracker.getHttpMap();
+		assertThat(httpMap.get("tr.example.com").getMissCount(), equalTo(1));
+		assertThat(httpMap.get("tr.example.com").getRegionalAlternateCount(), equalTo(1));
+		assertThat(httpMap.get("null").getErrCount(), equalTo(2));
+		assertThat(httpMap, not(hasKey("missing.example.com")));
+
+		assertThat(statTracker.getTotalDnsCount(), equalTo(3));
+		assertThat(statTracker.getTotalHttpCount(), equalTo(4));
+		assertThat(statTracker.getTotalDsMissCount(), equalTo(1));
+	}
+
+	@Test
+	public void itReturnsSnapshots() {
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+		final Map<String, Tallies> snapshot = statTracker.getDnsMap();
+
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+
+		assertThat(snapshot.get("edge.example.com").getCzCount(), equalTo(1));
+		assertThat(statTracker.getDnsMap().get("edge.example.com").getCzCount(), equalTo(2));
+	}
+
+	@Test
+	public void itRecordsLatenciesOfEachResultOfEachName() {
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+		save(RouteType.HTTP, "tr.example.com", ResultType.GEO);
+		save(RouteType.HTTP, "tr.example.com", ResultType.INIT);
+
+		Map<String, Map<String, Map<String, LatencyHistogram.Snapshot>>> latencies = statTracker.getLatencies();
+		assertThat(latencies.get("DNS").get("edge.example.com").get("CZ").getTotalCount(), equalTo(2L));
+		assertThat(latencies.get("HTTP").get("tr.example.com").get("GEO").getTotalCount(), equalTo(1L));
+		assertThat(latencies.get("HTTP").get("tr.example.com"), not(hasKey("INIT")));
+
+		save(RouteType.DNS, "edge.example.com", ResultType.CZ);
+
+		latencies = statTracker.getLatencies();
+		assertThat(latencies.get("DNS").get("edge.example.com").get("CZ").getTotalCount(), equalTo(3L));
+		assertThat(latencies.get("HTTP").get("tr.example.com").get("GEO").getTotalCount(), equalTo(1L));
+	}
+
+	@Test
+	public void itRecordsTheLatenciesOfNamesBeyondTheFirstThousandUnderOther() {
+		for (int i = 0; i < 1005; i++) {
+			save(RouteType.DNS, "random-" + i + ".edge.example.com", ResultType.MISS);
+		}
+
+		final Map<String, Map<String, LatencyHistogram.Snapshot>> latencies = statTracker.getLatencies().get("DNS");
+		assertThat(latencies.size(), equalTo(1001));
+		assertThat(latencies.get("random-999.edge.example.com").get("MISS").getTotalCount(), equalTo(1L));
+		assertThat(latencies, not(hasKey("random-1000.edge.example.com")));
+		assertThat(latencies.get("other").get("MISS").getTotalCount(), equalTo(5L));
+
+		assertThat(statTracker.getDnsMap().get("random-1004.edge.example.com").getMissCount(), equalTo(1));
+	}
+
+	@Test
+	public void itCountsConcurrentRequests() throws Exception {
+		final List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < 8; t++) {
+			final Thread thread = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					save(RouteType.HTTP, "ds-" + (i % 10) + ".example.com", (i / 10) % 2 == 0 ? ResultType.CZ : ResultType.GEO);
+					save(RouteType.HTTP, "missing.example.com", ResultType.DS_MISS);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final Map<String, Tallies> httpMap = statTracker.getHttpMap();
+		assertThat(httpMap.size(), equalTo(10));
+
+		for (final Tallies tallies : httpMap.values()) {
+			assertThat(tallies.getCzCount(), equalTo(4000));
+			assertThat(tallies.getGeoCount(), equalTo(4000));
+		}
+
+		assertThat(statTracker.getTotalHttpCount(), equalTo(80000));
+		assertThat(statTracker.getTotalDsMissCount(), equalTo(80000));
+	}
+}
@@ -20,18 +20,23 @@ import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheLocation.LocalizationMethod;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.CacheRegister;
 import com.comcast.cdn.traffic_control.traffic_router.core.cache.InetRecord;
+import com.comcast.cdn.traffic_control.traffic_router.core.cache.Resolver;
 import com.comcast.cdn.traffic_control.traffic_router.core.config.CertificateChecker;
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.DeliveryService;
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.Dispersion;
 import com.comcast.cdn.traffic_control.traffic_router.core.ds.SteeringRegistry;
 import com.comcast.cdn.traffic_control.traffic_router.core.hash.ConsistentHasher;
 import com.comcast.cdn.traffic_control.traffic_router.core.loc.FederationRegistry;
+import com.comcast.cdn.traffic_control.traffic_router.core.loc.NetworkNode;
 import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.DNSRequest;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.HTTPRequest;
 import com.comcast.cdn.traffic_control.traffic_router.core.request.Request;
 import com.comcast.cdn.traffic_control.traffic_router.core.router.StatTracker.Track;
 import com.comcast.cdn.traffic_control.traffic_router.core.util.CidrAddress;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.cache.CacheBuilderSpec;
 import org.junit.Before;
 import org.junit.Test;
 import org.xbill.DNS.Type;
@@ -43,14 +48,17 @@ import java.util.List;
 import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.reflect.Whitebox.setInternalState;
@@ -209,6 +217,98 @@ public class TrafficRouterTest {
         assertThat(track.getResultLocation(), equalTo(new Geolocation(50, 50)));
     }
 
+    @Test
+    public void itReusesCoverageZoneDecisionsForClientsOfTheSameNetwork() throws Exception {
+        final List<InetRecord> inetRecords = new ArrayList<InetRecord>();
+        inetRecords.add(new InetRecord("cache1.example.com", 30));
+
+        Cache cache = mock(Cache.class);
+        when(cache.hasDeliveryService(anyString())).thenReturn(true);
+        when(cache.getIpAddresses(any(JsonNode.class), any(Resolver.class), anyBoolean())).thenReturn(inetRecords);
+        CacheLocation cacheLocation = new CacheLocation("east", new Geolocation(50, 50));
+        cacheLocation.addCache(cache);
+
+        NetworkNode network = new NetworkNode("192.168.10.0/24", "east");
+
+        setInternalState(trafficRouter, "dnsRouteCache", new DNSRouteCache(CacheBuilderSpec.parse("maximumSize=10")));
+        when(deliveryService.getId()).thenReturn("ds1");
+        when(deliveryService.getRoutingName()).thenReturn("edge");
+        when(deliveryService.isLocationAvailable(cacheLocation)).thenReturn(true);
+        when(trafficRouter.getNetworkNode(anyString())).thenReturn(network);
+        when(trafficRouter.getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class))).thenReturn(cacheLocation);
+        when(trafficRouter.getSupportingCaches(any(List.class), any(DeliveryService.class))).thenCallRealMethod();
+        when(trafficRouter.inetRecordsFromCaches(any(DeliveryService.class), any(List.class), any(Request.class))).thenCallRealMethod();
+        doCallRealMethod().when(trafficRouter).setState(any(JsonNode.class));
+
+        DNSRequest request = new DNSRequest();
+        request.setClientIP("192.168.10.11");
+        request.setHostname("edge.example.com");
+        request.setQtype(Type.A);
+        trafficRouter.route(request, StatTracker.getTrack());
+
+        request.setClientIP("192.168.10.200");
+        Track track = StatTracker.getTrack();
+        DNSRouteResult result = trafficRouter.route(request, track);
+
+        assertThat(result.getAddresses(), contains(new InetRecord("cache1.example.com", 30)));
+        assertThat(track.getResult(), equalTo(Track.ResultType.CZ));
+        assertThat(track.getResultLocation(), equalTo(new Geolocation(50, 50)));
+        verify(trafficRouter, times(1)).getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class));
+        // the network of the client is only looked up once per request
+        verify(trafficRouter, times(2)).getNetworkNode(anyString());
+
+        // another name, or new cache states, are routed again
+        request.setHostname("edge.other.example.com");
+        trafficRouter.route(request, StatTracker.getTrack());
+        trafficRouter.setState(JsonNodeFactory.instance.objectNode());
+        request.setHostname("edge.example.com");
+        trafficRouter.route(request, StatTracker.getTrack());
+
+        verify(trafficRouter, times(3)).getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class));
+    }
+
+    @Test
+    public void itReusesCoverageZoneCacheSelectionsForClientsOfTheSameNetwork() throws Exception {
+        Cache cache = mock(Cache.class);
+        when(cache.hasDeliveryService(anyString())).thenReturn(true);
+        CacheLocation cacheLocation = new CacheLocation("east", new Geolocation(50, 50));
+        cacheLocation.addCache(cache);
+
+        setInternalState(trafficRouter, "httpRouteCache", new HTTPRouteCache(CacheBuilderSpec.parse("maximumSize=10")));
+        when(deliveryService.getId()).thenReturn("ds1");
+        when(deliveryService.isLocationAvailable(cacheLocation)).thenReturn(true);
+        NetworkNode network = new NetworkNode("192.168.10.0/24", "east");
+        when(trafficRouter.getNetworkNode(anyString())).thenReturn(network);
+        when(trafficRouter.getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class))).thenAnswer(invocation -> {
+            ((Track) invocation.getArguments()[4]).setClientGeolocation(new Geolocation(40, -100));
+            return cacheLocation;
+        });
+        when(trafficRouter.getSupportingCaches(any(List.class), any(DeliveryService.class))).thenCallRealMethod();
+        when(trafficRouter.selectCaches(any(HTTPRequest.class), any(DeliveryService.class), any(Track.class), anyBoolean())).thenCallRealMethod();
+        doCallRealMethod().when(trafficRouter).setState(any(JsonNode.class));
+
+        HTTPRequest httpRequest = new HTTPRequest();
+        httpRequest.setClientIP("192.168.10.11");
+        httpRequest.setHostname("ccr.example.com");
+        trafficRouter.selectCaches(httpRequest, deliveryService, StatTracker.getTrack(), true).clear();
+
+        httpRequest.setClientIP("192.168.10.200");
+        Track track = StatTracker.getTrack();
+
+        assertThat(trafficRouter.selectCaches(httpRequest, deliveryService, track, true), contains(cache));
+        assertThat(track.getResult(), equalTo(Track.ResultType.CZ));
+        assertThat(track.getResultLocation(), equalTo(new Geolocation(50, 50)));
+        assertThat(track.getClientGeolocation(), equalTo(new Geolocation(40, -100)));
+        verify(trafficRouter, times(1)).getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class));
+        // the network of the client is only looked up once per request
+        verify(trafficRouter, times(2)).getNetworkNode(anyString());
+
+        trafficRouter.setState(JsonNodeFactory.instance.objectNode());
+        trafficRouter.selectCaches(httpRequest, deliveryService, StatTracker.getTrack(), true);
+
+        verify(trafficRouter, times(2)).getCoverageZoneCacheLocation(eq(network), anyString(), eq("ds1"), eq(false), any(Track.class));
+    }
+
     @Test
     public void itRetainsPathElementsInURI() throws Exception {
         Cache cache = mock(Cache.class);
@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+// compares every method with the formatter it replaces
+public class AccessEventFormatTest {
+	private final Random random = new Random(8675309);
+	private Locale locale;
+
+	@Before
+	public void before() {
+		locale = Locale.getDefault();
+		Locale.setDefault(Locale.US);
+	}
+
+	@After
+	public void after() {
+		Locale.setDefault(locale);
+	}
+
+	private static DecimalFormat truncating(final String pattern) {
+		final DecimalFormat decimalFormat = new DecimalFormat(pattern);
+		decimalFormat.setRoundingMode(RoundingMode.DOWN);
+		return decimalFormat;
+	}
+
+	private double randomCoordinate() {
+		switch (random.nextInt(4)) {
+			case 0:
+				// a few decimals, as typed into a configuration
+				return (random.nextInt(36001) - 18000) / 100.0;
+			case 1:
+				return (random.nextInt(3601) - 1800) / 10.0;
+			case 2:
+				return (random.nextDouble() - 0.5) / 10;
+			default:
+				return random.nextDouble() * 360 - 180;
+		}
+	}
+
+	@Test
+	public void itFormatsSecondsLikeStringFormat() {
+		final long[] edges = {0, 1, 999, 1000, 1001, 144140678000L, 144140678009L, 144140678099L, -1, -1500};
+
+		for (final long millis : edges) {
+			assertThat(AccessEventFormat.appendSeconds(new StringBuilder(), millis).toString(), equalTo(String.format("%d.%03d", millis / 1000, millis % 1000)));
+		}
+
+		for (int i = 0; i < 100000; i++) {
+			final long millis = Math.abs(random.nextLong()) % 4000000000000L;
+			assertThat(AccessEventFormat.appendSeconds(new StringBuilder(), millis).toString(), equalTo(String.format("%d.%03d", millis / 1000, millis % 1000)));
+		}
+	}
+
+	@Test
+	public void itFormatsMillisecondsLikeStringFormat() {
+		final long[] edges = {0, 1, 499, 500, 501, 999, 1000, 1499, 1500, 999499, 999500, 1234500, 345123000, -1, -499, -500, -501, -1234500,
+			999999999999999L, -999999999999999L, 1000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+		for (final long nanos : edges) {
+			assertThat(Long.toString(nanos), AccessEventFormat.appendMillis(new StringBuilder(), nanos).toString(), equalTo(String.format("%.03f", nanos / 1000000.0)));
+		}
+
+		for (int i = 0; i < 200000; i++) {
+			final long nanos = random.nextBoolean() ? random.nextInt(100000000) : random.nextLong() % 100000000000000L;
+			assertThat(Long.toString(nanos), AccessEventFormat.appendMillis(new StringBuilder(), nanos).toString(), equalTo(String.format("%.03f", nanos / 1000000.0)));
+		}
+	}
+
+	@Test
+	public void itTruncatesLikeDecimalFormat() {
+		final DecimalFormat twoDecimals = truncating("0.00");
+		final DecimalFormat upToTwoDecimals = truncating(".##");
+		final double[] edges = {0.0, -0.0, 0.01, -0.01, 0.009, -0.009, 0.1, -0.1, 0.29, 0.5, -0.5, 1, -1, 39.7, -104.9, 40.0, 180, -180, 90.009,
+			1.0e-5, 9999999.99, 1.0e7, 1.23456789e8, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+
+		for (final double value : edges) {
+			assertThat(Double.toString(value), AccessEventFormat.appendTwoDecimals(new StringBuilder(), value).toString(), equalTo(twoDecimals.format(value)));
+			assertThat(Double.toString(value), AccessEventFormat.appendUpToTwoDecimals(new StringBuilder(), value).toString(), equalTo(upToTwoDecimals.format(value)));
+		}
+
+		for (int i = 0; i < 200000; i++) {
+			final double value = randomCoordinate();
+			assertThat(Double.toString(value), AccessEventFormat.appendTwoDecimals(new StringBuilder(), value).toString(), equalTo(twoDecimals.format(value)));
+			assertThat(Double.toString(value), AccessEventFormat.appendUpToTwoDecimals(new StringBuilder(), value).toString(), equalTo(upToTwoDecimals.format(value)));
+		}
+	}
+
+	@Test
+	public void itFormatsInAnEnglishLocaleWhateverTheDefault() {
+		final DecimalFormat twoDecimals = truncating("0.00");
+		final DecimalFormat upToTwoDecimals = truncating(".##");
+		Locale.setDefault(Locale.GERMANY);
+
+		// values handed to the original formatters
+		final double[] values = {-0.001, -0.009, Double.NaN, 1.23456789e8};
+
+		for (final double value : values) {
+			assertThat(Double.toString(value), AccessEventFormat.appendTwoDecimals(new StringBuilder(), value).toString(), equalTo(twoDecimals.format(value)));
+			assertThat(Double.toString(value), AccessEventFormat.appendUpToTwoDecimals(new StringBuilder(), value).toString(), equalTo(upToTwoDecimals.format(value)));
+		}
+
+		assertThat(AccessEventFormat.appendMillis(new StringBuilder(), Long.MAX_VALUE).toString(), equalTo(String.format(Locale.US, "%.03f", Long.MAX_VALUE / 1000000.0)));
+		assertThat(AccessEventFormat.appendSeconds(new StringBuilder(), -1500).toString(), equalTo("-1.-500"));
+	}
+
+	@Test
+	public void itReplacesQuotesLikeReplaceAll() {
+		final String[] values = {"", "\"", "plain", "\"quoted\"", "a \"b\" c", "''", "\"\"\""};
+
+		for (final String value : values) {
+			assertThat(AccessEventFormat.appendQuoted(new StringBuilder(), value).toString(), equalTo(value.replaceAll("\"", "'")));
+		}
+	}
+
+	@Test
+	public void itTrimsLikeTrim() {
+		final String[] values = {"", " ", "a", " a ", "a b ", "\t\na b\u0000", "   ", " a "};
+
+		for (final String value : values) {
+			final StringBuilder stringBuilder = new StringBuilder("kept ").append(value);
+			assertThat(AccessEventFormat.trimFrom(stringBuilder, 5).toString(), equalTo("kept " + value.trim()));
+		}
+	}
+
+	@Test
+	public void itReusesTheStringBuilderOfEachThread() {
+		final StringBuilder stringBuilder = AccessEventFormat.getStringBuilder();
+		stringBuilder.append("leftovers");
+
+		assertThat(AccessEventFormat.getStringBuilder(), sameInstance(stringBuilder));
+		assertThat(stringBuilder.length(), equalTo(0));
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class AccessLogWriterTest {
+	private final List<Object> written = Collections.synchronizedList(new ArrayList<Object>());
+	private AccessLogWriter accessLogWriter;
+	private Thread caller;
+
+	@Before
+	public void before() {
+		final Logger accessLogger = mock(Logger.class);
+
+		doAnswer(invocation -> {
+			caller = Thread.currentThread();
+			return written.add(invocation.getArguments()[0]);
+		}).when(accessLogger).info(any());
+
+		accessLogWriter = new AccessLogWriter(accessLogger);
+	}
+
+	@Test
+	public void itWritesOnTheCallingThreadUntilStarted() {
+		accessLogWriter.log(() -> "event");
+
+		assertThat(written, contains("event"));
+		assertThat(caller, equalTo(Thread.currentThread()));
+	}
+
+	@Test
+	public void itWritesEveryEventInOrderOnTheWriterThread() {
+		accessLogWriter.setCapacity(8);
+		accessLogWriter.setBlockWhenFull(true);
+		accessLogWriter.init();
+
+		for (int i = 0; i < 1000; i++) {
+			final String event = "event " + i;
+			accessLogWriter.log(() -> event);
+		}
+
+		accessLogWriter.destroy();
+
+		assertThat(written.size(), equalTo(1000));
+
+		for (int i = 0; i < 1000; i++) {
+			assertThat(written.get(i), equalTo("event " + i));
+		}
+
+		assertThat(caller.getName(), equalTo("AccessLogWriter"));
+		assertThat(accessLogWriter.getDroppedCount(), equalTo(0L));
+	}
+
+	@Test
+	public void itWritesEventsLoggedWhileStopping() throws Exception {
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicInteger logged = new AtomicInteger();
+		final List<Thread> producers = new ArrayList<Thread>();
+
+		accessLogWriter.setBlockWhenFull(true);
+		accessLogWriter.init();
+
+		for (int i = 0; i < 4; i++) {
+			final Thread producer = new Thread(() -> {
+				while (!stopped.get()) {
+					accessLogWriter.log(() -> "event");
+					logged.incrementAndGet();
+				}
+			});
+
+			producers.add(producer);
+			producer.start();
+		}
+
+		Thread.sleep(50);
+		accessLogWriter.destroy();
+		Thread.sleep(10);
+		stopped.set(true);
+
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+
+		assertThat(written.size(), equalTo(logged.get()));
+	}
+
+	@Test
+	public void itDropsEventsWhenFull() throws Exception {
+		final CountDownLatch formatting = new CountDownLatch(1);
+		final CountDownLatch stalled = new CountDownLatch(1);
+
+		accessLogWriter.setCapacity(4);
+		accessLogWriter.init();
+
+		accessLogWriter.log(() -> {
+			formatting.countDown();
+
+			try {
+				stalled.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			return "stalled";
+		});
+
+		// wake the writer and wait for it to get stuck on the first event
+		for (int i = 0; i < 2; i++) {
+			accessLogWriter.log(() -> "waiting");
+		}
+
+		assertThat(formatting.await(10, TimeUnit.SECONDS), equalTo(true));
+
+		for (int i = 0; i < 4; i++) {
+			accessLogWriter.log(() -> "overflow");
+		}
+
+		stalled.countDown();
+		accessLogWriter.destroy();
+
+		assertThat(accessLogWriter.getDroppedCount(), equalTo(2L));
+		assertThat(written, contains("stalled", "waiting", "waiting", "overflow", "overflow"));
+	}
+
+	@Test
+	public void itWaitsForRoomWhenToldTo() throws Exception {
+		accessLogWriter.setCapacity(2);
+		accessLogWriter.setBlockWhenFull(true);
+		accessLogWriter.setFlushInterval(60000);
+		accessLogWriter.init();
+
+		final List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < 4; t++) {
+			final Thread thread = new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					accessLogWriter.log(() -> "event");
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		accessLogWriter.destroy();
+
+		assertThat(written.size(), equalTo(2000));
+		assertThat(accessLogWriter.getDroppedCount(), equalTo(0L));
+	}
+}
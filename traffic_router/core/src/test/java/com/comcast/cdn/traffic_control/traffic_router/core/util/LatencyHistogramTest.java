@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.core.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+	private final Random random = new Random(4815162342L);
+
+	@Test
+	public void itCoversEveryValueWithoutGaps() {
+		final int last = LatencyHistogram.countsIndex(LatencyHistogram.HIGHEST_TRACKABLE_VALUE);
+
+		assertThat(LatencyHistogram.lowestEquivalentValue(0), equalTo(0L));
+
+		for (int i = 0; i < last; i++) {
+			assertThat(LatencyHistogram.lowestEquivalentValue(i + 1), equalTo(LatencyHistogram.highestEquivalentValue(i) + 1));
+			assertThat(LatencyHistogram.countsIndex(LatencyHistogram.lowestEquivalentValue(i)), equalTo(i));
+			assertThat(LatencyHistogram.countsIndex(LatencyHistogram.highestEquivalentValue(i)), equalTo(i));
+		}
+	}
+
+	@Test
+	public void itFindsPercentilesWithinThreePercent() {
+		final LatencyHistogram latencyHistogram = new LatencyHistogram();
+		final long[] values = new long[100000];
+
+		for (int i = 0; i < values.length; i++) {
+			// mostly fast, with a long tail
+			values[i] = (long) (Math.exp(random.nextGaussian() * 2) * 100000);
+			latencyHistogram.record(values[i]);
+		}
+
+		Arrays.sort(values);
+		final LatencyHistogram.Snapshot snapshot = latencyHistogram.getSnapshot();
+
+		assertThat(snapshot.getTotalCount(), equalTo((long) values.length));
+
+		for (final double percentile : new double[] {0, 1, 50, 90, 99, 99.9, 99.99, 100}) {
+			final long expected = values[Math.max((int) Math.ceil(percentile / 100 * values.length) - 1, 0)];
+			final long actual = snapshot.getValueAtPercentile(percentile);
+
+			assertThat(Double.toString(percentile), actual, greaterThanOrEqualTo(expected));
+			assertThat(Double.toString(percentile), (double) actual, lessThanOrEqualTo(expected * 1.032 + 1));
+		}
+
+		assertThat(snapshot.getMaxValue(), greaterThanOrEqualTo(values[values.length - 1]));
+		assertThat(snapshot.getMean(), equalTo(Arrays.stream(values).average().getAsDouble()));
+	}
+
+	@Test
+	public void itCountsValuesCumulativelyByBucket() {
+		final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+		latencyHistogram.record(63);
+		latencyHistogram.record(1000);
+		latencyHistogram.record(1000);
+		latencyHistogram.record(3000);
+
+		final LatencyHistogram.Snapshot snapshot = latencyHistogram.getSnapshot();
+		assertThat(snapshot.getSum(), equalTo(5063L));
+
+		final SortedMap<Long, Long> cumulativeCounts = snapshot.getCumulativeCounts();
+		assertThat(cumulativeCounts.size(), equalTo(3));
+		assertThat(cumulativeCounts.get(63L), equalTo(1L));
+		assertThat(cumulativeCounts.get(cumulativeCounts.lastKey()), equalTo(4L));
+		assertThat(cumulativeCounts.lastKey(), greaterThanOrEqualTo(3000L));
+	}
+
+	@Test
+	public void itClampsValuesOutOfRange() {
+		final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+		latencyHistogram.record(-5);
+		latencyHistogram.record(Long.MAX_VALUE);
+
+		final LatencyHistogram.Snapshot snapshot = latencyHistogram.getSnapshot();
+		assertThat(snapshot.getValueAtPercentile(50), equalTo(0L));
+		assertThat(snapshot.getMaxValue(), greaterThanOrEqualTo(LatencyHistogram.HIGHEST_TRACKABLE_VALUE));
+	}
+}
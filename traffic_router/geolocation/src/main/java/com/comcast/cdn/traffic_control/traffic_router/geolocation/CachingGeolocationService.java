@@ -0,0 +1,181 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.comcast.cdn.traffic_control.traffic_router.geolocation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Remembers the locations found by another {@link GeolocationService}.
+ * <p>
+ * Results, including addresses that could not be located, are kept in a size and time bounded
+ * cache keyed on the client address. Addresses can be grouped by prefix so that, for example,
+ * every address in a /24 shares the location of the first one looked up. The cache is flushed
+ * whenever the database is reloaded through this service, and a lookup that was still running
+ * against the previous database does not leave its result behind.
+ * </p>
+ */
+public class CachingGeolocationService implements GeolocationService {
+	private final GeolocationService geolocationService;
+	private final Cache<Object, Optional<Geolocation>> cache;
+	private final AtomicLong generation = new AtomicLong();
+	private final int ipv4PrefixLength;
+	private final int ipv6PrefixLength;
+
+	public CachingGeolocationService(final GeolocationService geolocationService) {
+		this(geolocationService, 100000, 3600000L, 32, 128);
+	}
+
+	/**
+	 * @param geolocationService
+	 *            the service to find locations with
+	 * @param maximumSize
+	 *            the maximum number of addresses to remember; 0 disables the cache
+	 * @param expireAfterWrite
+	 *            milliseconds to remember each address for
+	 * @param ipv4PrefixLength
+	 *            the length of the prefix IPv4 addresses are grouped by, 32 to keep each address apart
+	 * @param ipv6PrefixLength
+	 *            the length of the prefix IPv6 addresses are grouped by, 128 to keep each address apart
+	 */
+	public CachingGeolocationService(final GeolocationService geolocationService, final int maximumSize, final long expireAfterWrite,
+			final int ipv4PrefixLength, final int ipv6PrefixLength) {
+		this.geolocationService = geolocationService;
+		this.ipv4PrefixLength = Math.max(0, Math.min(32, ipv4PrefixLength));
+		this.ipv6PrefixLength = Math.max(0, Math.min(128, ipv6PrefixLength));
+
+		if (maximumSize > 0) {
+			cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.recordStats()
+				.build();
+		} else {
+			cache = null;
+		}
+	}
+
+	@Override
+	public Geolocation location(final String ip) throws GeolocationException {
+		if (cache == null) {
+			return geolocationService.location(ip);
+		}
+
+		final Object key = getKey(ip);
+
+		if (key == null) {
+			return geolocationService.location(ip);
+		}
+
+		final Optional<Geolocation> cached = cache.getIfPresent(key);
+
+		if (cached != null) {
+			return cached.orElse(null);
+		}
+
+		// failures are not remembered
+		final long lookupGeneration = generation.get();
+		final Geolocation geolocation = geolocationService.location(ip);
+		cache.put(key, Optional.ofNullable(geolocation));
+
+		// the cache was flushed during the lookup, which may have used the previous database
+		if (generation.get() != lookupGeneration) {
+			cache.invalidate(key);
+		}
+
+		return geolocation;
+	}
+
+	private Object getKey(final String ip) {
+		final int slash = ip.indexOf('/');
+		final String address = slash != -1 ? ip.substring(0, slash) : ip;
+
+		if (ipv4PrefixLength == 32 && ipv6PrefixLength == 128) {
+			return address;
+		}
+
+		final byte[] bytes;
+
+		try {
+			bytes = InetAddress.getByName(address).getAddress();
+		} catch (UnknownHostException e) {
+			return null;
+		}
+
+		final int prefixLength = bytes.length == 4 ? ipv4PrefixLength : ipv6PrefixLength;
+
+		for (int i = 0; i < bytes.length; i++) {
+			final int bits = Math.max(0, Math.min(8, prefixLength - i * 8));
+			bytes[i] &= (byte) (0xff << (8 - bits));
+		}
+
+		return ByteBuffer.wrap(bytes);
+	}
+
+	@Override
+	public void reloadDatabase() throws IOException {
+		try {
+			geolocationService.reloadDatabase();
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	@Override
+	public boolean verifyDatabase(final File dbFile) throws IOException {
+		return geolocationService.verifyDatabase(dbFile);
+	}
+
+	@Override
+	public boolean isInitialized() {
+		return geolocationService.isInitialized();
+	}
+
+	@Override
+	public void setDatabaseFile(final File databaseFile) {
+		geolocationService.setDatabaseFile(databaseFile);
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	public GeolocationService getGeolocationService() {
+		return geolocationService;
+	}
+
+	/**
+	 * @return the hit and miss counts of the cache, or empty stats if the cache is disabled
+	 */
+	public CacheStats getCacheStats() {
+		return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+	}
+}
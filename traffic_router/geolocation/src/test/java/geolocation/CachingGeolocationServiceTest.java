@@ -0,0 +1,123 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package geolocation;
+
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.CachingGeolocationService;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.Geolocation;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationException;
+import com.comcast.cdn.traffic_control.traffic_router.geolocation.GeolocationService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingGeolocationServiceTest {
+	private GeolocationService geolocationService;
+	private Geolocation denver;
+
+	@Before
+	public void before() throws Exception {
+		geolocationService = mock(GeolocationService.class);
+		denver = new Geolocation(39.7, -104.9);
+		when(geolocationService.location("192.168.1.1")).thenReturn(denver);
+		when(geolocationService.location("192.168.1.2")).thenReturn(new Geolocation(1, 1));
+	}
+
+	@Test
+	public void itRemembersLocations() throws Exception {
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService);
+
+		assertThat(cachingService.location("192.168.1.1"), sameInstance(denver));
+		assertThat(cachingService.location("192.168.1.1/32"), sameInstance(denver));
+		verify(geolocationService, times(1)).location("192.168.1.1");
+
+		assertThat(cachingService.location("10.0.0.1"), nullValue());
+		assertThat(cachingService.location("10.0.0.1"), nullValue());
+		verify(geolocationService, times(1)).location("10.0.0.1");
+
+		assertThat(cachingService.getCacheStats().hitCount(), equalTo(2L));
+		assertThat(cachingService.getCacheStats().missCount(), equalTo(2L));
+	}
+
+	@Test
+	public void itGroupsAddressesByPrefix() throws Exception {
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService, 100, 60000L, 24, 48);
+
+		assertThat(cachingService.location("192.168.1.1"), sameInstance(denver));
+		assertThat(cachingService.location("192.168.1.2"), sameInstance(denver));
+		verify(geolocationService, times(0)).location("192.168.1.2");
+	}
+
+	@Test
+	public void itFlushesOnReload() throws Exception {
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService);
+
+		cachingService.location("192.168.1.1");
+		cachingService.reloadDatabase();
+		cachingService.location("192.168.1.1");
+
+		verify(geolocationService).reloadDatabase();
+		verify(geolocationService, times(2)).location("192.168.1.1");
+	}
+
+	@Test
+	public void itForgetsLocationsFoundWhileReloading() throws Exception {
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService);
+
+		when(geolocationService.location("192.168.1.1")).thenAnswer(invocation -> {
+			cachingService.reloadDatabase();
+			return denver;
+		});
+
+		cachingService.location("192.168.1.1");
+		cachingService.location("192.168.1.1");
+
+		verify(geolocationService, times(2)).location("192.168.1.1");
+	}
+
+	@Test
+	public void itDoesNotRememberFailures() throws Exception {
+		when(geolocationService.location("10.0.0.2")).thenThrow(new GeolocationException("boom"));
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				cachingService.location("10.0.0.2");
+			} catch (GeolocationException e) {
+				// expected
+			}
+		}
+
+		verify(geolocationService, times(2)).location("10.0.0.2");
+	}
+
+	@Test
+	public void itCanBeDisabled() throws Exception {
+		final CachingGeolocationService cachingService = new CachingGeolocationService(geolocationService, 0, 60000L, 32, 128);
+
+		cachingService.location("192.168.1.1");
+		cachingService.location("192.168.1.1");
+
+		verify(geolocationService, times(2)).location("192.168.1.1");
+	}
+}